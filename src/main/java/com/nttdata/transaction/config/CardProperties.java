@@ -0,0 +1,17 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuración del flujo de tarjetas de débito.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.card")
+public class CardProperties {
+
+    /**
+     * Número máximo de cuentas vinculadas consultadas en paralelo al resolver la cuenta a debitar.
+     */
+    private int probeConcurrency = 4;
+}
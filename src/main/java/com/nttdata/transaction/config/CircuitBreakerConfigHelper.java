@@ -0,0 +1,190 @@
+package com.nttdata.transaction.config;
+
+import com.nttdata.transaction.utils.Constants;
+import com.nttdata.transaction.utils.exceptions.ServiceUnavailableException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedTimeLimiterMetrics;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.timelimiter.TimeLimiterOperator;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Operadores de Resilience4j (Circuit Breaker, TimeLimiter y Bulkhead) para las llamadas al product-service,
+ * con reintentos con jitter para lecturas y peticiones de respaldo opcionales. El estado del circuito y del
+ * bulkhead se exporta como métricas (resilience4j.circuitbreaker.*, resilience4j.bulkhead.*).
+ */
+@Component
+public class CircuitBreakerConfigHelper {
+
+    public static final String PRODUCT_SERVICE = "productService";
+    private static final double HEDGE_PERCENTILE = 0.95;
+
+    private final ProductResilienceProperties properties;
+    private final CircuitBreaker circuitBreaker;
+    private final TimeLimiter timeLimiter;
+    private final Bulkhead bulkhead;
+    private final Timer latency;
+    private final Counter hedges;
+
+    public CircuitBreakerConfigHelper(ProductResilienceProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        ProductResilienceProperties.CircuitBreaker cb = properties.getCircuitBreaker();
+
+        CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .failureRateThreshold(cb.getFailureRateThreshold())
+                .slowCallRateThreshold(cb.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(cb.getSlowCallDurationThreshold())
+                .waitDurationInOpenState(cb.getWaitDurationInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(cb.getPermittedNumberOfCallsInHalfOpenState())
+                .slidingWindowSize(cb.getSlidingWindowSize())
+                .minimumNumberOfCalls(cb.getMinimumNumberOfCalls())
+                // Solo los fallos del servicio abren el circuito; un 404 o un 400 no
+                .recordException(this::isTransient)
+                .build();
+
+        TimeLimiterConfig timeLimiterConfig = TimeLimiterConfig.custom()
+                .timeoutDuration(properties.getTimeout())
+                .build();
+
+        BulkheadConfig bulkheadConfig = BulkheadConfig.custom()
+                .maxConcurrentCalls(properties.getBulkhead().getMaxConcurrentCalls())
+                .maxWaitDuration(Duration.ZERO)
+                .build();
+
+        CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.of(circuitBreakerConfig);
+        TimeLimiterRegistry timeLimiterRegistry = TimeLimiterRegistry.of(timeLimiterConfig);
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.of(bulkheadConfig);
+
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        TaggedTimeLimiterMetrics.ofTimeLimiterRegistry(timeLimiterRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(PRODUCT_SERVICE);
+        this.timeLimiter = timeLimiterRegistry.timeLimiter(PRODUCT_SERVICE);
+        this.bulkhead = bulkheadRegistry.bulkhead(PRODUCT_SERVICE);
+        this.latency = Timer.builder("product.service.latency")
+                .publishPercentiles(HEDGE_PERCENTILE)
+                .register(meterRegistry);
+        this.hedges = meterRegistry.counter("product.service.hedged.requests");
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Protege una llamada sin reintentos (escrituras).
+     */
+    public <T> Mono<T> protect(Mono<T> call) {
+        return guard(call)
+                .onErrorMap(this::toServiceUnavailable);
+    }
+
+    /**
+     * Protege una lectura idempotente: cada intento pasa por el bulkhead, el límite de tiempo y el circuito,
+     * y los errores transitorios se reintentan con espera exponencial y jitter.
+     */
+    public <T> Mono<T> protectRead(Mono<T> call) {
+        return guard(call)
+                .retryWhen(retrySpec())
+                .onErrorMap(this::toServiceUnavailable);
+    }
+
+    /**
+     * Igual que {@link #protectRead(Mono)}, pero si la petición no responde dentro del p95 observado
+     * lanza una de respaldo y usa la primera que responda (la otra se cancela).
+     */
+    public <T> Mono<T> protectHedgedRead(Mono<T> call) {
+        if (!properties.getHedge().isEnabled()) {
+            return protectRead(call);
+        }
+
+        Mono<T> attempt = guard(call);
+        return Mono.defer(() -> Mono.firstWithSignal(attempt,
+                        Mono.delay(hedgeDelay())
+                                .doOnNext(tick -> hedges.increment())
+                                .then(attempt)))
+                .retryWhen(retrySpec())
+                .onErrorMap(this::toServiceUnavailable);
+    }
+
+    private <T> Mono<T> guard(Mono<T> call) {
+        return Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return call.doOnSuccess(value -> latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+                })
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(TimeLimiterOperator.of(timeLimiter))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
+    }
+
+    private Retry retrySpec() {
+        ProductResilienceProperties.Retry retry = properties.getRetry();
+        return Retry.backoff(retry.getMaxRetries(), retry.getMinBackoff())
+                .maxBackoff(retry.getMaxBackoff())
+                .jitter(retry.getJitter())
+                .filter(this::isTransient)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    private Duration hedgeDelay() {
+        ProductResilienceProperties.Hedge hedge = properties.getHedge();
+        if (latency.count() < hedge.getMinSamples()) {
+            return hedge.getInitialDelay();
+        }
+
+        double p95 = hedge.getInitialDelay().toMillis();
+        for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+            if (value.percentile() == HEDGE_PERCENTILE) {
+                p95 = value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        Duration delay = Duration.ofMillis((long) Math.ceil(p95));
+        return delay.compareTo(hedge.getMinDelay()) < 0 ? hedge.getMinDelay() : delay;
+    }
+
+    private boolean isTransient(Throwable e) {
+        if (e instanceof WebClientResponseException) {
+            return ((WebClientResponseException) e).getStatusCode().is5xxServerError();
+        }
+        return e instanceof WebClientRequestException || e instanceof TimeoutException;
+    }
+
+    private Throwable toServiceUnavailable(Throwable e) {
+        if (e instanceof TimeoutException) {
+            return new ServiceUnavailableException(Constants.ERROR_CIRCUIT_BREAKER, e);
+        }
+        if (e instanceof BulkheadFullException) {
+            return new ServiceUnavailableException(Constants.ERROR_PRODUCT_SERVICE_BUSY, e);
+        }
+        if (e instanceof CallNotPermittedException || e instanceof WebClientRequestException) {
+            return new ServiceUnavailableException(Constants.ERROR_PRODUCT_SERVICE_UNAVAILABLE, e);
+        }
+        return e;
+    }
+}
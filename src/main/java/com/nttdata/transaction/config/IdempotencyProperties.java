@@ -0,0 +1,55 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuración de la deduplicación de peticiones mediante la cabecera Idempotency-Key.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * Tiempo durante el cual se conserva una clave en Mongo (índice TTL).
+     */
+    private Duration ttl = Duration.ofHours(24);
+
+    /**
+     * Número máximo de resultados en la caché local.
+     */
+    private long cacheMaxSize = 10_000;
+
+    /**
+     * Tiempo de vida de un resultado en la caché local.
+     */
+    private Duration cacheTtl = Duration.ofMinutes(10);
+
+    /**
+     * Tiempo máximo de espera cuando otra instancia procesa la misma clave.
+     */
+    private Duration waitTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Intervalo de consulta mientras otra instancia procesa la misma clave.
+     */
+    private Duration pollInterval = Duration.ofMillis(100);
+
+    /**
+     * Tiempo sin latidos a partir del cual una clave en curso se considera abandonada (p. ej. porque
+     * la instancia que la reservó se detuvo) y pasa a UNKNOWN.
+     */
+    private Duration claimTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Intervalo con que la ejecución en curso renueva su reserva; debe ser menor que claimTimeout.
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(10);
+
+    /**
+     * Reintentos al guardar el resultado de una ejecución ya aplicada.
+     */
+    private int completionRetries = 3;
+}
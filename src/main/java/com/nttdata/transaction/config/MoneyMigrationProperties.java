@@ -0,0 +1,22 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuración de la migración de importes guardados como texto a Decimal128.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.money-migration")
+public class MoneyMigrationProperties {
+
+    /**
+     * Transacciones actualizadas por cada sentencia de actualización.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Lotes en vuelo a la vez; acota la carga sobre el primario mientras el servicio atiende tráfico.
+     */
+    private int concurrency = 4;
+}
@@ -0,0 +1,29 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuración de la ejecución de las tareas mensuales.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.monthly-job")
+public class MonthlyJobProperties {
+
+    /**
+     * Productos por tramo; el avance de la ejecución se guarda al terminar cada tramo.
+     */
+    private int chunkSize = 200;
+
+    /**
+     * Productos procesados en paralelo dentro de un tramo. Acota las llamadas simultáneas al
+     * product-service y a Mongo.
+     */
+    private int concurrency = 8;
+
+    /**
+     * Comisiones de mantenimiento escritas por lote: una actualización de saldos en el
+     * product-service y una inserción en Mongo por cada lote.
+     */
+    private int feeBatchSize = 500;
+}
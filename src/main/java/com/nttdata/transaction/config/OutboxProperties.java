@@ -0,0 +1,50 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuración del modo outbox para la propagación asíncrona de saldos.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.outbox")
+public class OutboxProperties {
+
+    /**
+     * Si está activo, la transacción se guarda junto con su registro outbox y se responde
+     * sin esperar la actualización de saldos en el product-service.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Intervalo entre ciclos del despachador.
+     */
+    private Duration pollInterval = Duration.ofSeconds(1);
+
+    /**
+     * Número máximo de transacciones pendientes procesadas por ciclo.
+     */
+    private int batchSize = 100;
+
+    /**
+     * Número de productos actualizados en paralelo dentro de un ciclo.
+     */
+    private int concurrency = 8;
+
+    /**
+     * Reintentos antes de marcar un registro como FAILED.
+     */
+    private int maxAttempts = 10;
+
+    private Duration initialBackoff = Duration.ofSeconds(1);
+
+    private Duration maxBackoff = Duration.ofMinutes(5);
+
+    /**
+     * Tiempo que una instancia reserva un producto para propagar su saldo. Debe superar el timeout
+     * de escritura del product-service: al vencer, otra instancia puede enviar un saldo posterior.
+     */
+    private Duration dispatchLeaseTtl = Duration.ofSeconds(30);
+}
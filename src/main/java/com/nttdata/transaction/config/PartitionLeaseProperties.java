@@ -0,0 +1,39 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Configuración del reparto de trabajos por particiones entre instancias mediante leases en Mongo.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.partition-lease")
+public class PartitionLeaseProperties {
+
+    /**
+     * Número de particiones en que se reparte el espacio de ids de producto. Debe ser el mismo en
+     * todas las instancias.
+     */
+    private int partitions = 16;
+
+    /**
+     * Tiempo tras el último latido en que un lease se considera abandonado y otra instancia puede
+     * tomar la partición.
+     */
+    private Duration ttl = Duration.ofSeconds(30);
+
+    private Duration heartbeatInterval = Duration.ofSeconds(10);
+
+    /**
+     * Espera entre pasadas mientras queden particiones tomadas por otras instancias.
+     */
+    private Duration retryInterval = Duration.ofSeconds(5);
+
+    /**
+     * Identificador de esta instancia como dueña de leases; por defecto uno aleatorio por arranque.
+     */
+    private String instanceId = UUID.randomUUID().toString();
+}
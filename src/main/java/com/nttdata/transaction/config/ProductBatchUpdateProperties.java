@@ -0,0 +1,28 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuración de la actualización de varios productos en una sola petición al product-service.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.product-batch-update")
+public class ProductBatchUpdateProperties {
+
+    /**
+     * Requiere que el product-service exponga la actualización por lote ({@link #batchPath}). Si
+     * está deshabilitada, los productos se actualizan uno a uno.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Ruta de la actualización por lote; recibe la lista de productos y responde con los actualizados.
+     */
+    private String batchPath = "/products/batch";
+
+    /**
+     * Actualizaciones individuales en paralelo cuando el lote no está habilitado.
+     */
+    private int fallbackConcurrency = 8;
+}
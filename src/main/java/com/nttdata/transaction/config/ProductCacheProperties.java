@@ -0,0 +1,34 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuración de la caché local de productos obtenidos del product-service.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.product-cache")
+public class ProductCacheProperties {
+
+    /**
+     * Número máximo de productos en caché.
+     */
+    private long maxSize = 10_000;
+
+    /**
+     * Tiempo de vida de una entrada desde su última escritura.
+     */
+    private Duration ttl = Duration.ofMinutes(1);
+
+    /**
+     * Antigüedad máxima aceptada para búsquedas previas a una operación.
+     */
+    private Duration lookupMaxStaleness = Duration.ofSeconds(2);
+
+    /**
+     * Antigüedad máxima aceptada por los reportes.
+     */
+    private Duration reportMaxStaleness = Duration.ofSeconds(30);
+}
@@ -0,0 +1,62 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import reactor.netty.http.HttpProtocol;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuración del cliente HTTP hacia el product-service.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.product-client")
+public class ProductClientProperties {
+
+    private String baseUrl = "http://localhost:8081";
+
+    /**
+     * Protocolos habilitados. Con H2C y HTTP11 se negocia HTTP/2 sin TLS cuando el servidor lo admite.
+     */
+    private List<HttpProtocol> protocols = new ArrayList<>(List.of(HttpProtocol.HTTP11));
+
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    private Duration responseTimeout = Duration.ofSeconds(3);
+
+    private boolean keepAlive = true;
+
+    private Pool pool = new Pool();
+
+    /**
+     * Pool de conexiones compartido por todas las llamadas al product-service.
+     */
+    @Data
+    public static class Pool {
+
+        private int maxConnections = 200;
+
+        /**
+         * Peticiones que pueden esperar una conexión libre antes de rechazarse.
+         */
+        private int pendingAcquireMaxCount = 1000;
+
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+
+        /**
+         * Tiempo máximo que una conexión puede permanecer inactiva en el pool.
+         */
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+
+        /**
+         * Intervalo de limpieza de conexiones inactivas o vencidas.
+         */
+        private Duration evictInBackground = Duration.ofSeconds(30);
+
+        private boolean metrics = true;
+    }
+}
@@ -0,0 +1,22 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuración de las colas por producto que serializan las mutaciones de saldo.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.product-lanes")
+public class ProductLaneProperties {
+
+    /**
+     * Número de operaciones que pueden esperar turno en un mismo producto.
+     */
+    private int maxPendingPerProduct = 256;
+
+    /**
+     * Número de shards en los que se agrupan las métricas de profundidad de cola.
+     */
+    private int shards = 16;
+}
@@ -0,0 +1,37 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuración de la carga agrupada de productos: las consultas de distintos productos que llegan
+ * dentro de una ventana corta se resuelven con una sola petición multi-id al product-service.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.product-loader")
+public class ProductLoaderProperties {
+
+    /**
+     * Requiere que el product-service exponga la consulta multi-id ({@link #batchPath}).
+     */
+    private boolean enabled = false;
+
+    /**
+     * Tiempo máximo que una consulta espera a que se complete su lote.
+     */
+    private Duration window = Duration.ofMillis(2);
+
+    private int maxBatchSize = 50;
+
+    /**
+     * Lotes enviados en paralelo.
+     */
+    private int concurrency = 8;
+
+    /**
+     * Ruta de la consulta multi-id; recibe los ids separados por comas en el parámetro {@code ids}.
+     */
+    private String batchPath = "/products/by-ids";
+}
@@ -0,0 +1,97 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Umbrales de resiliencia de las llamadas al product-service.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.product-resilience")
+public class ProductResilienceProperties {
+
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    /**
+     * Tiempo máximo de cada intento.
+     */
+    private Duration timeout = Duration.ofSeconds(2);
+
+    private Bulkhead bulkhead = new Bulkhead();
+
+    private Retry retry = new Retry();
+
+    private Hedge hedge = new Hedge();
+
+    @Data
+    public static class CircuitBreaker {
+
+        private float failureRateThreshold = 50;
+
+        private float slowCallRateThreshold = 100;
+
+        private Duration slowCallDurationThreshold = Duration.ofSeconds(2);
+
+        private Duration waitDurationInOpenState = Duration.ofSeconds(30);
+
+        private int permittedNumberOfCallsInHalfOpenState = 3;
+
+        private int slidingWindowSize = 10;
+
+        private int minimumNumberOfCalls = 10;
+    }
+
+    @Data
+    public static class Bulkhead {
+
+        /**
+         * Llamadas simultáneas permitidas; el exceso se rechaza de inmediato.
+         */
+        private int maxConcurrentCalls = 50;
+    }
+
+    /**
+     * Reintentos de lecturas (GET) ante errores transitorios, con espera exponencial y jitter.
+     */
+    @Data
+    public static class Retry {
+
+        private int maxRetries = 2;
+
+        private Duration minBackoff = Duration.ofMillis(100);
+
+        private Duration maxBackoff = Duration.ofSeconds(1);
+
+        /**
+         * Fracción aleatoria aplicada a cada espera (0 a 1).
+         */
+        private double jitter = 0.5;
+    }
+
+    /**
+     * Peticiones de respaldo para la consulta de un producto: si la primera no responde dentro
+     * del p95 observado se lanza una segunda y se usa la que responda primero.
+     */
+    @Data
+    public static class Hedge {
+
+        private boolean enabled = false;
+
+        /**
+         * Espera usada hasta reunir suficientes muestras de latencia.
+         */
+        private Duration initialDelay = Duration.ofMillis(200);
+
+        /**
+         * Espera mínima antes de lanzar la petición de respaldo.
+         */
+        private Duration minDelay = Duration.ofMillis(20);
+
+        /**
+         * Número de muestras necesarias para usar el p95.
+         */
+        private long minSamples = 50;
+    }
+}
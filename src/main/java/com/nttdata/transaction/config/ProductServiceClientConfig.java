@@ -0,0 +1,50 @@
+package com.nttdata.transaction.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Cliente HTTP compartido hacia el product-service, con pool de conexiones, keep-alive y
+ * tiempos de espera configurables en {@code transaction.product-client}.
+ */
+@Configuration
+public class ProductServiceClientConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider productServiceConnectionProvider(ProductClientProperties properties) {
+        ProductClientProperties.Pool pool = properties.getPool();
+        return ConnectionProvider.builder("product-service")
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .evictInBackground(pool.getEvictInBackground())
+                // Expone reactor.netty.connection.provider.* (conexiones activas, inactivas y pendientes)
+                .metrics(pool.isMetrics())
+                .build();
+    }
+
+    @Bean
+    public WebClient productServiceWebClient(WebClient.Builder builder,
+                                             ConnectionProvider productServiceConnectionProvider,
+                                             ProductClientProperties properties) {
+        HttpClient httpClient = HttpClient.create(productServiceConnectionProvider)
+                .protocol(properties.getProtocols().toArray(new HttpProtocol[0]))
+                .keepAlive(properties.isKeepAlive())
+                .option(ChannelOption.SO_KEEPALIVE, properties.isKeepAlive())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+                .responseTimeout(properties.getResponseTimeout());
+
+        return builder
+                .baseUrl(properties.getBaseUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
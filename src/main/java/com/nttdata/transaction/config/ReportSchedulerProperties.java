@@ -0,0 +1,28 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuración del planificador acotado donde se calculan los reportes, separado de los hilos de
+ * E/S que atienden las peticiones.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.report-scheduler")
+public class ReportSchedulerProperties {
+
+    /**
+     * Nombre del planificador; etiqueta sus hilos y sus métricas.
+     */
+    private String name = "report";
+
+    /**
+     * Hilos dedicados al cálculo de reportes.
+     */
+    private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    /**
+     * Tareas que pueden esperar un hilo libre; al superarse los reportes se rechazan con 503.
+     */
+    private int queueCapacity = 256;
+}
@@ -0,0 +1,20 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuración de la agrupación de consultas concurrentes al product-service (single-flight).
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.single-flight")
+public class SingleFlightProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Número máximo de suscriptores que comparten una misma consulta en curso. A partir de este
+     * número las consultas se ejecutan por separado.
+     */
+    private int maxSubscribersPerKey = 500;
+}
@@ -0,0 +1,30 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuración de la ingesta de transacciones en lote.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.batch")
+public class TransactionBatchProperties {
+
+    /**
+     * Número de líneas leídas del flujo antes de agruparlas por producto origen.
+     * Acota la memoria usada por petición.
+     */
+    private int windowSize = 1000;
+
+    /**
+     * Tiempo máximo que una ventana incompleta espera nuevas líneas antes de procesarse.
+     */
+    private Duration windowTimeout = Duration.ofMillis(200);
+
+    /**
+     * Número de productos procesados en paralelo dentro de una ventana.
+     */
+    private int concurrency = 16;
+}
@@ -0,0 +1,21 @@
+package com.nttdata.transaction.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuración de los listados paginados y en streaming de transacciones.
+ */
+@Data
+@ConfigurationProperties(prefix = "transaction.listing")
+public class TransactionListingProperties {
+
+    private int defaultPageSize = 100;
+
+    private int maxPageSize = 1000;
+
+    /**
+     * Documentos que el cursor de Mongo trae por lote en los listados en streaming.
+     */
+    private int streamBatchSize = 256;
+}
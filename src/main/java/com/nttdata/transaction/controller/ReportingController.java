@@ -8,6 +8,7 @@ import org.openapitools.api.ReportApi;
 import org.openapitools.model.AvailableBalanceResponse;
 import org.openapitools.model.BalanceSummaryResponse;
 import org.openapitools.model.CommissionReportResponse;
+import org.openapitools.model.CustomerDashboardResponse;
 import org.openapitools.model.ProductConsolidatedSummaryResponse;
 import org.openapitools.model.ProductGeneralSummaryResponse;
 import org.springframework.http.HttpStatus;
@@ -87,6 +88,22 @@ public class ReportingController implements ReportApi {
                 });
     }
 
+    @Override
+    public Mono<ResponseEntity<CustomerDashboardResponse>> generateCustomerDashboard(
+            String customerId,
+            OffsetDateTime start,
+            OffsetDateTime end,
+            ServerWebExchange exchange) {
+        return reportingService.generateCustomerDashboard(customerId, start, end)
+                .map(dashboard ->
+                        TransactionMapper.toResponseCustomerDashboard(dashboard,
+                                200,
+                                Constants.SUCCESS_REPORT))
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(TransactionMapper.toResponseCustomerDashboard(404, Constants.ERROR_FIND_TRANSACTION)));
+    }
+
     @Override
     public Mono<ResponseEntity<Flux<CommissionReportResponse>>> generateCommissionReports(
             String customerId,
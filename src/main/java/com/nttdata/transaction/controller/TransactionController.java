@@ -1,15 +1,23 @@
 package com.nttdata.transaction.controller;
 
+import com.nttdata.transaction.model.Dto.TransactionBatchItem;
+import com.nttdata.transaction.service.IdempotencyService;
+import com.nttdata.transaction.service.MoneyStorageMigrationService;
 import com.nttdata.transaction.service.MonthlyTasksService;
+import com.nttdata.transaction.service.ProductDailyStatsService;
 import com.nttdata.transaction.service.TransactionCardService;
+import com.nttdata.transaction.service.TransactionOutboxService;
 import com.nttdata.transaction.service.TransactionService;
 import com.nttdata.transaction.utils.Constants;
 import com.nttdata.transaction.utils.TransactionMapper;
 import com.nttdata.transaction.utils.Utils;
 import lombok.RequiredArgsConstructor;
 import org.openapitools.api.TransactionsApi;
+import org.openapitools.model.MonthlyTasksStatusResponse;
 import org.openapitools.model.TemplateResponse;
+import org.openapitools.model.TransactionBatchResult;
 import org.openapitools.model.TransactionBody;
+import org.openapitools.model.TransactionResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -17,8 +25,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDate;
+
 @RestController
 @RequiredArgsConstructor
 public class TransactionController implements TransactionsApi {
@@ -28,17 +39,22 @@ public class TransactionController implements TransactionsApi {
     private final TransactionService transactionService;
     private final TransactionCardService transactionCardService;
     private final MonthlyTasksService monthlyTasksService;
+    private final TransactionOutboxService outboxService;
+    private final IdempotencyService idempotencyService;
+    private final ProductDailyStatsService statsService;
+    private final MoneyStorageMigrationService moneyMigrationService;
 
 
     @Override
     public Mono<ResponseEntity<TemplateResponse>> processCardTransaction(
-            @RequestBody Mono<TransactionBody> request, ServerWebExchange exchange) {
+            @RequestBody Mono<TransactionBody> request, String idempotencyKey, ServerWebExchange exchange) {
 
         return request
                 .doOnNext(req -> log.debug("Request recibido: {}", req))
                 .doOnNext(Utils::validateTransactionBody)
                 .map(TransactionMapper::toTransaction)
-                .flatMap(transactionCardService::processCardTransaction)
+                .flatMap(transaction -> idempotencyService.execute(Constants.IDEMPOTENCY_SCOPE_DEBIT_CARDS,
+                        idempotencyKey, transaction, () -> transactionCardService.processCardTransaction(transaction)))
                 .map(created -> TransactionMapper.toResponse(created,
                         201,
                         Constants.SUCCESS_CREATE_TRANSACTION))
@@ -46,16 +62,22 @@ public class TransactionController implements TransactionsApi {
     }
 
     @Override
-    public Mono<ResponseEntity<TemplateResponse>> getAllTransactions(ServerWebExchange exchange) {
-        return transactionService.getAll()
-                .collectList()
-                .map(transactions ->
-                        TransactionMapper.toResponse(transactions,
+    public Mono<ResponseEntity<TemplateResponse>> getAllTransactions(
+            Integer limit, String cursor, ServerWebExchange exchange) {
+        return transactionService.getPage(null, cursor, limit)
+                .map(page ->
+                        TransactionMapper.toResponse(page,
                                 200,
                                 Constants.SUCCESS_FIND_LIST_TRANSACTION))
                 .map(ResponseEntity::ok);
     }
 
+    @Override
+    public Mono<ResponseEntity<Flux<TransactionResponse>>> streamTransactions(ServerWebExchange exchange) {
+        return Mono.just(ResponseEntity.ok(transactionService.stream(null)
+                .map(TransactionMapper::toTransactionResponse)));
+    }
+
     @Override
     public Mono<ResponseEntity<TemplateResponse>> getTransactionById(String id, ServerWebExchange exchange) {
         return transactionService.getById(id)
@@ -70,19 +92,42 @@ public class TransactionController implements TransactionsApi {
 
     @Override
     public Mono<ResponseEntity<TemplateResponse>> createTransaction(
-            @RequestBody Mono<TransactionBody> request, ServerWebExchange exchange) {
+            @RequestBody Mono<TransactionBody> request, String idempotencyKey, ServerWebExchange exchange) {
 
         return request
                 .doOnNext(req -> log.debug("Request recibido: {}", req))
                 .doOnNext(Utils::validateTransactionBody)
                 .map(TransactionMapper::toTransaction)
-                .flatMap(transactionService::create)
+                .flatMap(transaction -> idempotencyService.execute(Constants.IDEMPOTENCY_SCOPE_TRANSACTIONS,
+                        idempotencyKey, transaction, () -> transactionService.create(transaction)))
                 .map(created -> TransactionMapper.toResponse(created,
                         201,
                         Constants.SUCCESS_CREATE_TRANSACTION))
                 .map(ResponseEntity::ok);
     }
 
+    @Override
+    public Mono<ResponseEntity<Flux<TransactionBatchResult>>> createTransactionsBatch(
+            @RequestBody Flux<TransactionBody> request, ServerWebExchange exchange) {
+
+        Flux<TransactionBatchItem> items = request
+                .index()
+                .map(line -> toBatchItem(line.getT1(), line.getT2()));
+
+        return Mono.just(ResponseEntity.ok(transactionService.createBatch(items)
+                .map(TransactionMapper::toBatchResult)));
+    }
+
+    private TransactionBatchItem toBatchItem(long index, TransactionBody body) {
+        // Una línea inválida se responde con su error sin interrumpir el resto del lote
+        try {
+            Utils.validateTransactionBody(body);
+            return TransactionBatchItem.of(index, TransactionMapper.toTransaction(body));
+        } catch (RuntimeException e) {
+            return TransactionBatchItem.failed(index, e);
+        }
+    }
+
     @Override
     public Mono<ResponseEntity<TemplateResponse>> updateTransaction(
             String id, @RequestBody Mono<TransactionBody> request, ServerWebExchange exchange) {
@@ -108,11 +153,10 @@ public class TransactionController implements TransactionsApi {
 
     @Override
     public Mono<ResponseEntity<TemplateResponse>> getTransactionsByProduct
-            (String productId, ServerWebExchange exchange) {
-        return transactionService.getByProductId(productId)
-                .collectList()
-                .map(transactions ->
-                        TransactionMapper.toResponse(transactions,
+            (String productId, Integer limit, String cursor, ServerWebExchange exchange) {
+        return transactionService.getPage(productId, cursor, limit)
+                .map(page ->
+                        TransactionMapper.toResponse(page,
                                 200,
                                 Constants.SUCCESS_FIND_LIST_TRANSACTION_BY_PRODUCT))
                 .map(ResponseEntity::ok)
@@ -121,11 +165,54 @@ public class TransactionController implements TransactionsApi {
     }
 
     @Override
-    public Mono<ResponseEntity<TemplateResponse>> applyMonthlyTasks(ServerWebExchange exchange) {
-        return monthlyTasksService.applyMonthlyTasks()
-                .map(transactions ->
-                        TransactionMapper.toResponse(200,
-                                Constants.SUCCESS_APPLY_MONTHLY_FEE))
+    public Mono<ResponseEntity<Flux<TransactionResponse>>> streamTransactionsByProduct(
+            String productId, ServerWebExchange exchange) {
+        return Mono.just(ResponseEntity.ok(transactionService.stream(productId)
+                .map(TransactionMapper::toTransactionResponse)));
+    }
+
+    @Override
+    public Mono<ResponseEntity<MonthlyTasksStatusResponse>> applyMonthlyTasks(ServerWebExchange exchange) {
+        return monthlyTasksService.startMonthlyTasks()
+                .map(run -> TransactionMapper.toResponseMonthlyTasksStatus(run,
+                        202,
+                        Constants.SUCCESS_MONTHLY_TASKS_STARTED))
+                .map(response -> ResponseEntity.status(HttpStatus.ACCEPTED).body(response));
+    }
+
+    @Override
+    public Mono<ResponseEntity<MonthlyTasksStatusResponse>> getMonthlyTasksStatus(ServerWebExchange exchange) {
+        return monthlyTasksService.getMonthlyTasksStatus()
+                .map(run -> TransactionMapper.toResponseMonthlyTasksStatus(run,
+                        200,
+                        Constants.SUCCESS_MONTHLY_TASKS_STATUS))
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(TransactionMapper.toResponseMonthlyTasksStatus(404,
+                                Constants.ERROR_MONTHLY_TASKS_NOT_FOUND)));
+    }
+
+    @Override
+    public Mono<ResponseEntity<TemplateResponse>> replayOutbox(String transactionId, ServerWebExchange exchange) {
+        return outboxService.replayFailed(transactionId)
+                .map(count -> TransactionMapper.toResponse(200,
+                        String.format(Constants.SUCCESS_OUTBOX_REPLAY, count)))
+                .map(ResponseEntity::ok);
+    }
+
+    @Override
+    public Mono<ResponseEntity<TemplateResponse>> backfillDailyStats(LocalDate from, ServerWebExchange exchange) {
+        return statsService.backfill(from)
+                .map(count -> TransactionMapper.toResponse(200,
+                        String.format(Constants.SUCCESS_DAILY_STATS_BACKFILL, count)))
+                .map(ResponseEntity::ok);
+    }
+
+    @Override
+    public Mono<ResponseEntity<TemplateResponse>> migrateMonetaryFields(Boolean restart, ServerWebExchange exchange) {
+        return moneyMigrationService.migrate(Boolean.TRUE.equals(restart))
+                .map(count -> TransactionMapper.toResponse(200,
+                        String.format(Constants.SUCCESS_MONEY_MIGRATION, count)))
                 .map(ResponseEntity::ok);
     }
 
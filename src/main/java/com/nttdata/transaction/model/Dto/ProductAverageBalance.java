@@ -0,0 +1,20 @@
+package com.nttdata.transaction.model.Dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Saldo promedio diario de un producto en un mes.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductAverageBalance {
+
+    private String productId;
+
+    private BigDecimal averageDailyBalance;
+}
@@ -0,0 +1,57 @@
+package com.nttdata.transaction.model.Dto;
+
+import com.nttdata.transaction.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ConvertOperators;
+
+import java.math.BigDecimal;
+
+/**
+ * Totales de comisiones de un producto calculados en Mongo ($group por producto origen).
+ * El total se acumula en céntimos exactos para no arrastrar errores de coma flotante; cada comisión se
+ * convierte a céntimos con el mismo redondeo que {@link Money#of(BigDecimal)} aplica al cobrarla, tanto en
+ * la agregación ({@link #FEE_MINOR}) como en memoria ({@link #add(BigDecimal)}), de modo que el reporte
+ * coincide al céntimo con lo cobrado.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductCommissionTotal {
+
+    /**
+     * Comisión en céntimos, redondeando el medio céntimo hacia arriba:
+     * {@code {$toLong: {$floor: {$add: [{$multiply: ["$transactionFee", 100]}, 0.5]}}}}.
+     * La comisión se guarda como Decimal128 (las double heredadas las convierte la migración a Decimal128), así
+     * que la aritmética es decimal exacta y el resultado es el HALF_UP de {@link Money#of(BigDecimal)}.
+     */
+    public static final AggregationExpression FEE_MINOR = ConvertOperators.valueOf(
+                    ArithmeticOperators.valueOf(ArithmeticOperators.valueOf(
+                                    ArithmeticOperators.valueOf("transactionFee").multiplyBy(100))
+                            .add(0.5))
+                            .floor())
+            .convertToLong();
+
+    @Id
+    private String productId;
+
+    private long totalTransactions;
+
+    private long totalFeeMinor;
+
+    public BigDecimal getTotalFee() {
+        return BigDecimal.valueOf(totalFeeMinor, 2);
+    }
+
+    /**
+     * Acumula una comisión con el mismo redondeo que el cobro y que {@link #FEE_MINOR}.
+     */
+    public void add(BigDecimal fee) {
+        totalTransactions++;
+        totalFeeMinor += Money.of(fee).getMinor();
+    }
+}
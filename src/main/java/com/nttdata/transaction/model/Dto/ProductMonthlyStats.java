@@ -0,0 +1,24 @@
+package com.nttdata.transaction.model.Dto;
+
+import com.nttdata.transaction.model.ProductDailyStats;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+
+import java.util.List;
+
+/**
+ * Resúmenes diarios de un producto en un mes, ordenados por día; resultado de la agregación
+ * mensual por producto.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductMonthlyStats {
+
+    @Id
+    private String productId;
+
+    private List<ProductDailyStats> days;
+}
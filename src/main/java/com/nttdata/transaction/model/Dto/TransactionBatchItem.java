@@ -0,0 +1,43 @@
+package com.nttdata.transaction.model.Dto;
+
+import com.nttdata.transaction.model.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Línea de un lote de transacciones junto con su resultado de procesamiento.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionBatchItem {
+
+    /**
+     * Posición de la línea dentro del lote.
+     */
+    private long index;
+
+    private Transaction transaction;
+
+    /**
+     * Error que impidió registrar la transacción; nulo si fue registrada.
+     */
+    private Throwable error;
+
+    public static TransactionBatchItem of(long index, Transaction transaction) {
+        return new TransactionBatchItem(index, transaction, null);
+    }
+
+    public static TransactionBatchItem failed(long index, Throwable error) {
+        return new TransactionBatchItem(index, null, error);
+    }
+
+    public TransactionBatchItem reject(Throwable cause) {
+        return new TransactionBatchItem(index, transaction, cause);
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+}
@@ -0,0 +1,54 @@
+package com.nttdata.transaction.model.Dto;
+
+import com.nttdata.transaction.model.Transaction;
+import com.nttdata.transaction.utils.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Posición de continuación de un listado ordenado por {@code dateTime} e {@code _id}.
+ * Se entrega al cliente como un token opaco.
+ */
+@Data
+@AllArgsConstructor
+public class TransactionCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private LocalDateTime dateTime;
+
+    private String id;
+
+    public static TransactionCursor after(Transaction transaction) {
+        return new TransactionCursor(transaction.getDateTime(), transaction.getId());
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((dateTime + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un token recibido del cliente.
+     *
+     * @throws IllegalArgumentException si el token no es válido
+     */
+    public static TransactionCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            if (separator <= 0 || separator == value.length() - 1) {
+                throw new IllegalArgumentException(Constants.ERROR_INVALID_CURSOR);
+            }
+            return new TransactionCursor(LocalDateTime.parse(value.substring(0, separator)),
+                    value.substring(separator + 1));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(Constants.ERROR_INVALID_CURSOR, e);
+        }
+    }
+}
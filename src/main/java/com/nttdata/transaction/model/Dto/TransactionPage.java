@@ -0,0 +1,24 @@
+package com.nttdata.transaction.model.Dto;
+
+import com.nttdata.transaction.model.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página de un listado de transacciones.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionPage {
+
+    private List<Transaction> transactions;
+
+    /**
+     * Token para pedir la página siguiente; nulo si no hay más resultados.
+     */
+    private String nextCursor;
+}
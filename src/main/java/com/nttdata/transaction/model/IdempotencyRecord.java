@@ -0,0 +1,61 @@
+package com.nttdata.transaction.model;
+
+import com.nttdata.transaction.model.Type.IdempotencyStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Registro de una clave de idempotencia (ámbito:clave) y del resultado de su primera ejecución.
+ * Expira por índice TTL sobre {@code createdAt}.
+ */
+@Document(collection = "idempotency_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+
+    @Id
+    private String id;
+
+    /**
+     * Huella del contenido de la petición, para detectar una clave reutilizada con otros datos.
+     */
+    private String fingerprint;
+
+    private IdempotencyStatus status;
+
+    private Transaction transaction;
+
+    private LocalDateTime createdAt;
+
+    /**
+     * Momento en que la ejecución en curso reservó la clave; identifica la reserva en las escrituras.
+     */
+    private LocalDateTime claimedAt;
+
+    /**
+     * Último latido de la ejecución en curso; si supera el plazo configurado la clave pasa a UNKNOWN.
+     */
+    private LocalDateTime heartbeatAt;
+
+    /**
+     * Error de una ejecución que falló después de aplicarse.
+     */
+    private String error;
+
+    private LocalDateTime completedAt;
+
+    /**
+     * Construye el identificador del registro a partir del ámbito (endpoint) y la clave del cliente.
+     */
+    public static String buildId(String scope, String key) {
+        return scope + ":" + key;
+    }
+}
@@ -0,0 +1,34 @@
+package com.nttdata.transaction.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Avance de una migración de datos recorrida por {@code _id}: permite retomarla desde el último
+ * lote confirmado si se interrumpe.
+ */
+@Document(collection = "migration_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MigrationCheckpoint {
+
+    @Id
+    private String id;
+
+    /**
+     * Último {@code _id} cuyo lote y todos los anteriores quedaron migrados.
+     */
+    private String lastId;
+
+    private long migrated;
+
+    private LocalDateTime updatedAt;
+}
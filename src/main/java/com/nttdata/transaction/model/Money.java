@@ -0,0 +1,172 @@
+package com.nttdata.transaction.model;
+
+import com.nttdata.transaction.utils.Constants;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+/**
+ * Importe monetario con dos decimales fijos, representado en céntimos ({@code long}) y moneda.
+ * Las operaciones usan aritmética de {@code long} sin {@link BigDecimal} intermedios. Los importes con
+ * más de dos decimales se redondean al céntimo (HALF_UP): el importe del cliente se valida antes, en
+ * {@code Utils.validateTransactionBody}. Uno que no cabe en un {@code long} se rechaza con
+ * {@link IllegalArgumentException}.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+
+    private static final double MINOR_TOLERANCE = 1e-6;
+    private static final double MAX_EXACT_DOUBLE = 1L << 52;
+
+    private static final Money ZERO = new Money(0L, Constants.DEFAULT_CURRENCY);
+
+    private final long minor;
+    private final String currency;
+
+    private Money(long minor, String currency) {
+        this.minor = minor;
+        this.currency = currency;
+    }
+
+    public static Money zero() {
+        return ZERO;
+    }
+
+    public static Money ofMinor(long minor) {
+        return minor == 0L ? ZERO : new Money(minor, Constants.DEFAULT_CURRENCY);
+    }
+
+    public static Money ofMinor(long minor, String currency) {
+        return new Money(minor, Objects.requireNonNull(currency));
+    }
+
+    /**
+     * Convierte un importe decimal redondeando al céntimo (HALF_UP), como los saldos y límites que
+     * devuelve el product-service o que ya están guardados; {@code null} equivale a cero.
+     *
+     * @throws IllegalArgumentException si el importe está fuera de rango
+     */
+    public static Money of(BigDecimal amount) {
+        if (amount == null) {
+            return ZERO;
+        }
+        return ofCents(amount.setScale(SCALE, RoundingMode.HALF_UP));
+    }
+
+    /**
+     * Indica si el importe tiene como máximo dos decimales significativos.
+     */
+    public static boolean hasValidScale(BigDecimal amount) {
+        return amount.stripTrailingZeros().scale() <= SCALE;
+    }
+
+    /**
+     * Convierte un importe en coma flotante (comisiones) redondeando al céntimo; {@code null} equivale a cero.
+     */
+    public static Money of(Double amount) {
+        if (amount == null) {
+            return ZERO;
+        }
+        // Si el valor ya tiene como máximo dos decimales se evita pasar por su representación en texto
+        double scaled = amount * 100;
+        long rounded = Math.round(scaled);
+        if (Math.abs(scaled - rounded) < MINOR_TOLERANCE && Math.abs(scaled) < MAX_EXACT_DOUBLE) {
+            return ofMinor(rounded);
+        }
+        // Las comisiones calculadas pueden tener más decimales: se redondean al céntimo
+        return ofCents(BigDecimal.valueOf(amount).setScale(SCALE, RoundingMode.HALF_UP));
+    }
+
+    private static Money ofCents(BigDecimal cents) {
+        try {
+            return ofMinor(cents.unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(Constants.ERROR_AMOUNT_OUT_OF_RANGE, e);
+        }
+    }
+
+    public Money plus(Money other) {
+        checkCurrency(other);
+        try {
+            return ofMinor(Math.addExact(minor, other.minor), currency);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(Constants.ERROR_AMOUNT_OUT_OF_RANGE, e);
+        }
+    }
+
+    public Money minus(Money other) {
+        checkCurrency(other);
+        try {
+            return ofMinor(Math.subtractExact(minor, other.minor), currency);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(Constants.ERROR_AMOUNT_OUT_OF_RANGE, e);
+        }
+    }
+
+    public boolean isGreaterThan(Money other) {
+        checkCurrency(other);
+        return minor > other.minor;
+    }
+
+    public boolean isLessThan(Money other) {
+        checkCurrency(other);
+        return minor < other.minor;
+    }
+
+    public boolean isPositive() {
+        return minor > 0L;
+    }
+
+    public long getMinor() {
+        return minor;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    public double toDouble() {
+        return minor / 100.0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        checkCurrency(other);
+        return Long.compare(minor, other.minor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money)) {
+            return false;
+        }
+        Money money = (Money) o;
+        return minor == money.minor && currency.equals(money.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minor, currency);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+    private void checkCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException(String.format(Constants.ERROR_CURRENCY_MISMATCH,
+                    currency, other.currency));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.nttdata.transaction.model;
+
+import com.nttdata.transaction.model.Type.MonthlyJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Avance de las tareas mensuales de un producto en un periodo; el id es "periodo:productId".
+ */
+@Document(collection = "monthly_job_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MonthlyJobCheckpoint {
+
+    @Id
+    private String id;
+
+    private String period;
+
+    private String productId;
+
+    private MonthlyJobStatus status;
+
+    private String lastError;
+
+    /**
+     * Instancia que reclamó el producto y época del lease de su partición con que lo hizo: solo
+     * ese dueño puede cerrar el punto de control, y solo una época posterior puede reclamarlo.
+     */
+    private String owner;
+
+    private long leaseEpoch;
+
+    /**
+     * Comisión de mantenimiento en curso, con su id ya asignado, y saldos del producto antes y después
+     * de descontarla; el id hace idempotente el cobro al retomar un producto interrumpido.
+     */
+    private Transaction feeTransaction;
+
+    private BigDecimal balanceBefore;
+
+    private BigDecimal balanceAfter;
+
+    private LocalDateTime updatedAt;
+
+    public static String buildId(String period, String productId) {
+        return period + ":" + productId;
+    }
+}
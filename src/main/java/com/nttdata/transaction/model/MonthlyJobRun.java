@@ -0,0 +1,47 @@
+package com.nttdata.transaction.model;
+
+import com.nttdata.transaction.model.Type.MonthlyJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ejecución de las tareas mensuales de un periodo (yyyy-MM) y su avance. Los contadores
+ * corresponden al último arranque: un reinicio del mismo mes vuelve a contar desde cero.
+ */
+@Document(collection = "monthly_job_runs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MonthlyJobRun {
+
+    @Id
+    private String id;
+
+    private MonthlyJobStatus status;
+
+    private long totalProducts;
+
+    private long processedProducts;
+
+    /**
+     * Productos omitidos porque ya se completaron en un arranque anterior del mismo mes.
+     */
+    private long skippedProducts;
+
+    private long failedProducts;
+
+    private String lastError;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime finishedAt;
+}
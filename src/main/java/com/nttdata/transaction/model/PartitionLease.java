@@ -0,0 +1,50 @@
+package com.nttdata.transaction.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease de una partición de un trabajo; el id es "trabajo:partición". Una instancia solo procesa
+ * la partición mientras es su dueña y renueva {@code expiresAt} con latidos.
+ */
+@Document(collection = "partition_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PartitionLease {
+
+    @Id
+    private String id;
+
+    private String job;
+
+    private int partition;
+
+    private String owner;
+
+    private LocalDateTime expiresAt;
+
+    /**
+     * Se incrementa cada vez que una instancia obtiene el lease: identifica la tenencia actual y
+     * permite rechazar el trabajo de un dueño anterior que siga en curso.
+     */
+    private long epoch;
+
+    /**
+     * Último periodo en que la partición se procesó por completo.
+     */
+    private String completedPeriod;
+
+    private LocalDateTime updatedAt;
+
+    public static String buildId(String job, int partition) {
+        return job + ":" + partition;
+    }
+}
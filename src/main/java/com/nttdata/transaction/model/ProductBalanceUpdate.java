@@ -0,0 +1,28 @@
+package com.nttdata.transaction.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Saldo resultante de un producto tras registrar una transacción.
+ * Al ser un valor absoluto, aplicarlo más de una vez es idempotente.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductBalanceUpdate {
+
+    private String productId;
+
+    private BigDecimal balance;
+
+    /**
+     * Posición del saldo entre los del mismo producto; el mayor pendiente es el más reciente.
+     */
+    private Long sequence;
+}
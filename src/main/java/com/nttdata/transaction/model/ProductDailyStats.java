@@ -0,0 +1,68 @@
+package com.nttdata.transaction.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Resumen diario de movimientos por producto y día (yyyy-MM-dd), mantenido con incrementos
+ * atómicos al registrar cada transacción. Los importes se guardan en céntimos para poder usar $inc.
+ */
+@Document(collection = "product_daily_stats")
+@CompoundIndexes({
+        @CompoundIndex(name = "product_date", def = "{'productId': 1, 'date': 1}"),
+        @CompoundIndex(name = "date_product", def = "{'date': 1, 'productId': 1}")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductDailyStats {
+
+    @Id
+    private String id;
+
+    private String productId;
+
+    private String date;
+
+    /**
+     * Variación neta del saldo en el día, en céntimos.
+     */
+    private long netDelta;
+
+    /**
+     * Saldo al cierre del día, en céntimos.
+     */
+    private long closingBalance;
+
+    /**
+     * Secuencia del producto con la que se escribió el cierre: un registro con una secuencia menor
+     * (calculado sobre un saldo anterior) no lo sobrescribe.
+     */
+    private long closingSequence;
+
+    private long txCount;
+
+    /**
+     * Comisiones cobradas en el día, en céntimos.
+     */
+    private long feeSum;
+
+    private LocalDateTime updatedAt;
+
+    /**
+     * Construye el identificador del resumen a partir del producto y el día.
+     */
+    public static String buildId(String productId, LocalDate date) {
+        return productId + ":" + date;
+    }
+}
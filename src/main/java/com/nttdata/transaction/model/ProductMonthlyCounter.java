@@ -0,0 +1,58 @@
+package com.nttdata.transaction.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+/**
+ * Contador materializado de transacciones por producto y mes (yyyy-MM).
+ * Se usa para validar el límite mensual de movimientos y el cobro de comisiones
+ * sin recorrer el historial completo del mes.
+ */
+@Document(collection = "product_monthly_counters")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductMonthlyCounter {
+
+    @Id
+    private String id;
+
+    private String productId;
+
+    private String month;
+
+    private long count;
+
+    /**
+     * Indica si ya se sumaron las transacciones anteriores a la creación del contador.
+     */
+    private boolean seeded;
+
+    /**
+     * Momento desde el que las transacciones llegan por incrementos; las anteriores se cuentan en el
+     * historial.
+     */
+    private LocalDateTime createdAt;
+
+    /**
+     * Transacciones del historial (anteriores a {@link #createdAt}) ya incluidas en {@link #count}.
+     */
+    private long historyCount;
+
+    private LocalDateTime updatedAt;
+
+    /**
+     * Construye el identificador del contador a partir del producto y el mes.
+     */
+    public static String buildId(String productId, YearMonth month) {
+        return productId + ":" + month;
+    }
+}
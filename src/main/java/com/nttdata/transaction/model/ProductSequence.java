@@ -0,0 +1,41 @@
+package com.nttdata.transaction.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Último número de secuencia asignado a los saldos pendientes (outbox) y a los cierres diarios
+ * de un producto. Se incrementa dentro del carril del producto, por lo que refleja el orden en que se aplicaron
+ * sus movimientos, con independencia del reloj de cada instancia.
+ *
+ * <p>También guarda el lease con que una instancia propaga los saldos pendientes del producto y
+ * la secuencia más alta ya enviada al product-service.</p>
+ */
+@Document(collection = "product_sequences")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSequence {
+
+    @Id
+    private String productId;
+
+    private long value;
+
+    /**
+     * Instancia que está propagando el saldo del producto y hasta cuándo lo tiene reservado.
+     */
+    private String dispatchOwner;
+
+    private LocalDateTime dispatchUntil;
+
+    /**
+     * Secuencia del último saldo enviado al product-service; uno igual o menor ya no se envía.
+     */
+    private Long dispatchedSequence;
+}
@@ -6,12 +6,21 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Document(collection = "transactions")
+@CompoundIndexes({
+        @CompoundIndex(name = "source_dateTime_id", def = "{'sourceProductId': 1, 'dateTime': 1, '_id': 1}"),
+        @CompoundIndex(name = "dateTime_id", def = "{'dateTime': 1, '_id': 1}"),
+        @CompoundIndex(name = "target_dateTime", def = "{'targetProductId': 1, 'dateTime': 1}"),
+        @CompoundIndex(name = "outbox_due", def = "{'outbox.status': 1, 'outbox.nextAttemptAt': 1}"),
+        @CompoundIndex(name = "outbox_pending_dateTime", def = "{'outbox.pendingProductIds': 1, 'dateTime': -1}")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -27,9 +36,11 @@ public class Transaction {
 
     private LocalDateTime dateTime;
 
-    private Double transactionFee;
+    private BigDecimal transactionFee;
 
     private String sourceProductId;
 
     private String targetProductId;
+
+    private TransactionOutbox outbox;
 }
@@ -0,0 +1,35 @@
+package com.nttdata.transaction.model;
+
+import com.nttdata.transaction.model.Type.OutboxStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Registro outbox embebido en la transacción: se guarda en la misma escritura que la
+ * transacción y describe los saldos que aún deben propagarse al product-service.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionOutbox {
+
+    private OutboxStatus status;
+
+    private List<ProductBalanceUpdate> updates;
+
+    private List<String> pendingProductIds;
+
+    private int attempts;
+
+    private String lastError;
+
+    private LocalDateTime nextAttemptAt;
+
+    private LocalDateTime dispatchedAt;
+}
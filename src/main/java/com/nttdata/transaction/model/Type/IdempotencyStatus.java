@@ -0,0 +1,29 @@
+package com.nttdata.transaction.model.Type;
+
+/**
+ * Estado de la ejecución asociada a una clave de idempotencia.
+ */
+public enum IdempotencyStatus {
+
+    /**
+     * La primera petición con la clave se está procesando.
+     */
+    IN_PROGRESS,
+
+    /**
+     * La transacción quedó registrada; los reintentos reciben el resultado guardado.
+     */
+    COMPLETED,
+
+    /**
+     * La operación se aplicó (o pudo aplicarse) y un paso posterior falló; los reintentos reciben
+     * el mismo error y no la vuelven a ejecutar.
+     */
+    FAILED_AFTER_APPLY,
+
+    /**
+     * La ejecución dejó de renovar su reserva sin guardar un resultado: no se sabe si se aplicó.
+     * La clave no se vuelve a ejecutar y la operación requiere conciliación.
+     */
+    UNKNOWN
+}
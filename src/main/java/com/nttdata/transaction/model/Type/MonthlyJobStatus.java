@@ -0,0 +1,34 @@
+package com.nttdata.transaction.model.Type;
+
+/**
+ * Estado de una ejecución de las tareas mensuales o del procesamiento de un producto dentro de ella.
+ */
+public enum MonthlyJobStatus {
+
+    /**
+     * En curso; en un producto indica que pudo quedar a medias si la ejecución se interrumpió.
+     */
+    RUNNING,
+
+    /**
+     * Terminado correctamente.
+     */
+    COMPLETED,
+
+    /**
+     * Terminado con error; se reintenta en la siguiente ejecución del mismo mes.
+     */
+    FAILED,
+
+    /**
+     * Comisión de mantenimiento registrada en el producto antes de descontarla, sin confirmación del
+     * product-service: al retomar solo se vuelve a cobrar, con la misma transacción, si esta no existe.
+     */
+    FEE_PENDING,
+
+    /**
+     * Comisión descontada del saldo cuya transacción aún no está registrada: al retomar solo se
+     * registra la transacción.
+     */
+    FEE_APPLIED
+}
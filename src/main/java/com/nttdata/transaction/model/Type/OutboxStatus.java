@@ -0,0 +1,22 @@
+package com.nttdata.transaction.model.Type;
+
+/**
+ * Estado de la propagación de saldos de una transacción registrada en modo outbox.
+ */
+public enum OutboxStatus {
+
+    /**
+     * Pendiente de aplicar en el product-service.
+     */
+    PENDING,
+
+    /**
+     * Todos los saldos fueron aplicados.
+     */
+    DISPATCHED,
+
+    /**
+     * Se agotaron los reintentos; requiere un replay manual.
+     */
+    FAILED
+}
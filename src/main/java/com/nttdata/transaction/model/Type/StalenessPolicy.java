@@ -0,0 +1,23 @@
+package com.nttdata.transaction.model.Type;
+
+/**
+ * Antigüedad máxima aceptada por quien consulta un producto.
+ * Los valores concretos se configuran en {@code transaction.product-cache}.
+ */
+public enum StalenessPolicy {
+
+    /**
+     * Siempre consulta al product-service (mutaciones de saldo).
+     */
+    STRICT,
+
+    /**
+     * Acepta una copia reciente para búsquedas previas a una operación (p. ej. tarjetas de débito).
+     */
+    LOOKUP,
+
+    /**
+     * Acepta datos con mayor antigüedad (reportes).
+     */
+    REPORT
+}
@@ -4,21 +4,22 @@ import com.nttdata.transaction.model.Transaction;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
-import java.util.List;
 
 @Repository
-public interface TransactionRepository extends ReactiveMongoRepository<Transaction, String> {
+public interface TransactionRepository extends ReactiveMongoRepository<Transaction, String>,
+        TransactionRepositoryCustom {
 
     Flux<Transaction> findBySourceProductId(String sourceProductId);
     Flux<Transaction> findBySourceProductIdAndDateTimeBetween(String sourceProductId,
                                                               LocalDateTime start,
                                                               LocalDateTime end);
 
-    Flux<Transaction> findByDateTimeBetween(LocalDateTime start, LocalDateTime end);
+    Mono<Long> countBySourceProductIdAndDateTimeBetween(String sourceProductId,
+                                                        LocalDateTime start,
+                                                        LocalDateTime end);
 
-    Flux<Transaction> findByDateRangeAndProductIds(List<String> productIds,
-                                                   LocalDateTime localDateTime,
-                                                   LocalDateTime localDateTime1);
+    Flux<Transaction> findByDateTimeBetween(LocalDateTime start, LocalDateTime end);
 }
@@ -0,0 +1,64 @@
+package com.nttdata.transaction.repository;
+
+import com.nttdata.transaction.model.Dto.ProductCommissionTotal;
+import com.nttdata.transaction.model.Dto.TransactionCursor;
+import com.nttdata.transaction.model.Transaction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consultas sobre transacciones resueltas con agregaciones en Mongo.
+ */
+public interface TransactionRepositoryCustom {
+
+    /**
+     * Suma las comisiones cobradas por producto origen dentro del rango, devolviendo una fila por producto.
+     */
+    Flux<ProductCommissionTotal> sumCommissionsByProduct(Collection<String> productIds,
+                                                         LocalDateTime start,
+                                                         LocalDateTime end);
+
+    /**
+     * Ids de los productos indicados que participaron en alguna transacción del rango,
+     * como origen o como destino.
+     */
+    Flux<String> findActiveProductIds(Collection<String> productIds,
+                                      LocalDateTime start,
+                                      LocalDateTime end);
+
+    /**
+     * Transacciones del periodo en las que participan los productos, como origen o destino.
+     * Solo se cargan los campos usados por los reportes: productos y comisión.
+     */
+    Flux<Transaction> findReportableByProducts(Collection<String> productIds,
+                                               LocalDateTime start,
+                                               LocalDateTime end);
+
+    /**
+     * Página de transacciones ordenadas por fecha e id, a continuación del cursor indicado.
+     *
+     * @param sourceProductId Producto origen o nulo para todas las transacciones
+     * @param after Posición desde la que continuar o nulo para la primera página
+     */
+    Flux<Transaction> findPage(String sourceProductId, TransactionCursor after, int limit);
+
+    /**
+     * Todas las transacciones ordenadas por fecha e id, leídas del cursor de Mongo por lotes.
+     *
+     * @param sourceProductId Producto origen o nulo para todas las transacciones
+     */
+    Flux<Transaction> streamOrdered(String sourceProductId, int batchSize);
+
+    /**
+     * Inserta las transacciones con un solo insertMany no ordenado: un documento rechazado no impide
+     * insertar los demás.
+     *
+     * @return Mensaje de error de cada transacción no insertada, por su posición en la lista
+     */
+    Mono<Map<Integer, String>> insertUnordered(List<Transaction> transactions);
+}
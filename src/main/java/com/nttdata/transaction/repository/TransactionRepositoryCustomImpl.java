@@ -0,0 +1,140 @@
+package com.nttdata.transaction.repository;
+
+import com.nttdata.transaction.model.Dto.ProductCommissionTotal;
+import com.nttdata.transaction.model.Dto.TransactionCursor;
+import com.nttdata.transaction.model.Transaction;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class TransactionRepositoryCustomImpl implements TransactionRepositoryCustom {
+
+    private static final Sort KEYSET_ORDER = Sort.by(Sort.Direction.ASC, "dateTime", "id");
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Flux<ProductCommissionTotal> sumCommissionsByProduct(Collection<String> productIds,
+                                                                LocalDateTime start,
+                                                                LocalDateTime end) {
+        if (productIds.isEmpty()) {
+            return Flux.empty();
+        }
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("sourceProductId").in(productIds)
+                        .and("dateTime").gte(start).lte(end)
+                        .and("transactionFee").gt(0)),
+                // Cada comisión se pasa a céntimos antes de sumar: $sum sobre dobles acumula errores
+                Aggregation.group("sourceProductId")
+                        .count().as("totalTransactions")
+                        .sum(ProductCommissionTotal.FEE_MINOR).as("totalFeeMinor"),
+                Aggregation.sort(Sort.Direction.ASC, "_id"));
+
+        return mongoTemplate.aggregate(aggregation, Transaction.class, ProductCommissionTotal.class);
+    }
+
+    @Override
+    public Flux<String> findActiveProductIds(Collection<String> productIds,
+                                             LocalDateTime start,
+                                             LocalDateTime end) {
+        if (productIds.isEmpty()) {
+            return Flux.empty();
+        }
+
+        // Un distinct por campo para que cada consulta use su propio índice (campo + dateTime)
+        return Flux.merge(distinctIds("sourceProductId", productIds, start, end),
+                        distinctIds("targetProductId", productIds, start, end))
+                .distinct();
+    }
+
+    private Flux<String> distinctIds(String field, Collection<String> productIds,
+                                     LocalDateTime start, LocalDateTime end) {
+        Query query = Query.query(Criteria.where(field).in(productIds)
+                .and("dateTime").gte(start).lte(end));
+        return mongoTemplate.findDistinct(query, field, Transaction.class, String.class);
+    }
+
+    @Override
+    public Flux<Transaction> findReportableByProducts(Collection<String> productIds,
+                                                      LocalDateTime start,
+                                                      LocalDateTime end) {
+        if (productIds.isEmpty()) {
+            return Flux.empty();
+        }
+
+        // Cada rama del $or usa su índice (campo + dateTime) y Mongo une los resultados sin duplicados
+        Query query = Query.query(new Criteria().orOperator(
+                Criteria.where("sourceProductId").in(productIds).and("dateTime").gte(start).lte(end),
+                Criteria.where("targetProductId").in(productIds).and("dateTime").gte(start).lte(end)));
+        query.fields().include("sourceProductId", "targetProductId", "transactionFee");
+        return mongoTemplate.find(query, Transaction.class);
+    }
+
+    @Override
+    public Flux<Transaction> findPage(String sourceProductId, TransactionCursor after, int limit) {
+        Criteria criteria = productCriteria(sourceProductId);
+        if (after != null) {
+            // Keyset: estrictamente después de (dateTime, _id) del último elemento entregado
+            criteria = criteria.orOperator(
+                    Criteria.where("dateTime").gt(after.getDateTime()),
+                    Criteria.where("dateTime").is(after.getDateTime()).and("id").gt(after.getId()));
+        }
+        Query query = Query.query(criteria).with(KEYSET_ORDER).limit(limit);
+        return mongoTemplate.find(query, Transaction.class);
+    }
+
+    @Override
+    public Flux<Transaction> streamOrdered(String sourceProductId, int batchSize) {
+        Query query = Query.query(productCriteria(sourceProductId)).with(KEYSET_ORDER).cursorBatchSize(batchSize);
+        return mongoTemplate.find(query, Transaction.class);
+    }
+
+    @Override
+    public Mono<Map<Integer, String>> insertUnordered(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+
+        return Mono.defer(() -> {
+            List<Document> documents = transactions.stream()
+                    .map(tx -> {
+                        // El id se asigna antes de insertar para que la transacción devuelta lo conserve
+                        if (tx.getId() == null) {
+                            tx.setId(new ObjectId().toHexString());
+                        }
+                        Document document = new Document();
+                        mongoTemplate.getConverter().write(tx, document);
+                        return document;
+                    })
+                    .collect(Collectors.toList());
+            return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Transaction.class))
+                    .flatMap(collection -> Mono.from(collection.insertMany(documents,
+                            new InsertManyOptions().ordered(false))))
+                    .map(result -> Map.<Integer, String>of())
+                    .onErrorResume(MongoBulkWriteException.class, e -> Mono.just(e.getWriteErrors().stream()
+                            .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage))));
+        });
+    }
+
+    private Criteria productCriteria(String sourceProductId) {
+        return sourceProductId != null ? Criteria.where("sourceProductId").is(sourceProductId) : new Criteria();
+    }
+}
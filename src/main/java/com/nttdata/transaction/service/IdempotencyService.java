@@ -0,0 +1,22 @@
+package com.nttdata.transaction.service;
+
+import com.nttdata.transaction.model.Transaction;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+
+    /**
+     * Ejecuta la operación una sola vez por clave de idempotencia. Un reintento con la misma clave
+     * recibe la transacción guardada sin volver a ejecutarla, y las peticiones concurrentes con la
+     * misma clave esperan el resultado de la primera ejecución.
+     *
+     * @param scope Ámbito de la clave (endpoint que la recibe)
+     * @param key Clave enviada por el cliente; si es nula la operación se ejecuta directamente
+     * @param request Transacción solicitada, usada para detectar claves reutilizadas con otros datos
+     * @param operation Operación a ejecutar
+     * @return Mono con la transacción registrada
+     */
+    Mono<Transaction> execute(String scope, String key, Transaction request, Supplier<Mono<Transaction>> operation);
+}
@@ -0,0 +1,16 @@
+package com.nttdata.transaction.service;
+
+import reactor.core.publisher.Mono;
+
+public interface MoneyStorageMigrationService {
+
+    /**
+     * Reescribe como Decimal128 los importes de transacciones que aún están guardados como texto.
+     * Avanza por lotes en orden de {@code _id} y registra un punto de control tras cada lote,
+     * de modo que una ejecución interrumpida continúa donde quedó.
+     *
+     * @param restart {@code true} para ignorar el punto de control y recorrer toda la colección
+     * @return Mono con la cantidad de transacciones migradas en esta ejecución
+     */
+    Mono<Long> migrate(boolean restart);
+}
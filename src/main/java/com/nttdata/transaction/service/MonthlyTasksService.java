@@ -1,5 +1,6 @@
 package com.nttdata.transaction.service;
 
+import com.nttdata.transaction.model.MonthlyJobRun;
 import reactor.core.publisher.Mono;
 
 public interface MonthlyTasksService {
@@ -7,6 +8,23 @@ public interface MonthlyTasksService {
      * Simula una ejecución mensual para aplicar la comisión de mantenimiento
      * a todos los productos que tienen un monto de mantenimiento mayor a 0.
      * Registra una transacción por la comisión y actualiza el saldo del producto.
+     * Completa cuando se procesaron todos los productos.
      */
     public Mono<Void> applyMonthlyTasks();
+
+    /**
+     * Inicia en segundo plano la ejecución mensual del periodo actual y devuelve su estado inicial.
+     * Si ya hay una ejecución en curso en esta instancia devuelve su estado sin iniciar otra.
+     * Los productos completados en un arranque anterior del mismo mes no se vuelven a procesar.
+     *
+     * @return Mono con la ejecución iniciada o en curso
+     */
+    Mono<MonthlyJobRun> startMonthlyTasks();
+
+    /**
+     * Obtiene el estado y avance de la ejecución mensual más reciente.
+     *
+     * @return Mono con la ejecución o vacío si nunca se ejecutó
+     */
+    Mono<MonthlyJobRun> getMonthlyTasksStatus();
 }
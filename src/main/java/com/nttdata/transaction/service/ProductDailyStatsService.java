@@ -0,0 +1,66 @@
+package com.nttdata.transaction.service;
+
+import com.nttdata.transaction.model.Dto.BankProductDTO;
+import com.nttdata.transaction.model.Dto.ProductAverageBalance;
+import com.nttdata.transaction.model.Transaction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface ProductDailyStatsService {
+
+    /**
+     * Acumula en los resúmenes diarios del producto las transacciones ya registradas. Debe llamarse
+     * dentro del carril del producto, después de aplicar su saldo.
+     *
+     * @param product Producto con el saldo resultante de las transacciones
+     * @param transactions Transacciones registradas que afectan al producto, en orden
+     * @return Mono vacío cuando los resúmenes se actualizan
+     */
+    Mono<Void> record(BankProductDTO product, List<Transaction> transactions);
+
+    /**
+     * Calcula el saldo promedio diario del producto en el mes a partir de los resúmenes diarios.
+     *
+     * @param product Producto con su saldo actual
+     * @param month Mes a evaluar
+     * @return Mono con el saldo promedio diario
+     */
+    Mono<BigDecimal> averageDailyBalance(BankProductDTO product, YearMonth month);
+
+    /**
+     * Calcula el saldo promedio diario de varios productos en el mes leyendo sus resúmenes diarios
+     * en una sola consulta.
+     *
+     * @param products Productos con su saldo actual
+     * @param month Mes a evaluar
+     * @return Mono con el saldo promedio diario por id de producto
+     */
+    Mono<Map<String, BigDecimal>> averageDailyBalances(List<BankProductDTO> products, YearMonth month);
+
+    /**
+     * Calcula en una sola agregación el saldo promedio diario del mes de los productos indicados con
+     * movimientos en él, emitiendo un resultado por producto a medida que llega del servidor.
+     * Los productos sin movimientos en el mes no se emiten: su promedio es su saldo actual.
+     *
+     * @param month Mes a evaluar
+     * @param productIds Productos a evaluar; el filtro se aplica en la agregación
+     * @return Flux con el saldo promedio diario de cada producto
+     */
+    Flux<ProductAverageBalance> streamMonthlyAverages(YearMonth month, Collection<String> productIds);
+
+    /**
+     * Reconstruye los resúmenes diarios de todos los productos bancarios desde el historial. Cada
+     * producto se reconstruye dentro de su carril, sin movimientos concurrentes.
+     *
+     * @param from Primer día a reconstruir
+     * @return Mono con el número de resúmenes escritos
+     */
+    Mono<Long> backfill(LocalDate from);
+}
@@ -3,8 +3,12 @@ package com.nttdata.transaction.service;
 import com.nttdata.transaction.model.Dto.BankProductDTO;
 import com.nttdata.transaction.model.Dto.BankProductResponse;
 import com.nttdata.transaction.model.Dto.CardProductResponse;
+import com.nttdata.transaction.model.Type.StalenessPolicy;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.List;
+
 public interface ProductService {
     /**
      * Busca un producto por Id.
@@ -13,6 +17,25 @@ public interface ProductService {
      */
     public Mono<BankProductResponse> getProductById(String productId);
 
+    /**
+     * Busca un producto por Id aceptando una copia local según la política indicada.
+     *
+     * @param productId Identificador del producto
+     * @param policy Antigüedad máxima aceptada por quien consulta
+     * @return Mono con el producto obtenido
+     */
+    Mono<BankProductResponse> getProductById(String productId, StalenessPolicy policy);
+
+    /**
+     * Busca un producto por Id reutilizando la copia local solo si se obtuvo del product-service
+     * (o se actualizó) después del instante indicado, p. ej. el inicio de la petición en curso.
+     *
+     * @param productId Identificador del producto
+     * @param observedSince Instante mínimo de la copia aceptada
+     * @return Mono con el producto obtenido
+     */
+    Mono<BankProductResponse> getProductById(String productId, Instant observedSince);
+
 
     /**
      * Busca un producto por CustomerId.
@@ -30,6 +53,14 @@ public interface ProductService {
     Mono<BankProductResponse> updateProduct(BankProductDTO product);
 
 
+    /**
+     * Actualiza varios productos en una sola petición.
+     *
+     * @return Mono con los productos actualizados; los ausentes en la respuesta no se actualizaron
+     */
+    Mono<BankProductResponse> updateProducts(List<BankProductDTO> products);
+
+
     /**
      * Obtiene todos los productos.
      *
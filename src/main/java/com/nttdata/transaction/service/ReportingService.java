@@ -3,6 +3,7 @@ package com.nttdata.transaction.service;
 import org.openapitools.model.AvailableBalanceResponseBalance;
 import org.openapitools.model.BalanceSummaryResponseBalanceSummary;
 import org.openapitools.model.CommissionReportResponseCommissionReport;
+import org.openapitools.model.CustomerDashboard;
 import org.openapitools.model.ProductConsolidatedSummaryResponseSummary;
 import org.openapitools.model.ProductGeneralSummaryResponseSummary;
 import reactor.core.publisher.Flux;
@@ -24,4 +25,11 @@ public interface ReportingService {
     Flux<CommissionReportResponseCommissionReport> generateCommissionReports(String customerId,
                                                                              OffsetDateTime start,
                                                                              OffsetDateTime end);
+
+    /**
+     * Genera todos los reportes del cliente consultando sus productos una sola vez y recorriendo
+     * sus transacciones del periodo en una única pasada. Cada parte coincide con el reporte
+     * individual equivalente.
+     */
+    Mono<CustomerDashboard> generateCustomerDashboard(String customerId, OffsetDateTime start, OffsetDateTime end);
 }
@@ -0,0 +1,30 @@
+package com.nttdata.transaction.service;
+
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+public interface TransactionCounterService {
+
+    /**
+     * Obtiene el número de transacciones registradas por un producto en un mes.
+     * Si el contador aún no existe, se reconstruye a partir del historial.
+     *
+     * @param productId Identificador del producto bancario
+     * @param month Mes a consultar
+     * @return Mono con el número de transacciones del mes
+     */
+    Mono<Long> getMonthlyCount(String productId, YearMonth month);
+
+    /**
+     * Incrementa el contador del mes al que pertenece la fecha indicada. Una transacción anterior a
+     * la creación del contador no se suma: se cuenta al conciliar el historial.
+     *
+     * @param productId Identificador del producto bancario
+     * @param dateTime Fecha de la transacción registrada
+     * @param delta Número de transacciones a sumar
+     * @return Mono vacío cuando la actualización se completa
+     */
+    Mono<Void> increment(String productId, LocalDateTime dateTime, long delta);
+}
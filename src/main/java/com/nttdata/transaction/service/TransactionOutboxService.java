@@ -0,0 +1,59 @@
+package com.nttdata.transaction.service;
+
+import com.nttdata.transaction.model.Dto.BankProductDTO;
+import com.nttdata.transaction.model.Transaction;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface TransactionOutboxService {
+
+    /**
+     * Indica si el modo outbox está activo.
+     */
+    boolean isEnabled();
+
+    /**
+     * Aplica sobre el producto el último saldo registrado que aún no se ha propagado,
+     * para que las reglas de negocio trabajen con el saldo efectivo.
+     *
+     * @param product Producto obtenido del product-service
+     * @return Mono con el producto y su saldo efectivo
+     */
+    Mono<BankProductDTO> withPendingBalance(BankProductDTO product);
+
+    /**
+     * Adjunta a la transacción su registro outbox con los saldos resultantes, sin guardarla.
+     * Cada saldo recibe el siguiente número de secuencia de su producto, por lo que debe llamarse
+     * dentro del carril del producto.
+     *
+     * @param tx Transacción a registrar
+     * @param products Productos con el saldo resultante de la transacción
+     * @return Mono que completa cuando el registro outbox quedó adjunto
+     */
+    Mono<Void> attachPendingBalances(Transaction tx, List<BankProductDTO> products);
+
+    /**
+     * Guarda la transacción y su registro outbox en una única escritura.
+     *
+     * @param tx Transacción a registrar
+     * @param products Productos con el saldo resultante de la transacción
+     * @return Mono con la transacción registrada
+     */
+    Mono<Transaction> saveWithPendingBalances(Transaction tx, List<BankProductDTO> products);
+
+    /**
+     * Ejecuta un ciclo de propagación de saldos pendientes.
+     *
+     * @return Mono con el número de transacciones revisadas en el ciclo
+     */
+    Mono<Integer> dispatchPending();
+
+    /**
+     * Reprograma los registros en estado FAILED.
+     *
+     * @param transactionId Transacción a reprogramar o nulo para todas
+     * @return Mono con el número de registros reprogramados
+     */
+    Mono<Long> replayFailed(String transactionId);
+}
@@ -1,9 +1,13 @@
 package com.nttdata.transaction.service;
 
+import com.nttdata.transaction.model.Dto.TransactionBatchItem;
+import com.nttdata.transaction.model.Dto.TransactionPage;
 import com.nttdata.transaction.model.Transaction;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+
 
 public interface TransactionService {
 
@@ -30,6 +34,24 @@ public interface TransactionService {
      */
     Flux<Transaction> getByProductId(String productId);
 
+    /**
+     * Obtiene una página de transacciones ordenada por fecha e id, continuando desde el cursor.
+     *
+     * @param productId Producto origen o nulo para todas las transacciones
+     * @param cursor Token de la página anterior o nulo para la primera página
+     * @param limit Tamaño de página o nulo para el valor por defecto; se acota al máximo configurado
+     * @return Mono con la página y el token de la siguiente
+     */
+    Mono<TransactionPage> getPage(String productId, String cursor, Integer limit);
+
+    /**
+     * Emite todas las transacciones ordenadas por fecha e id a medida que se leen de la base de datos.
+     *
+     * @param productId Producto origen o nulo para todas las transacciones
+     * @return Flux con las transacciones
+     */
+    Flux<Transaction> stream(String productId);
+
     /**
      * Actualiza los datos de una transacción existente.
      *
@@ -55,5 +77,26 @@ public interface TransactionService {
      * @return Mono con la transacción registrada
      */
     Mono<Transaction> create(Transaction transaction);
-}
 
+    /**
+     * Registra una nueva transacción cuyo producto origen ya consultó quien llama
+     * (p. ej. la cuenta elegida para una tarjeta de débito). Dentro del carril del producto se
+     * reutiliza esa lectura solo si se obtuvo del product-service (o se actualizó) después de
+     * {@code sourceObservedSince}; una copia anterior de la caché se vuelve a consultar.
+     *
+     * @param transaction Transacción a registrar
+     * @param sourceObservedSince Inicio de la petición en curso
+     * @return Mono con la transacción registrada
+     */
+    Mono<Transaction> create(Transaction transaction, Instant sourceObservedSince);
+
+    /**
+     * Registra un lote de transacciones. Las líneas se agrupan por producto origen para consultar
+     * y actualizar cada producto una sola vez por tramo, aplicando las reglas de negocio en orden
+     * de llegada e insertando las transacciones aceptadas en bloque.
+     *
+     * @param items Líneas del lote; las que ya traen error se devuelven sin procesar
+     * @return Flux con el resultado de cada línea, no necesariamente en el orden de entrada
+     */
+    Flux<TransactionBatchItem> createBatch(Flux<TransactionBatchItem> items);
+}
@@ -0,0 +1,283 @@
+package com.nttdata.transaction.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nttdata.transaction.config.IdempotencyProperties;
+import com.nttdata.transaction.model.IdempotencyRecord;
+import com.nttdata.transaction.model.Transaction;
+import com.nttdata.transaction.model.Type.IdempotencyStatus;
+import com.nttdata.transaction.service.IdempotencyService;
+import com.nttdata.transaction.utils.Constants;
+import com.nttdata.transaction.utils.exceptions.FailedAfterApplyException;
+import com.nttdata.transaction.utils.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyServiceImpl.class);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final IdempotencyProperties properties;
+    private final Cache<String, IdempotencyRecord> completed;
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final Counter cacheHits;
+    private final Counter storeHits;
+    private final Counter misses;
+    private final Counter collapsed;
+
+    public IdempotencyServiceImpl(ReactiveMongoTemplate mongoTemplate,
+                                  IdempotencyProperties properties,
+                                  MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheMaxSize())
+                .expireAfterWrite(properties.getCacheTtl())
+                .build();
+        this.cacheHits = meterRegistry.counter("idempotency.requests", "result", "cache_hit");
+        this.storeHits = meterRegistry.counter("idempotency.requests", "result", "store_hit");
+        this.misses = meterRegistry.counter("idempotency.requests", "result", "miss");
+        this.collapsed = meterRegistry.counter("idempotency.inflight.collapsed");
+    }
+
+    /**
+     * Crea el índice TTL que expira las claves antiguas.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        mongoTemplate.indexOps(IdempotencyRecord.class)
+                .ensureIndex(new Index().on("createdAt", Sort.Direction.ASC).expire(properties.getTtl()))
+                .subscribe(name -> log.info("Índice TTL de claves de idempotencia: {}", name),
+                        e -> log.error("No se pudo crear el índice TTL de claves de idempotencia", e));
+    }
+
+    @Override
+    public Mono<Transaction> execute(String scope,
+                                     String key,
+                                     Transaction request,
+                                     Supplier<Mono<Transaction>> operation) {
+        if (key == null || key.trim().isEmpty()) {
+            return operation.get();
+        }
+
+        String id = IdempotencyRecord.buildId(scope, key);
+        String fingerprint = fingerprint(request);
+
+        return Mono.defer(() -> {
+            IdempotencyRecord cached = completed.getIfPresent(id);
+            if (cached != null) {
+                cacheHits.increment();
+                return replay(cached, fingerprint);
+            }
+
+            // Las peticiones concurrentes con la misma clave en esta instancia comparten una sola ejecución
+            InFlight created = new InFlight(fingerprint);
+            created.result = claimAndRun(id, fingerprint, operation)
+                    .doFinally(signal -> inFlight.remove(id, created))
+                    .cache();
+
+            InFlight current = inFlight.putIfAbsent(id, created);
+            if (current != null) {
+                collapsed.increment();
+                return current.fingerprint.equals(fingerprint)
+                        ? current.result
+                        : Mono.error(new IllegalArgumentException(Constants.ERROR_IDEMPOTENCY_KEY_REUSED));
+            }
+            return created.result;
+        });
+    }
+
+    private Mono<Transaction> claimAndRun(String id, String fingerprint, Supplier<Mono<Transaction>> operation) {
+        // Mongo guarda milisegundos: se trunca para poder condicionar las escrituras a esta reserva
+        LocalDateTime claimedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        IdempotencyRecord pending = IdempotencyRecord.builder()
+                .id(id)
+                .fingerprint(fingerprint)
+                .status(IdempotencyStatus.IN_PROGRESS)
+                .createdAt(claimedAt)
+                .claimedAt(claimedAt)
+                .build();
+
+        return mongoTemplate.insert(pending)
+                .thenReturn(true)
+                // La clave ya existe: la registró otra instancia o una petición anterior
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false))
+                .flatMap(claimed -> claimed
+                        ? run(id, fingerprint, claimedAt, operation)
+                        : awaitStored(id, fingerprint, operation));
+    }
+
+    private Mono<Transaction> run(String id,
+                                  String fingerprint,
+                                  LocalDateTime claimedAt,
+                                  Supplier<Mono<Transaction>> operation) {
+        misses.increment();
+        // Mientras la operación se ejecuta, los latidos evitan que otra petición dé la clave por abandonada
+        return Mono.using(() -> heartbeat(id, claimedAt),
+                heartbeat -> operation.get()
+                        .onErrorResume(e -> e instanceof FailedAfterApplyException
+                                // Ya aplicada: la clave se conserva con el error y no se vuelve a ejecutar
+                                ? store(id, fingerprint, claimedAt, IdempotencyStatus.FAILED_AFTER_APPLY, null,
+                                        e.getMessage()).then(Mono.error(e))
+                                // Rechazada antes de aplicarse: se libera para que el cliente pueda reintentar
+                                : mongoTemplate.remove(claimQuery(id, claimedAt), IdempotencyRecord.class)
+                                        .then(Mono.error(e)))
+                        .flatMap(result -> store(id, fingerprint, claimedAt, IdempotencyStatus.COMPLETED, result,
+                                null).thenReturn(result)),
+                Disposable::dispose);
+    }
+
+    private Disposable heartbeat(String id, LocalDateTime claimedAt) {
+        return Flux.interval(properties.getHeartbeatInterval())
+                .concatMap(tick -> mongoTemplate.updateFirst(claimQuery(id, claimedAt),
+                                new Update().set("heartbeatAt", LocalDateTime.now()), IdempotencyRecord.class)
+                        .onErrorResume(e -> Mono.empty()))
+                .subscribe();
+    }
+
+    /**
+     * Guarda el resultado final de una operación ya aplicada. Si la escritura sigue fallando tras
+     * los reintentos, la clave queda en curso sin latidos y pasa a UNKNOWN al vencer: no se vuelve
+     * a ejecutar. El resultado se devuelve igualmente y esta instancia lo repite desde su caché local.
+     */
+    private Mono<Void> store(String id, String fingerprint, LocalDateTime claimedAt, IdempotencyStatus status,
+                             Transaction result, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyRecord record = IdempotencyRecord.builder()
+                .id(id)
+                .fingerprint(fingerprint)
+                .status(status)
+                .transaction(result)
+                .error(error)
+                .claimedAt(claimedAt)
+                .completedAt(now)
+                .build();
+        return Mono.defer(() -> mongoTemplate.updateFirst(claimQuery(id, claimedAt),
+                        new Update()
+                                .set("status", status)
+                                .set("transaction", result)
+                                .set("error", error)
+                                .set("completedAt", now),
+                        IdempotencyRecord.class))
+                .retryWhen(Retry.backoff(properties.getCompletionRetries(), properties.getPollInterval()))
+                .doOnError(e -> log.error("No se pudo guardar el resultado de la clave de idempotencia {}", id, e))
+                .onErrorResume(e -> Mono.empty())
+                .then(Mono.fromRunnable(() -> completed.put(id, record)));
+    }
+
+    /**
+     * Espera a que otra ejecución termine y repite su resultado. Si la clave fue liberada por un
+     * error se vuelve a reservar; si la ejecución dejó de renovar su reserva, la clave pasa a UNKNOWN.
+     */
+    private Mono<Transaction> awaitStored(String id, String fingerprint, Supplier<Mono<Transaction>> operation) {
+        return Mono.defer(() -> mongoTemplate.findById(id, IdempotencyRecord.class))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(stored -> nextStep(id, fingerprint, stored, operation))
+                .repeatWhenEmpty(attempts -> attempts.delayElements(properties.getPollInterval()))
+                .timeout(properties.getWaitTimeout(), Mono.error(
+                        new ServiceUnavailableException(Constants.ERROR_IDEMPOTENCY_IN_PROGRESS)))
+                .flatMap(next -> next);
+    }
+
+    /**
+     * Decide qué hacer con el estado actual de la clave; vacío mientras haya que seguir esperando.
+     */
+    private Mono<Mono<Transaction>> nextStep(String id,
+                                             String fingerprint,
+                                             Optional<IdempotencyRecord> stored,
+                                             Supplier<Mono<Transaction>> operation) {
+        if (stored.isEmpty()) {
+            return Mono.just(claimAndRun(id, fingerprint, operation));
+        }
+        IdempotencyRecord record = stored.get();
+        if (record.getStatus() != IdempotencyStatus.IN_PROGRESS) {
+            storeHits.increment();
+            completed.put(id, record);
+            return Mono.just(replay(record, fingerprint));
+        }
+        if (!record.getFingerprint().equals(fingerprint)) {
+            return Mono.just(Mono.error(new IllegalArgumentException(Constants.ERROR_IDEMPOTENCY_KEY_REUSED)));
+        }
+        LocalDateTime lastSeen = record.getHeartbeatAt() != null ? record.getHeartbeatAt()
+                : record.getClaimedAt() != null ? record.getClaimedAt() : record.getCreatedAt();
+        if (lastSeen.plus(properties.getClaimTimeout()).isAfter(LocalDateTime.now())) {
+            return Mono.empty();
+        }
+
+        // Sin latidos: la ejecución pudo aplicar la operación antes de detenerse, así que no se repite
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(id)
+                                .and("status").is(IdempotencyStatus.IN_PROGRESS)
+                                .and("claimedAt").is(record.getClaimedAt())
+                                .and("heartbeatAt").is(record.getHeartbeatAt())),
+                        new Update().set("status", IdempotencyStatus.UNKNOWN).set("completedAt", LocalDateTime.now()),
+                        FindAndModifyOptions.options().returnNew(true), IdempotencyRecord.class)
+                .map(abandoned -> {
+                    log.error("Clave de idempotencia {} abandonada sin resultado; requiere conciliación", id);
+                    completed.put(id, abandoned);
+                    return replay(abandoned, fingerprint);
+                });
+    }
+
+    private Query claimQuery(String id, LocalDateTime claimedAt) {
+        return Query.query(Criteria.where("_id").is(id)
+                .and("status").is(IdempotencyStatus.IN_PROGRESS)
+                .and("claimedAt").is(claimedAt));
+    }
+
+    private Mono<Transaction> replay(IdempotencyRecord record, String fingerprint) {
+        if (!record.getFingerprint().equals(fingerprint)) {
+            return Mono.error(new IllegalArgumentException(Constants.ERROR_IDEMPOTENCY_KEY_REUSED));
+        }
+        switch (record.getStatus()) {
+            case FAILED_AFTER_APPLY:
+                return Mono.error(new FailedAfterApplyException(record.getError(), null));
+            case UNKNOWN:
+                return Mono.error(new FailedAfterApplyException(Constants.ERROR_IDEMPOTENCY_UNKNOWN, null));
+            default:
+                return Mono.just(record.getTransaction());
+        }
+    }
+
+    private String fingerprint(Transaction request) {
+        return String.join("|",
+                String.valueOf(request.getType()),
+                String.valueOf(request.getSourceProductId()),
+                String.valueOf(request.getTargetProductId()),
+                request.getAmount() != null ? request.getAmount().stripTrailingZeros().toPlainString() : "null");
+    }
+
+    private static final class InFlight {
+        private final String fingerprint;
+        private Mono<Transaction> result;
+
+        private InFlight(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.nttdata.transaction.service.impl;
+
+import com.nttdata.transaction.config.MoneyMigrationProperties;
+import com.nttdata.transaction.model.MigrationCheckpoint;
+import com.nttdata.transaction.model.Transaction;
+import com.nttdata.transaction.service.MoneyStorageMigrationService;
+import com.nttdata.transaction.utils.Constants;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ConvertOperators;
+import org.springframework.data.mongodb.core.aggregation.VariableOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class MoneyStorageMigrationServiceImpl implements MoneyStorageMigrationService {
+    private static final Logger log = LoggerFactory.getLogger(MoneyStorageMigrationServiceImpl.class);
+
+    // La conversión se hace en el servidor: los documentos no viajan a la JVM
+    private static final AggregationUpdate AMOUNT_TO_DECIMAL = AggregationUpdate.update()
+            .set("amount").toValue(ConvertOperators.valueOf("amount").convertToDecimal());
+
+    // Las comisiones se guardaban como double: se redondean al céntimo (medio céntimo hacia arriba, como
+    // Money.of) para que el reporte sume exactamente lo cobrado
+    private static final AggregationUpdate TRANSACTION_FEE_TO_DECIMAL = AggregationUpdate.update()
+            .set("transactionFee").toValue(ArithmeticOperators.valueOf(centsRoundedHalfUp("transactionFee"))
+                    .divideBy(100));
+
+    private static final AggregationUpdate OUTBOX_BALANCES_TO_DECIMAL = AggregationUpdate.update()
+            .set("outbox.updates").toValue(VariableOperators.mapItemsOf("outbox.updates").as("update")
+                    .andApply(context -> new Document("$mergeObjects", List.of("$$update",
+                            new Document("balance", new Document("$toDecimal", "$$update.balance"))))));
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MoneyMigrationProperties properties;
+
+    @Override
+    public Mono<Long> migrate(boolean restart) {
+        return mongoTemplate.findById(Constants.MIGRATION_MONEY_DECIMAL128, MigrationCheckpoint.class)
+                .filter(checkpoint -> !restart && checkpoint.getLastId() != null)
+                .map(checkpoint -> Criteria.where("id").gt(checkpoint.getLastId()))
+                .defaultIfEmpty(new Criteria())
+                .flatMapMany(from -> {
+                    Query query = Query.query(from).with(Sort.by("id")).cursorBatchSize(properties.getBatchSize());
+                    query.fields().include("id");
+                    return mongoTemplate.find(query, Transaction.class);
+                })
+                .map(Transaction::getId)
+                .buffer(properties.getBatchSize())
+                // Los lotes se actualizan en paralelo pero se confirman en orden: el punto de control
+                // solo avanza cuando el lote y todos los anteriores terminaron
+                .flatMapSequential(ids -> migrateBatch(ids)
+                        .map(count -> Tuples.of(ids.get(ids.size() - 1), count)), properties.getConcurrency())
+                .concatMap(batch -> saveCheckpoint(batch.getT1(), batch.getT2()))
+                .reduce(0L, Long::sum)
+                .doOnNext(count -> log.info("Transacciones migradas a Decimal128: {}", count));
+    }
+
+    private Mono<Long> migrateBatch(List<String> ids) {
+        Query amounts = Query.query(Criteria.where("id").in(ids)
+                .and("amount").type(JsonSchemaObject.Type.stringType()));
+        Query fees = Query.query(Criteria.where("id").in(ids)
+                .and("transactionFee").type(JsonSchemaObject.Type.doubleType()));
+        Query outboxBalances = Query.query(Criteria.where("id").in(ids)
+                .and("outbox.updates.balance").type(JsonSchemaObject.Type.stringType()));
+
+        return mongoTemplate.updateMulti(amounts, AMOUNT_TO_DECIMAL, Transaction.class)
+                .flatMap(migrated -> mongoTemplate.updateMulti(fees, TRANSACTION_FEE_TO_DECIMAL, Transaction.class)
+                        .then(mongoTemplate.updateMulti(outboxBalances, OUTBOX_BALANCES_TO_DECIMAL,
+                                Transaction.class))
+                        .thenReturn(migrated.getModifiedCount()));
+    }
+
+    private Mono<Long> saveCheckpoint(String lastId, long migrated) {
+        return mongoTemplate.upsert(Query.query(Criteria.where("_id").is(Constants.MIGRATION_MONEY_DECIMAL128)),
+                        new Update()
+                                .set("lastId", lastId)
+                                .inc("migrated", migrated)
+                                .set("updatedAt", LocalDateTime.now()),
+                        MigrationCheckpoint.class)
+                .thenReturn(migrated);
+    }
+
+    private static ArithmeticOperators.Floor centsRoundedHalfUp(String field) {
+        ArithmeticOperators.Multiply cents = ArithmeticOperators.valueOf(
+                ConvertOperators.valueOf(field).convertToDecimal()).multiplyBy(100);
+        return ArithmeticOperators.valueOf(ArithmeticOperators.valueOf(cents).add(0.5)).floor();
+    }
+}
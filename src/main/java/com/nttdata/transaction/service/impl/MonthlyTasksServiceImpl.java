@@ -1,29 +1,58 @@
 package com.nttdata.transaction.service.impl;
 
+import com.nttdata.transaction.config.MonthlyJobProperties;
 import com.nttdata.transaction.model.Details.CurrentAccount;
 import com.nttdata.transaction.model.Details.FixedTermAccount;
 import com.nttdata.transaction.model.Details.ProductDetails;
 import com.nttdata.transaction.model.Details.SavingsAccount;
 import com.nttdata.transaction.model.Dto.BankProductDTO;
+import com.nttdata.transaction.model.Dto.ProductAverageBalance;
+import com.nttdata.transaction.model.Money;
+import com.nttdata.transaction.model.MonthlyJobCheckpoint;
+import com.nttdata.transaction.model.MonthlyJobRun;
+import com.nttdata.transaction.model.PartitionLease;
 import com.nttdata.transaction.model.Transaction;
+import com.nttdata.transaction.model.Type.MonthlyJobStatus;
 import com.nttdata.transaction.model.Type.ProductStatus;
+import com.nttdata.transaction.model.Type.StalenessPolicy;
 import com.nttdata.transaction.model.Type.TransactionType;
 import com.nttdata.transaction.repository.TransactionRepository;
 import com.nttdata.transaction.service.MonthlyTasksService;
+import com.nttdata.transaction.service.ProductDailyStatsService;
 import com.nttdata.transaction.service.ProductService;
+import com.nttdata.transaction.service.TransactionCounterService;
+import com.nttdata.transaction.service.TransactionOutboxService;
+import com.nttdata.transaction.support.PartitionLeaseCoordinator;
+import com.nttdata.transaction.support.ProductLaneSequencer;
+import com.nttdata.transaction.utils.Constants;
+import com.nttdata.transaction.utils.Utils;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.YearMonth;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
@@ -31,70 +60,550 @@ public class MonthlyTasksServiceImpl implements MonthlyTasksService {
     private static final Logger log = LoggerFactory.getLogger(MonthlyTasksServiceImpl.class);
     private final TransactionRepository repository;
     private final ProductService productService;
+    private final TransactionCounterService counterService;
+    private final TransactionOutboxService outboxService;
+    private final ProductDailyStatsService statsService;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MonthlyJobProperties jobProperties;
+    private final PartitionLeaseCoordinator leaseCoordinator;
+    private final ProductLaneSequencer laneSequencer;
+    private final AtomicBoolean running = new AtomicBoolean();
 
     @Override
     public Mono<Void> applyMonthlyTasks() {
+        return Mono.defer(() -> {
+            if (!running.compareAndSet(false, true)) {
+                return Mono.error(new IllegalArgumentException(Constants.ERROR_MONTHLY_TASKS_RUNNING));
+            }
+            String period = YearMonth.now().toString();
+            return startRun(period)
+                    .then(executeRun(period))
+                    .doFinally(signal -> running.set(false));
+        });
+    }
+
+    @Override
+    public Mono<MonthlyJobRun> startMonthlyTasks() {
+        return Mono.defer(() -> {
+            if (!running.compareAndSet(false, true)) {
+                return getMonthlyTasksStatus();
+            }
+            String period = YearMonth.now().toString();
+            return startRun(period)
+                    .doOnNext(run -> executeRun(period)
+                            .doFinally(signal -> running.set(false))
+                            .subscribe(
+                                    unused -> { },
+                                    e -> log.error("La ejecución mensual {} terminó con error: {}",
+                                            period, e.getMessage())))
+                    .doOnError(e -> running.set(false));
+        });
+    }
+
+    @Override
+    public Mono<MonthlyJobRun> getMonthlyTasksStatus() {
+        return mongoTemplate.findOne(new Query().with(Sort.by(Sort.Direction.DESC, "startedAt")).limit(1),
+                MonthlyJobRun.class);
+    }
+
+    /**
+     * Inicia la ejecución del periodo o se une a la que otra instancia tiene en curso, sin
+     * reiniciar sus contadores. Una nueva ejecución de un periodo ya terminado reabre sus particiones
+     * para retomar los productos fallidos o con comisiones pendientes de conciliar.
+     */
+    private Mono<MonthlyJobRun> startRun(String period) {
+        LocalDateTime now = LocalDateTime.now();
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(period)
+                        .and("status").ne(MonthlyJobStatus.RUNNING)),
+                new Update()
+                        .set("status", MonthlyJobStatus.RUNNING)
+                        .set("totalProducts", 0L)
+                        .set("processedProducts", 0L)
+                        .set("skippedProducts", 0L)
+                        .set("failedProducts", 0L)
+                        .unset("lastError")
+                        .unset("finishedAt")
+                        .set("startedAt", now)
+                        .set("updatedAt", now),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                MonthlyJobRun.class)
+                .flatMap(run -> leaseCoordinator.reopen(Constants.MONTHLY_TASKS_JOB, period).thenReturn(run))
+                .onErrorResume(DuplicateKeyException.class, e -> mongoTemplate.findById(period, MonthlyJobRun.class));
+    }
+
+    private Mono<Void> executeRun(String period) {
         return productService.getAllBankProducts()
-                .flatMapMany(response -> Flux.fromIterable(response.getProducts()))
-                .flatMap(product -> Mono.when(
-                        applyMaintenanceFeeIfNeeded(product),
-                        evaluateAverageBalanceRequirement(product)
-                ))
+                .flatMap(response -> updateRun(period, () -> new Update()
+                        .set("totalProducts", (long) response.getProducts().size()))
+                        .thenReturn(response.getProducts()))
+                .flatMapMany(products -> {
+                    Map<Integer, List<BankProductDTO>> byPartition = products.stream()
+                            .collect(Collectors.groupingBy(product -> leaseCoordinator.partitionOf(product.getId())));
+                    // Cada instancia procesa solo las particiones cuyo lease obtiene, y solo para ellas
+                    // calcula los saldos promedio
+                    return leaseCoordinator.runPartitions(Constants.MONTHLY_TASKS_JOB, period,
+                            (lease, leaseLost) -> {
+                                List<BankProductDTO> partitionProducts =
+                                        byPartition.getOrDefault(lease.getPartition(), List.of());
+                                return monthlyAverages(partitionProducts, YearMonth.parse(period))
+                                        .flatMapMany(averages -> Flux.fromIterable(partitionProducts)
+                                                .takeUntilOther(leaseLost)
+                                                // El product-service no pagina el listado: se procesa por tramos
+                                                .buffer(jobProperties.getChunkSize())
+                                                .concatMap(chunk -> processChunk(period, chunk, averages, lease)));
+                            });
+                })
+                .then(updateRun(period, () -> new Update()
+                        .set("status", MonthlyJobStatus.COMPLETED)
+                        .set("finishedAt", LocalDateTime.now())))
+                .onErrorResume(e -> updateRun(period, () -> new Update()
+                        .set("status", MonthlyJobStatus.FAILED)
+                        .set("lastError", e.getMessage())
+                        .set("finishedAt", LocalDateTime.now()))
+                        .then(Mono.error(e)))
                 .then();
     }
 
+    private Mono<Void> processChunk(String period, List<BankProductDTO> chunk, Map<String, BigDecimal> averages,
+                                    PartitionLease lease) {
+        return Flux.fromIterable(chunk)
+                .flatMap(product -> prepareProduct(period, product, averages, lease), jobProperties.getConcurrency())
+                .collectList()
+                // Las comisiones del tramo se escriben por lotes y después se cierra cada producto
+                .flatMap(runs -> Flux.fromIterable(runs)
+                        .filter(run -> run.feeDue && run.error == null)
+                        .buffer(jobProperties.getFeeBatchSize())
+                        .concatMap(batch -> chargeMaintenanceFees(batch, lease))
+                        .then(Flux.fromIterable(runs)
+                                .flatMap(run -> finishProduct(run, lease), jobProperties.getConcurrency())
+                                .collectList()))
+                .flatMap(outcomes -> updateRun(period, () -> new Update()
+                        .inc("processedProducts", count(outcomes, ProductOutcome.PROCESSED))
+                        .inc("skippedProducts", count(outcomes, ProductOutcome.SKIPPED))
+                        .inc("failedProducts", count(outcomes, ProductOutcome.FAILED))));
+    }
 
-    private Mono<Void> evaluateAverageBalanceRequirement(BankProductDTO product) {
-        if (!(product.getDetails() instanceof SavingsAccount)) {
+    /**
+     * Prepara las tareas mensuales del producto una sola vez por periodo. El producto se reclama
+     * primero en su punto de control, de modo que un arranque posterior del mismo mes lo omita o lo
+     * retome y que dos instancias no lo procesen a la vez. La comisión de mantenimiento queda
+     * pendiente para cobrarse en lote con las del resto del tramo; si un arranque anterior la dejó
+     * registrada sin confirmar, se retoma con la misma transacción en lugar de calcularla de nuevo.
+     */
+    private Mono<ProductRun> prepareProduct(String period, BankProductDTO product, Map<String, BigDecimal> averages,
+                                            PartitionLease lease) {
+        ProductRun run = new ProductRun(product, MonthlyJobCheckpoint.buildId(period, product.getId()));
+
+        return claimProduct(run, period, lease)
+                .flatMap(claimed -> {
+                    if (!claimed.claimed) {
+                        return Mono.just(run);
+                    }
+                    Mono<Boolean> feeDue = run.pendingFee != null
+                            ? Mono.just(true)
+                            : hasValidMaintenanceFee(product);
+
+                    return evaluateAverageBalanceRequirement(product, averages)
+                            .then(feeDue)
+                            .doOnNext(due -> run.feeDue = due)
+                            .thenReturn(run);
+                })
+                .onErrorResume(e -> Mono.just(run.fail(e.getMessage())));
+    }
+
+    /**
+     * Reclama el producto para la época del lease con una sola operación sobre su punto de control:
+     * solo si no está completado y ningún dueño con una época igual o posterior lo reclamó. Si no se
+     * obtiene, el producto está completado o es de otra instancia y no se toca. Un punto de control
+     * existente conserva su estado, para no perder una comisión pendiente de conciliar.
+     */
+    private Mono<ProductRun> claimProduct(ProductRun run, String period, PartitionLease lease) {
+        Query query = Query.query(Criteria.where("_id").is(run.checkpointId)
+                .and("status").ne(MonthlyJobStatus.COMPLETED)
+                .orOperator(
+                        Criteria.where("leaseEpoch").exists(false),
+                        Criteria.where("leaseEpoch").lt(lease.getEpoch())));
+        Update update = new Update()
+                .setOnInsert("period", period)
+                .setOnInsert("productId", run.product.getId())
+                .setOnInsert("status", MonthlyJobStatus.RUNNING)
+                .set("owner", lease.getOwner())
+                .set("leaseEpoch", lease.getEpoch())
+                .set("updatedAt", LocalDateTime.now());
+
+        // Devuelve el punto de control anterior: vacío si es el primer intento del periodo
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().upsert(true),
+                        MonthlyJobCheckpoint.class)
+                .map(run::claim)
+                .switchIfEmpty(Mono.fromSupplier(() -> run.claim(null)))
+                // El upsert choca con el documento existente: completado o reclamado por otro dueño
+                .onErrorResume(DuplicateKeyException.class, e -> mongoTemplate
+                        .findById(run.checkpointId, MonthlyJobCheckpoint.class)
+                        .doOnNext(current -> run.skipped = current.getStatus() == MonthlyJobStatus.COMPLETED)
+                        .thenReturn(run));
+    }
+
+    private Mono<ProductOutcome> finishProduct(ProductRun run, PartitionLease lease) {
+        if (run.skipped) {
+            return Mono.just(ProductOutcome.SKIPPED);
+        }
+        if (run.lost || (!run.claimed && run.error == null)) {
+            // Lo procesa el dueño actual de la partición, que lo contará
+            log.info("El producto {} quedó para el dueño actual del lease {}; no se cierra",
+                    run.product.getId(), lease.getId());
             return Mono.empty();
         }
+        if (run.error != null) {
+            log.error("No se pudieron aplicar las tareas mensuales al producto {}: {}",
+                    run.product.getId(), run.error);
+            if (!run.claimed) {
+                return Mono.just(ProductOutcome.FAILED);
+            }
+            // Una comisión registrada sin confirmar o sin transacción conserva su estado para conciliarla
+            MonthlyJobStatus status = run.feeState != null ? run.feeState : MonthlyJobStatus.FAILED;
+            return closeCheckpoint(run, lease, status, run.error)
+                    .flatMap(closed -> closed ? Mono.just(ProductOutcome.FAILED) : Mono.empty());
+        }
+        return closeCheckpoint(run, lease, MonthlyJobStatus.COMPLETED, null)
+                .flatMap(closed -> closed ? Mono.just(ProductOutcome.PROCESSED) : Mono.empty());
+    }
 
-        SavingsAccount savings = (SavingsAccount) product.getDetails();
-        Double requiredAvg = savings.getRequiredMonthlyAverageBalance();
+    /**
+     * Cobra un lote de comisiones con los carriles de sus productos reservados: el saldo se vuelve a
+     * leer en el momento del cobro, ya que el listado del inicio de la ejecución puede estar desfasado,
+     * y ningún movimiento lo cambia hasta escribirlo. Nada se cobra si el lease de la partición se
+     * perdió mientras el tramo estaba en curso.
+     */
+    private Mono<Void> chargeMaintenanceFees(List<ProductRun> runs, PartitionLease lease) {
+        List<String> productIds = runs.stream().map(run -> run.product.getId()).collect(Collectors.toList());
 
-        if (requiredAvg == null || requiredAvg <= 0) {
+        return laneSequencer.execute(productIds, () -> stillHeld(runs, lease)
+                        .filter(Boolean::booleanValue)
+                        .flatMap(held -> Flux.fromIterable(runs)
+                                .flatMap(run -> fetchProduct(run.product.getId())
+                                        .flatMap(product -> prepareCharge(run, product))
+                                        .onErrorResume(e -> {
+                                            run.fail(e.getMessage());
+                                            return Mono.empty();
+                                        }), jobProperties.getConcurrency())
+                                .then(Mono.defer(() -> writeMaintenanceFees(runs.stream()
+                                        .filter(run -> run.fee != null && run.error == null)
+                                        .collect(Collectors.toList()), lease)))))
+                .onErrorResume(e -> {
+                    runs.forEach(run -> run.fail(e.getMessage()));
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Calcula la comisión del producto sobre el saldo leído en el momento del cobro. La transacción de la
+     * comisión existe antes de escribir el saldo y se elimina si el product-service no lo actualiza, así
+     * que una comisión que un arranque anterior dejó registrada nunca se vuelve a cobrar si su transacción
+     * existe: está cobrada si el saldo se confirmó (o, en modo outbox, al ser la propia transacción el
+     * cobro) y, si no, queda pendiente de revisión. Sin transacción, el saldo no llegó a escribirse y se
+     * cobra con la misma transacción, salvo que ya constara descontado y solo falte registrarla.
+     */
+    private Mono<Void> prepareCharge(ProductRun run, BankProductDTO product) {
+        MonthlyJobCheckpoint pending = run.pendingFee;
+        if (pending == null) {
+            BigDecimal balanceBefore = product.getBalance();
+            return chargeMaintenanceFee(product, new ObjectId().toHexString())
+                    .doOnNext(fee -> run.charge(product, fee, balanceBefore, MonthlyJobStatus.FEE_PENDING))
+                    .then();
+        }
+        Transaction fee = pending.getFeeTransaction();
+
+        return repository.existsById(fee.getId())
+                .flatMap(recorded -> {
+                    if (recorded) {
+                        if (pending.getStatus() == MonthlyJobStatus.FEE_APPLIED || outboxService.isEnabled()) {
+                            run.feeState = null;
+                        } else {
+                            log.error("Comisión {} del producto {} registrada sin confirmar el saldo; no se cobra "
+                                    + "de nuevo", fee.getId(), product.getId());
+                            run.fail(Constants.ERROR_MAINTENANCE_FEE_UNRECONCILED);
+                        }
+                        return Mono.empty();
+                    }
+                    if (pending.getStatus() == MonthlyJobStatus.FEE_APPLIED) {
+                        run.charge(product, fee, pending.getBalanceBefore(), MonthlyJobStatus.FEE_APPLIED);
+                        return Mono.empty();
+                    }
+                    BigDecimal balanceBefore = product.getBalance();
+                    return chargeMaintenanceFee(product, fee.getId())
+                            .doOnNext(charged -> run.charge(product, charged, balanceBefore,
+                                    MonthlyJobStatus.FEE_PENDING))
+                            .then();
+                });
+    }
+
+    /**
+     * Escribe un lote de comisiones. Cada una se registra antes en el punto de control de su producto,
+     * de modo que un PUT que falla o vence sin respuesta no lleve a cobrarla otra vez al retomar. Los
+     * fallos se registran en el producto afectado sin interrumpir el resto del lote.
+     */
+    private Mono<Void> writeMaintenanceFees(List<ProductRun> runs, PartitionLease lease) {
+        if (runs.isEmpty()) {
             return Mono.empty();
         }
 
-        YearMonth currentMonth = YearMonth.now();
-        LocalDateTime start = currentMonth.atDay(1).atStartOfDay();
-        LocalDateTime end = currentMonth.atEndOfMonth().atTime(LocalTime.MAX);
+        return Flux.fromIterable(runs)
+                .flatMap(run -> recordFeeIntent(run, lease), jobProperties.getConcurrency())
+                .then(Mono.defer(() -> {
+                    List<ProductRun> recorded = runs.stream().filter(run -> !run.lost && run.error == null)
+                            .collect(Collectors.toList());
+                    if (recorded.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    // La época se comprueba justo antes del PUT: el nuevo dueño pudo reclamar los productos
+                    return stillHeld(recorded, lease)
+                            .filter(Boolean::booleanValue)
+                            .flatMap(held -> outboxService.isEnabled()
+                                    ? saveWithPendingBalances(recorded)
+                                    : updateBalances(recorded));
+                }));
+    }
 
-        return repository.findBySourceProductIdAndDateTimeBetween(product.getId(), start, end)
-                .groupBy(tx -> tx.getDateTime().toLocalDate()) // Agrupa por día
-                .flatMap(grouped -> grouped
-                        .map(Transaction::getAmount)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add)) //Suma el monto total por dia
-                .collectList()
-                .map(dailyTotals -> {
-                    //Suma de todos los montos diarios
-                    //Divide entre los dias del mes
-                    BigDecimal total = dailyTotals.stream()
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-                    BigDecimal average = total.divide(BigDecimal.valueOf(
-                            currentMonth.lengthOfMonth()), RoundingMode.HALF_UP);
-                    return average.doubleValue();
-                })
-                .flatMap(average -> {
-                    if (average < requiredAvg) {
-                        log.info("Producto {} será bloqueado: " +
-                                        "promedio diario {:.2f} < requerido {:.2f}",
-                                product.getId(), average, requiredAvg);
-                        product.setStatus(ProductStatus.BLOCKED_AVG_BALANCE); // se bloqueará el producto
-                        return productService.updateProduct(product).then();
+    /**
+     * Registra la comisión en el punto de control, solo si sigue reclamado por esta instancia con la
+     * misma época.
+     */
+    private Mono<Void> recordFeeIntent(ProductRun run, PartitionLease lease) {
+        return Mono.defer(() -> mongoTemplate.updateFirst(claimedBy(run, lease), new Update()
+                                .set("status", run.feeIntent)
+                                .set("feeTransaction", run.fee)
+                                .set("balanceBefore", run.balanceBefore)
+                                .set("balanceAfter", run.charged.getBalance())
+                                .set("updatedAt", LocalDateTime.now()),
+                        MonthlyJobCheckpoint.class))
+                .doOnNext(result -> {
+                    if (result.getMatchedCount() == 0) {
+                        run.lost = true;
+                    } else {
+                        run.feeState = run.feeIntent;
                     }
+                })
+                .onErrorResume(e -> {
+                    run.fail(e.getMessage());
                     return Mono.empty();
                 })
+                .then();
+    }
+
+    /**
+     * Inserta las transacciones de las comisiones con un solo insertMany no ordenado y después actualiza
+     * los saldos en el product-service con una sola petición. Cada transacción lleva el id registrado en
+     * el punto de control y existe antes de escribir el saldo, de modo que al retomar su existencia indica
+     * que el cobro pudo aplicarse. Las comisiones ya descontadas en un arranque anterior solo se insertan.
+     */
+    private Mono<Void> updateBalances(List<ProductRun> runs) {
+        List<Transaction> fees = runs.stream().map(run -> run.fee).collect(Collectors.toList());
+
+        return repository.insertUnordered(fees)
+                // Sin respuesta no se sabe qué se insertó: se eliminan para cobrarlas de nuevo al retomar
+                .onErrorResume(e -> repository.deleteAllById(fees.stream().map(Transaction::getId)
+                                .collect(Collectors.toList()))
+                        .onErrorResume(deleteError -> {
+                            log.error("No se pudieron eliminar {} comisiones tras fallar su inserción: {}",
+                                    fees.size(), deleteError.getMessage());
+                            return Mono.empty();
+                        })
+                        .then(Mono.just(IntStream.range(0, runs.size()).boxed()
+                                .collect(Collectors.toMap(Function.identity(), i -> e.getMessage())))))
+                .flatMap(failures -> {
+                    List<ProductRun> inserted = new ArrayList<>();
+                    for (int i = 0; i < runs.size(); i++) {
+                        if (failures.containsKey(i)) {
+                            // El saldo aún no se escribió: la comisión se cobra o registra al retomar
+                            runs.get(i).fail(failures.get(i));
+                        } else {
+                            inserted.add(runs.get(i));
+                        }
+                    }
+                    return writeBalances(inserted);
+                });
+    }
+
+    /**
+     * Escribe los saldos de las comisiones ya insertadas. Si el product-service rechaza la petición sin
+     * aplicarla o confirma que no actualizó un producto, su transacción se elimina; si no responde, se
+     * conserva con la comisión pendiente para no volver a cobrarla.
+     */
+    private Mono<Void> writeBalances(List<ProductRun> runs) {
+        List<ProductRun> toUpdate = runs.stream().filter(run -> run.feeState != MonthlyJobStatus.FEE_APPLIED)
+                .collect(Collectors.toList());
+        List<BankProductDTO> products = toUpdate.stream().map(run -> run.charged).collect(Collectors.toList());
+        Mono<Set<String>> updated = toUpdate.isEmpty()
+                ? Mono.just(Set.of())
+                : productService.updateProducts(products)
+                        .map(response -> response.getProducts() == null ? Set.<String>of() : response.getProducts()
+                                .stream().map(BankProductDTO::getId).collect(Collectors.toSet()))
+                        .onErrorResume(e -> {
+                            if (Utils.isRejectedBeforeApply(e)) {
+                                log.warn("El product-service rechazó el cobro de {} comisiones: {}",
+                                        toUpdate.size(), e.getMessage());
+                            } else {
+                                // Sin respuesta no se sabe si el saldo cambió: la transacción se conserva
+                                toUpdate.forEach(run -> run.fail(e.getMessage()));
+                            }
+                            return Mono.just(Set.of());
+                        });
+
+        return updated.flatMap(ids -> {
+            List<ProductRun> notUpdated = new ArrayList<>();
+            toUpdate.stream().filter(run -> run.error == null).forEach(run -> {
+                if (ids.contains(run.product.getId())) {
+                    run.feeState = MonthlyJobStatus.FEE_APPLIED;
+                } else {
+                    notUpdated.add(run);
+                }
+            });
+
+            return deleteUncharged(notUpdated)
+                    .thenMany(Flux.fromIterable(runs).filter(run -> run.error == null))
+                    .concatMap(run -> recordCharge(run.charged, run.fee))
+                    .then();
+        });
+    }
+
+    /**
+     * Elimina las transacciones de las comisiones cuyo saldo el product-service no actualizó: no queda
+     * nada cobrado. Si no pueden eliminarse, la comisión sigue pendiente y no se vuelve a cobrar.
+     */
+    private Mono<Void> deleteUncharged(List<ProductRun> runs) {
+        if (runs.isEmpty()) {
+            return Mono.empty();
+        }
+
+        return repository.deleteAllById(runs.stream().map(run -> run.fee.getId()).collect(Collectors.toList()))
+                .doOnSuccess(unused -> runs.forEach(run -> {
+                    run.feeState = null;
+                    run.fail(Constants.ERROR_PRODUCT_NOT_UPDATED);
+                }))
                 .onErrorResume(e -> {
-                    log.error("No se pudo evaluar saldo promedio para producto {}: {}",
-                            product.getId(), e.getMessage());
+                    log.error("No se pudieron eliminar {} comisiones no cobradas: {}", runs.size(), e.getMessage());
+                    runs.forEach(run -> run.fail(e.getMessage()));
                     return Mono.empty();
                 });
     }
 
-    private Mono<Void> applyMaintenanceFeeIfNeeded(BankProductDTO product) {
-        return hasValidMaintenanceFee(product)
-                .flatMap(valid -> valid ? applyFeeIfBalanceSufficient(product) : Mono.empty());
+    /**
+     * En modo outbox la comisión se guarda junto con el saldo pendiente en una sola escritura, con el
+     * id registrado en el punto de control.
+     */
+    private Mono<Void> saveWithPendingBalances(List<ProductRun> runs) {
+        return Flux.fromIterable(runs)
+                .concatMap(run -> outboxService.saveWithPendingBalances(run.fee, List.of(run.charged))
+                        .flatMap(saved -> recordCharge(run.charged, saved))
+                        .onErrorResume(e -> {
+                            run.fail(e.getMessage());
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    /**
+     * Comprueba antes de un efecto externo que esta instancia conserva el lease con la época con que
+     * reclamó los productos; si no, quedan para el nuevo dueño sin tocarse.
+     */
+    private Mono<Boolean> stillHeld(List<ProductRun> runs, PartitionLease lease) {
+        return leaseCoordinator.holds(lease)
+                .doOnNext(held -> {
+                    if (!held) {
+                        log.warn("Se perdió el lease {} (época {}); no se cobran {} comisiones",
+                                lease.getId(), lease.getEpoch(), runs.size());
+                        runs.forEach(run -> run.lost = true);
+                    }
+                });
+    }
+
+    /**
+     * Cierra el punto de control solo si sigue reclamado por esta instancia con la misma época.
+     */
+    private Mono<Boolean> closeCheckpoint(ProductRun run, PartitionLease lease, MonthlyJobStatus status,
+                                          String error) {
+        // Diferido: la marca de tiempo corresponde al momento en que se alcanza el estado
+        return Mono.defer(() -> {
+            Update update = new Update()
+                    .set("status", status)
+                    .set("updatedAt", LocalDateTime.now());
+            if (error != null) {
+                update.set("lastError", error);
+            }
+            return mongoTemplate.updateFirst(claimedBy(run, lease), update, MonthlyJobCheckpoint.class);
+        }).map(result -> result.getMatchedCount() > 0);
+    }
+
+    private Query claimedBy(ProductRun run, PartitionLease lease) {
+        return Query.query(Criteria.where("_id").is(run.checkpointId)
+                .and("owner").is(lease.getOwner())
+                .and("leaseEpoch").is(lease.getEpoch()));
+    }
+
+    private Mono<Void> updateRun(String period, Supplier<Update> update) {
+        return Mono.defer(() -> mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(period)),
+                        update.get().set("updatedAt", LocalDateTime.now()), MonthlyJobRun.class))
+                .then();
+    }
+
+    private static long count(List<ProductOutcome> outcomes, ProductOutcome outcome) {
+        return outcomes.stream().filter(outcome::equals).count();
+    }
+
+
+    /**
+     * Saldos promedio del mes de las cuentas de ahorro con promedio mínimo exigido, obtenidos en una
+     * sola agregación sobre los resúmenes diarios que solo lee los productos evaluados.
+     */
+    private Mono<Map<String, BigDecimal>> monthlyAverages(List<BankProductDTO> products, YearMonth month) {
+        Set<String> evaluated = products.stream()
+                .filter(product -> requiredAverageBalance(product) != null)
+                .map(BankProductDTO::getId)
+                .collect(Collectors.toSet());
+        if (evaluated.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return statsService.streamMonthlyAverages(month, evaluated)
+                .collectMap(ProductAverageBalance::getProductId, ProductAverageBalance::getAverageDailyBalance);
+    }
+
+    private Double requiredAverageBalance(BankProductDTO product) {
+        if (!(product.getDetails() instanceof SavingsAccount)) {
+            return null;
+        }
+        Double requiredAvg = ((SavingsAccount) product.getDetails()).getRequiredMonthlyAverageBalance();
+        return requiredAvg != null && requiredAvg > 0 ? requiredAvg : null;
+    }
+
+    private Mono<Void> evaluateAverageBalanceRequirement(BankProductDTO product, Map<String, BigDecimal> averages) {
+        Double requiredAvg = requiredAverageBalance(product);
+
+        if (requiredAvg == null) {
+            return Mono.empty();
+        }
+
+        // Sin movimientos en el mes el saldo se mantuvo igual todos los días
+        double average = averages.getOrDefault(product.getId(), Money.of(product.getBalance()).toBigDecimal())
+                .doubleValue();
+        if (average >= requiredAvg) {
+            return Mono.empty();
+        }
+
+        log.info("Producto {} será bloqueado: " +
+                        "promedio diario {:.2f} < requerido {:.2f}",
+                product.getId(), average, requiredAvg);
+        // El PUT lleva el producto completo: se lee dentro del carril para no reescribir un saldo anterior
+        return laneSequencer.execute(product.getId(), () -> readProduct(product.getId())
+                        .flatMap(current -> {
+                            current.setStatus(ProductStatus.BLOCKED_AVG_BALANCE); // se bloqueará el producto
+                            return productService.updateProduct(current);
+                        }))
+                .then()
+                .onErrorResume(e -> {
+                    log.error("No se pudo bloquear por saldo promedio el producto {}: {}",
+                            product.getId(), e.getMessage());
+                    return Mono.empty();
+                });
     }
 
     private Mono<Boolean> hasValidMaintenanceFee(BankProductDTO product) {
@@ -112,7 +621,24 @@ public class MonthlyTasksServiceImpl implements MonthlyTasksService {
         return Mono.just(fee != null && fee > 0);
     }
 
-    private Mono<Void> applyFeeIfBalanceSufficient(BankProductDTO product) {
+    private Mono<BankProductDTO> readProduct(String productId) {
+        return productService.getProductById(productId, StalenessPolicy.STRICT)
+                .map(response -> response.getProducts().get(0));
+    }
+
+    private Mono<BankProductDTO> fetchProduct(String productId) {
+        // En modo outbox el saldo efectivo incluye transacciones aún no propagadas
+        return readProduct(productId)
+                .flatMap(product -> outboxService.isEnabled()
+                        ? outboxService.withPendingBalance(product)
+                        : Mono.just(product));
+    }
+
+    /**
+     * Descuenta la comisión del saldo del producto y devuelve su transacción, con el id indicado, para
+     * registrarla antes de escribir el saldo.
+     */
+    private Mono<Transaction> chargeMaintenanceFee(BankProductDTO product, String transactionId) {
         ProductDetails details = product.getDetails();
         Double feeValue = 0.0;
 
@@ -124,24 +650,101 @@ public class MonthlyTasksServiceImpl implements MonthlyTasksService {
             feeValue = ((FixedTermAccount) details).getMaintenanceFee();
         }
 
-        BigDecimal fee = BigDecimal.valueOf(feeValue);
-        BigDecimal balance = Optional.ofNullable(product.getBalance()).orElse(BigDecimal.ZERO);
+        Money fee = Money.of(feeValue);
+        Money balance = Money.of(product.getBalance());
 
-        if (balance.compareTo(fee) < 0) {
+        if (balance.isLessThan(fee)) {
             return Mono.empty(); // Sin saldo suficiente
         }
 
-        product.setBalance(balance.subtract(fee));
+        product.setBalance(balance.minus(fee).toBigDecimal());
 
         Transaction tx = Transaction.builder()
+                .id(transactionId)
                 .sourceProductId(product.getId())
-                .amount(fee)
+                .amount(fee.toBigDecimal())
                 .type(TransactionType.MAINTENANCE)
                 .dateTime(LocalDateTime.now())
                 .build();
+        return Mono.just(tx);
+    }
 
-        return  productService.updateProduct(product)
-                .flatMap(r -> repository.save(tx))
-                .then();
+    private Mono<Void> recordCharge(BankProductDTO product, Transaction saved) {
+        return counterService.increment(saved.getSourceProductId(), saved.getDateTime(), 1)
+                .then(statsService.record(product, List.of(saved)));
+    }
+
+    /**
+     * Estado de un producto dentro de un tramo.
+     */
+    private static final class ProductRun {
+        private final BankProductDTO product;
+        private final String checkpointId;
+        private boolean feeDue;
+        /**
+         * Comisión registrada por un arranque anterior y aún sin conciliar.
+         */
+        private MonthlyJobCheckpoint pendingFee;
+        /**
+         * Producto leído en el momento del cobro, con el saldo ya descontado.
+         */
+        private BankProductDTO charged;
+        private BigDecimal balanceBefore;
+        private Transaction fee;
+        /**
+         * Estado con que se registra la comisión antes de escribir el saldo.
+         */
+        private MonthlyJobStatus feeIntent;
+        /**
+         * Estado de la comisión que conserva el punto de control si el producto termina con error.
+         */
+        private MonthlyJobStatus feeState;
+        private String error;
+        private boolean skipped;
+        /**
+         * Reclamado en su punto de control por la época actual del lease.
+         */
+        private boolean claimed;
+        /**
+         * El lease se perdió antes de cobrar: el producto queda para el nuevo dueño.
+         */
+        private boolean lost;
+
+        private ProductRun(BankProductDTO product, String checkpointId) {
+            this.product = product;
+            this.checkpointId = checkpointId;
+        }
+
+        private ProductRun claim(MonthlyJobCheckpoint previous) {
+            claimed = true;
+            if (previous != null && (previous.getStatus() == MonthlyJobStatus.FEE_PENDING
+                    || previous.getStatus() == MonthlyJobStatus.FEE_APPLIED)) {
+                pendingFee = previous;
+                feeState = previous.getStatus();
+            }
+            return this;
+        }
+
+        private void charge(BankProductDTO charged, Transaction fee, BigDecimal balanceBefore,
+                            MonthlyJobStatus feeIntent) {
+            this.charged = charged;
+            this.fee = fee;
+            this.balanceBefore = balanceBefore;
+            this.feeIntent = feeIntent;
+        }
+
+        private ProductRun fail(String message) {
+            // Se conserva el primer error del producto
+            if (error == null) {
+                error = message != null ? message : Constants.ERROR_INTERNAL;
+            }
+            return this;
+        }
+    }
+
+    private enum ProductOutcome {
+        PROCESSED,
+        SKIPPED,
+        FAILED
     }
 }
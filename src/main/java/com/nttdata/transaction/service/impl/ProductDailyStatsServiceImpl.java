@@ -0,0 +1,258 @@
+package com.nttdata.transaction.service.impl;
+
+import com.nttdata.transaction.model.Dto.BankProductDTO;
+import com.nttdata.transaction.model.Dto.ProductAverageBalance;
+import com.nttdata.transaction.model.Dto.ProductMonthlyStats;
+import com.nttdata.transaction.model.ProductDailyStats;
+import com.nttdata.transaction.model.ProductSequence;
+import com.nttdata.transaction.model.Transaction;
+import com.nttdata.transaction.model.Type.StalenessPolicy;
+import com.nttdata.transaction.service.ProductDailyStatsService;
+import com.nttdata.transaction.service.ProductService;
+import com.nttdata.transaction.service.TransactionOutboxService;
+import com.nttdata.transaction.support.DailyBalanceEngine;
+import com.nttdata.transaction.support.ProductLaneSequencer;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class ProductDailyStatsServiceImpl implements ProductDailyStatsService {
+    private static final Logger log = LoggerFactory.getLogger(ProductDailyStatsServiceImpl.class);
+    private static final int MONTHLY_AVERAGES_BATCH_SIZE = 500;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ProductService productService;
+    private final TransactionOutboxService outboxService;
+    private final ProductLaneSequencer laneSequencer;
+
+    /**
+     * Crea los índices usados por las consultas mensuales: por producto y día, y por día para la
+     * agregación de todos los productos del mes.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        Flux.just(new Index().on("productId", Sort.Direction.ASC).on("date", Sort.Direction.ASC)
+                                .named("product_date"),
+                        new Index().on("date", Sort.Direction.ASC).on("productId", Sort.Direction.ASC)
+                                .named("date_product"))
+                .concatMap(index -> mongoTemplate.indexOps(ProductDailyStats.class).ensureIndex(index))
+                .subscribe(name -> log.info("Índice de resúmenes diarios: {}", name),
+                        e -> log.error("No se pudo crear el índice de resúmenes diarios", e));
+    }
+
+    @Override
+    public Mono<Void> record(BankProductDTO product, List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return Mono.empty();
+        }
+
+        LocalDate first = transactions.stream().map(tx -> tx.getDateTime().toLocalDate())
+                .min(LocalDate::compareTo).orElseThrow();
+        LocalDate last = transactions.stream().map(tx -> tx.getDateTime().toLocalDate())
+                .max(LocalDate::compareTo).orElseThrow();
+        DailyBalanceEngine engine = new DailyBalanceEngine(product, first, last);
+        transactions.forEach(engine::add);
+        long[] closings = engine.balancesEndingAt(DailyBalanceEngine.toMinor(product.getBalance()));
+
+        // La secuencia se toma dentro del carril del producto: ordena los cierres aunque las escrituras
+        // de dos registros lleguen a la base de datos en otro orden
+        return nextSequence(product.getId())
+                .flatMapMany(sequence -> Flux.range(0, engine.days())
+                        .filter(day -> engine.countAt(day) > 0)
+                        .concatMap(day -> mongoTemplate.upsert(byId(product.getId(), engine.dateAt(day)),
+                                        new Update()
+                                                .setOnInsert("productId", product.getId())
+                                                .setOnInsert("date", engine.dateAt(day).toString())
+                                                .inc("netDelta", engine.deltaAt(day))
+                                                .inc("txCount", engine.countAt(day))
+                                                .inc("feeSum", engine.feeAt(day))
+                                                .set("updatedAt", LocalDateTime.now()),
+                                        ProductDailyStats.class)
+                                // Dos upserts simultáneos del primer movimiento del día: el segundo se reintenta
+                                .retryWhen(Retry.max(1).filter(DuplicateKeyException.class::isInstance))
+                                .then(updateClosing(product.getId(), engine.dateAt(day), closings[day], sequence))))
+                .then()
+                // El resumen es derivado: si falla no se rechaza la transacción, el backfill lo repara
+                .onErrorResume(e -> {
+                    log.warn("No se pudo actualizar el resumen diario del producto {}: {}",
+                            product.getId(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    @Override
+    public Mono<BigDecimal> averageDailyBalance(BankProductDTO product, YearMonth month) {
+        Query query = Query.query(Criteria.where("productId").is(product.getId())
+                        .and("date").gte(month.atDay(1).toString()).lte(month.atEndOfMonth().toString()))
+                .with(Sort.by("date"));
+
+        return mongoTemplate.find(query, ProductDailyStats.class)
+                .collectList()
+                .map(stats -> average(stats, DailyBalanceEngine.toMinor(product.getBalance()), month));
+    }
+
+    @Override
+    public Mono<Map<String, BigDecimal>> averageDailyBalances(List<BankProductDTO> products, YearMonth month) {
+        List<String> productIds = products.stream().map(BankProductDTO::getId).collect(Collectors.toList());
+        Query query = Query.query(Criteria.where("productId").in(productIds)
+                        .and("date").gte(month.atDay(1).toString()).lte(month.atEndOfMonth().toString()))
+                .with(Sort.by("productId", "date"));
+
+        return mongoTemplate.find(query, ProductDailyStats.class)
+                .collectMultimap(ProductDailyStats::getProductId)
+                .map(statsByProduct -> products.stream().collect(Collectors.toMap(BankProductDTO::getId,
+                        product -> average(List.copyOf(statsByProduct.getOrDefault(product.getId(), List.of())),
+                                DailyBalanceEngine.toMinor(product.getBalance()), month),
+                        (first, second) -> first)));
+    }
+
+    @Override
+    public Flux<ProductAverageBalance> streamMonthlyAverages(YearMonth month, Collection<String> productIds) {
+        if (productIds.isEmpty()) {
+            return Flux.empty();
+        }
+        // Solo los productos pedidos (índice product_date); sus días se agrupan ya ordenados en el servidor
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("productId").in(productIds)
+                        .and("date").gte(month.atDay(1).toString()).lte(month.atEndOfMonth().toString())),
+                Aggregation.project("productId", "date", "netDelta", "closingBalance"),
+                Aggregation.sort(Sort.by("productId", "date")),
+                Aggregation.group("productId").push(Aggregation.ROOT).as("days"))
+                .withOptions(AggregationOptions.builder()
+                        .allowDiskUse(true)
+                        .cursorBatchSize(MONTHLY_AVERAGES_BATCH_SIZE)
+                        .build());
+
+        return mongoTemplate.aggregate(aggregation, ProductDailyStats.class, ProductMonthlyStats.class)
+                .map(stats -> new ProductAverageBalance(stats.getProductId(),
+                        average(stats.getDays(), 0L, month)));
+    }
+
+    @Override
+    public Mono<Long> backfill(LocalDate from) {
+        return productService.getAllBankProducts()
+                .flatMapMany(response -> Flux.fromIterable(response.getProducts()))
+                .concatMap(product -> backfillProduct(product.getId(), from))
+                .reduce(0L, Long::sum)
+                .doOnNext(count -> log.info("Resúmenes diarios reconstruidos desde {}: {}", from, count));
+    }
+
+    /**
+     * Reconstruye los resúmenes del producto dentro de su carril: mientras dura no se registran
+     * movimientos del producto, por lo que ningún $inc se suma ni se pierde sobre los valores
+     * recalculados. El saldo se vuelve a leer ya dentro del carril.
+     */
+    private Mono<Long> backfillProduct(String productId, LocalDate from) {
+        return laneSequencer.execute(productId, () -> productService
+                .getProductById(productId, StalenessPolicy.STRICT)
+                .map(response -> response.getProducts().get(0))
+                .flatMap(product -> outboxService.isEnabled()
+                        ? outboxService.withPendingBalance(product)
+                        : Mono.just(product))
+                .flatMap(product -> nextSequence(productId)
+                        .flatMap(sequence -> rebuildProduct(product, from, sequence))));
+    }
+
+    private Mono<Long> rebuildProduct(BankProductDTO product, LocalDate from, long sequence) {
+        Query query = Query.query(new Criteria().andOperator(
+                new Criteria().orOperator(
+                        Criteria.where("sourceProductId").is(product.getId()),
+                        Criteria.where("targetProductId").is(product.getId())),
+                Criteria.where("dateTime").gte(from.atStartOfDay())));
+
+        return mongoTemplate.find(query, Transaction.class)
+                .reduce(new DailyBalanceEngine(product, from, LocalDate.now()), DailyBalanceEngine::add)
+                .flatMapMany(engine -> {
+                    // El saldo actual es el cierre del último día del rango
+                    long[] closings = engine.balancesEndingAt(DailyBalanceEngine.toMinor(product.getBalance()));
+                    return Flux.range(0, engine.days())
+                            .filter(day -> engine.countAt(day) > 0)
+                            .concatMap(day -> mongoTemplate.upsert(byId(product.getId(), engine.dateAt(day)),
+                                    new Update()
+                                            .set("productId", product.getId())
+                                            .set("date", engine.dateAt(day).toString())
+                                            .set("netDelta", engine.deltaAt(day))
+                                            .set("txCount", engine.countAt(day))
+                                            .set("feeSum", engine.feeAt(day))
+                                            .set("closingBalance", closings[day])
+                                            .set("closingSequence", sequence)
+                                            .set("updatedAt", LocalDateTime.now()),
+                                    ProductDailyStats.class));
+                })
+                .count();
+    }
+
+    private BigDecimal average(List<ProductDailyStats> stats, long currentBalance, YearMonth month) {
+        if (stats.isEmpty()) {
+            // Sin movimientos en el mes el saldo se mantuvo igual todos los días
+            return DailyBalanceEngine.fromMinor(currentBalance);
+        }
+
+        Map<String, ProductDailyStats> byDate = stats.stream()
+                .collect(Collectors.toMap(ProductDailyStats::getDate, Function.identity()));
+        long[] balances = new long[month.lengthOfMonth()];
+        // Saldo de apertura: cierre del primer día con movimientos menos su variación
+        long balance = stats.get(0).getClosingBalance() - stats.get(0).getNetDelta();
+        for (int day = 0; day < balances.length; day++) {
+            ProductDailyStats dayStats = byDate.get(month.atDay(day + 1).toString());
+            if (dayStats != null) {
+                balance = dayStats.getClosingBalance();
+            }
+            balances[day] = balance;
+        }
+        return DailyBalanceEngine.fromMinor(DailyBalanceEngine.average(balances));
+    }
+
+    /**
+     * Escribe el cierre del día solo si no hay uno escrito con una secuencia posterior.
+     */
+    private Mono<Void> updateClosing(String productId, LocalDate date, long closingBalance, long sequence) {
+        Query query = Query.query(Criteria.where("_id").is(ProductDailyStats.buildId(productId, date))
+                .orOperator(Criteria.where("closingSequence").lt(sequence),
+                        Criteria.where("closingSequence").exists(false)));
+        return mongoTemplate.updateFirst(query, new Update()
+                                .set("closingBalance", closingBalance)
+                                .set("closingSequence", sequence),
+                        ProductDailyStats.class)
+                .then();
+    }
+
+    private Mono<Long> nextSequence(String productId) {
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(productId)),
+                        new Update().inc("value", 1L),
+                        FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        ProductSequence.class)
+                .map(ProductSequence::getValue);
+    }
+
+    private Query byId(String productId, LocalDate date) {
+        return Query.query(Criteria.where("_id").is(ProductDailyStats.buildId(productId, date)));
+    }
+}
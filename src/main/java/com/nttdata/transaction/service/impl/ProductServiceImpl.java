@@ -1,27 +1,55 @@
 package com.nttdata.transaction.service.impl;
 
+import com.nttdata.transaction.config.CircuitBreakerConfigHelper;
+import com.nttdata.transaction.config.ProductBatchUpdateProperties;
 import com.nttdata.transaction.model.Dto.BankProductDTO;
 import com.nttdata.transaction.model.Dto.BankProductResponse;
 import com.nttdata.transaction.model.Dto.CardProductResponse;
+import com.nttdata.transaction.model.Type.StalenessPolicy;
 import com.nttdata.transaction.service.ProductService;
+import com.nttdata.transaction.support.ProductBatchLoader;
+import com.nttdata.transaction.support.ProductSnapshotCache;
+import com.nttdata.transaction.support.SingleFlight;
 import com.nttdata.transaction.utils.Constants;
+import com.nttdata.transaction.utils.ProductMapper;
 import com.nttdata.transaction.utils.exceptions.EmptyResultException;
-import com.nttdata.transaction.utils.Utils;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
 @Service
 @RequiredArgsConstructor
 public class ProductServiceImpl implements ProductService {
     private static final Logger log = LoggerFactory.getLogger(ProductServiceImpl.class);
+    private static final String PRODUCT_KEY = "product:";
+    private static final String CARD_KEY = "card:";
+    private static final String CUSTOMER_KEY = "customer:";
+    private final WebClient productServiceWebClient;
+    private final ProductSnapshotCache productCache;
+    private final CircuitBreakerConfigHelper resilience;
+    private final SingleFlight singleFlight;
+    private final ProductBatchLoader batchLoader;
+    private final ProductBatchUpdateProperties batchUpdateProperties;
 
     @Override
     public Mono<CardProductResponse> getCardById(String cardId) {
-        return Utils.getProductService().get().get()
+        // La tarjeta solo se lee: todos los suscriptores pueden compartir la misma respuesta
+        return singleFlight.execute(CARD_KEY + cardId, () -> fetchCardById(cardId), UnaryOperator.identity());
+    }
+
+    private Mono<CardProductResponse> fetchCardById(String cardId) {
+        return resilience.protectRead(productServiceWebClient.get()
                 .uri("/debit-cards/{id}", cardId)
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, response -> {
@@ -30,51 +58,179 @@ public class ProductServiceImpl implements ProductService {
                     }
                     return Mono.error(new RuntimeException("Error en la solicitud: " + response.statusCode()));
                 })
-                .bodyToMono(CardProductResponse.class);
+                .bodyToMono(CardProductResponse.class));
     }
 
     @Override
     public Mono<BankProductResponse> getProductById(String productId) {
-        return Utils.getProductService().get().get()
-                .uri("/products/{id}", productId)
-                .retrieve()
-                .onStatus(HttpStatus::is4xxClientError, response -> {
-                    if (response.statusCode() == HttpStatus.NOT_FOUND) {
-                        return Mono.error(new EmptyResultException(Constants.ERROR_FIND_PRODUCT));
-                    }
-                    return Mono.error(new RuntimeException("Error en la solicitud: " + response.statusCode()));
-                })
-                .bodyToMono(BankProductResponse.class);
+        return getProductById(productId, StalenessPolicy.STRICT);
+    }
+
+    @Override
+    public Mono<BankProductResponse> getProductById(String productId, StalenessPolicy policy) {
+        return Mono.defer(() -> productCache.get(productId, policy)
+                .map(Mono::just)
+                .orElseGet(() -> singleFlight.execute(PRODUCT_KEY + productId,
+                        () -> batchLoader.isEnabled() ? loadProductById(productId) : fetchProductById(productId),
+                        ProductMapper::copyOf)));
+    }
+
+    @Override
+    public Mono<BankProductResponse> getProductById(String productId, Instant observedSince) {
+        return Mono.defer(() -> productCache.getObservedSince(productId, observedSince)
+                .map(Mono::just)
+                .orElseGet(() -> getProductById(productId, StalenessPolicy.STRICT)));
+    }
+
+    private Mono<BankProductResponse> loadProductById(String productId) {
+        // Consulta agrupada con las de otros productos en una sola petición multi-id
+        return Mono.defer(() -> {
+            Instant startedAt = Instant.now();
+            return batchLoader.load(productId)
+                    .doOnNext(response -> productCache.put(response, startedAt))
+                    .doOnError(e -> productCache.invalidate(productId));
+        });
+    }
+
+    private Mono<BankProductResponse> fetchProductById(String productId) {
+        // Lectura con reintentos y, si está habilitada, petición de respaldo tras el p95
+        return Mono.defer(() -> {
+            Instant startedAt = Instant.now();
+            return resilience.protectHedgedRead(productServiceWebClient.get()
+                    .uri("/products/{id}", productId)
+                    .retrieve()
+                    .onStatus(HttpStatus::is4xxClientError, response -> {
+                        productCache.invalidate(productId);
+                        if (response.statusCode() == HttpStatus.NOT_FOUND) {
+                            return Mono.error(new EmptyResultException(Constants.ERROR_FIND_PRODUCT));
+                        }
+                        return Mono.error(new RuntimeException("Error en la solicitud: " + response.statusCode()));
+                    })
+                    .onStatus(HttpStatus::is5xxServerError, response -> {
+                        productCache.invalidate(productId);
+                        return response.createException();
+                    })
+                    .bodyToMono(BankProductResponse.class))
+                    // Se guarda una copia y cada suscriptor recibe otra: quien llama puede modificar su producto
+                    .doOnNext(response -> productCache.put(response, startedAt));
+        });
     }
 
     @Override
     public Mono<BankProductResponse> getProductByCustomerId(String customerId) {
-        return Utils.getProductService().get().get()
-                .uri("/products/customer/{id}", customerId)
-                .retrieve()
-                .onStatus(HttpStatus::is4xxClientError, response -> {
-                    if (response.statusCode() == HttpStatus.NOT_FOUND) {
-                        return Mono.error(new EmptyResultException(Constants.ERROR_FIND_PRODUCT));
-                    }
-                    return Mono.error(new RuntimeException("Error en la solicitud: " + response.statusCode()));
-                })
-                .bodyToMono(BankProductResponse.class);
+        return singleFlight.execute(CUSTOMER_KEY + customerId,
+                () -> fetchProductByCustomerId(customerId), ProductMapper::copyOf);
+    }
+
+    private Mono<BankProductResponse> fetchProductByCustomerId(String customerId) {
+        return Mono.defer(() -> {
+            Instant startedAt = Instant.now();
+            return resilience.protectRead(productServiceWebClient.get()
+                    .uri("/products/customer/{id}", customerId)
+                    .retrieve()
+                    .onStatus(HttpStatus::is4xxClientError, response -> {
+                        if (response.statusCode() == HttpStatus.NOT_FOUND) {
+                            return Mono.error(new EmptyResultException(Constants.ERROR_FIND_PRODUCT));
+                        }
+                        return Mono.error(new RuntimeException("Error en la solicitud: " + response.statusCode()));
+                    })
+                    .bodyToMono(BankProductResponse.class))
+                    .doOnNext(response -> productCache.put(response, startedAt));
+        });
     }
 
     @Override
     public Mono<BankProductResponse> updateProduct(BankProductDTO product) {
-        return Utils.getProductService().get().put()
+        // Escritura: sin reintentos automáticos. Una lectura iniciada antes de la escritura
+        // no se comparte con las posteriores.
+        String flightKey = PRODUCT_KEY + product.getId();
+        return resilience.protect(productServiceWebClient.put()
                 .uri("/products/{id}", product.getId())
                 .bodyValue(product)
                 .retrieve()
-                .bodyToMono(BankProductResponse.class);
+                .onStatus(HttpStatus::isError, response -> {
+                    productCache.invalidate(product.getId());
+                    return response.createException();
+                })
+                .bodyToMono(BankProductResponse.class))
+                // Write-through: la caché refleja el último estado escrito por este servicio
+                .doOnNext(response -> {
+                    if (response.getProducts() != null && !response.getProducts().isEmpty()) {
+                        productCache.put(response);
+                    } else {
+                        productCache.invalidate(product.getId());
+                    }
+                })
+                .doOnError(e -> productCache.invalidate(product.getId()))
+                .doOnSubscribe(subscription -> singleFlight.forget(flightKey))
+                // Antes de propagar el resultado: quien continúe tras la escritura no reutiliza una lectura previa
+                .doOnTerminate(() -> singleFlight.forget(flightKey))
+                // Cancelada (p. ej. por timeout) la escritura pudo aplicarse: la copia en caché ya no es fiable
+                .doOnCancel(() -> {
+                    productCache.invalidate(product.getId());
+                    singleFlight.forget(flightKey);
+                });
+    }
+
+    @Override
+    public Mono<BankProductResponse> updateProducts(List<BankProductDTO> products) {
+        if (products.isEmpty()) {
+            return Mono.just(BankProductResponse.builder().status(HttpStatus.OK.value()).products(List.of()).build());
+        }
+        if (!batchUpdateProperties.isEnabled()) {
+            // Sin actualización por lote: una petición por producto, omitiendo las que fallan
+            return Flux.fromIterable(products)
+                    .flatMap(product -> updateProduct(product)
+                                    .flatMapIterable(response -> response.getProducts() == null
+                                            ? List.of() : response.getProducts())
+                                    .onErrorResume(e -> {
+                                        log.warn("No se pudo actualizar el producto {}: {}",
+                                                product.getId(), e.getMessage());
+                                        return Flux.empty();
+                                    }),
+                            batchUpdateProperties.getFallbackConcurrency())
+                    .collectList()
+                    .map(updated -> BankProductResponse.builder()
+                            .status(HttpStatus.OK.value())
+                            .products(updated)
+                            .build());
+        }
+
+        List<String> flightKeys = products.stream().map(product -> PRODUCT_KEY + product.getId())
+                .collect(Collectors.toList());
+        return resilience.protect(productServiceWebClient.put()
+                .uri(batchUpdateProperties.getBatchPath())
+                .bodyValue(products)
+                .retrieve()
+                .onStatus(HttpStatus::isError, response -> {
+                    products.forEach(product -> productCache.invalidate(product.getId()));
+                    return response.createException();
+                })
+                .bodyToMono(BankProductResponse.class))
+                // Write-through de los actualizados; los omitidos se vuelven a leer del product-service
+                .doOnNext(response -> {
+                    Set<String> updated = response.getProducts() == null ? Set.of()
+                            : response.getProducts().stream().map(BankProductDTO::getId).collect(Collectors.toSet());
+                    products.stream().filter(product -> !updated.contains(product.getId()))
+                            .forEach(product -> productCache.invalidate(product.getId()));
+                    if (!updated.isEmpty()) {
+                        productCache.put(response);
+                    }
+                })
+                .doOnError(e -> products.forEach(product -> productCache.invalidate(product.getId())))
+                .doOnSubscribe(subscription -> flightKeys.forEach(singleFlight::forget))
+                .doOnTerminate(() -> flightKeys.forEach(singleFlight::forget))
+                .doOnCancel(() -> {
+                    products.forEach(product -> productCache.invalidate(product.getId()));
+                    flightKeys.forEach(singleFlight::forget);
+                });
     }
 
     @Override
     public Mono<BankProductResponse> getAllBankProducts() {
-        return Utils.getProductService().get().get()
+        return resilience.protectRead(productServiceWebClient.get()
                 .uri("/products")
                 .retrieve()
-                .bodyToMono(BankProductResponse.class);
+                .bodyToMono(BankProductResponse.class));
     }
 }
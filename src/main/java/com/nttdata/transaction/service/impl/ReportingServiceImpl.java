@@ -2,17 +2,22 @@ package com.nttdata.transaction.service.impl;
 
 import com.nttdata.transaction.model.Details.CreditProduct;
 import com.nttdata.transaction.model.Dto.BankProductDTO;
+import com.nttdata.transaction.model.Dto.ProductCommissionTotal;
 import com.nttdata.transaction.model.Transaction;
 import com.nttdata.transaction.model.Type.ProductType;
-import com.nttdata.transaction.model.Type.TransactionType;
+import com.nttdata.transaction.model.Type.StalenessPolicy;
 import com.nttdata.transaction.repository.TransactionRepository;
+import com.nttdata.transaction.service.ProductDailyStatsService;
 import com.nttdata.transaction.service.ProductService;
 import com.nttdata.transaction.service.ReportingService;
+import com.nttdata.transaction.support.ReportScheduler;
+import com.nttdata.transaction.utils.Constants;
 import com.nttdata.transaction.utils.ProductMapper;
 import lombok.RequiredArgsConstructor;
 import org.openapitools.model.AvailableBalanceResponseBalance;
 import org.openapitools.model.BalanceSummaryResponseBalanceSummary;
 import org.openapitools.model.CommissionReportResponseCommissionReport;
+import org.openapitools.model.CustomerDashboard;
 import org.openapitools.model.ProductBalanceSummary;
 import org.openapitools.model.ProductConsolidatedSummaryResponseSummary;
 import org.openapitools.model.ProductGeneralSummaryResponseSummary;
@@ -23,15 +28,14 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.OffsetDateTime;
 import java.time.YearMonth;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -40,6 +44,8 @@ public class ReportingServiceImpl implements ReportingService {
     private static final Logger log = LoggerFactory.getLogger(ReportingServiceImpl.class);
     private final TransactionRepository repository;
     private final ProductService productService;
+    private final ProductDailyStatsService statsService;
+    private final ReportScheduler reportScheduler;
 
     @Override
     public Mono<ProductGeneralSummaryResponseSummary> generateGeneralProductSummary(
@@ -52,28 +58,14 @@ public class ReportingServiceImpl implements ReportingService {
                             .map(BankProductDTO::getId)
                             .collect(Collectors.toList());
 
-                    return repository.findByDateRangeAndProductIds(
+                    return repository.findActiveProductIds(
                                     productIds,
                                     start.toLocalDateTime(),
                                     end.toLocalDateTime()
                             )
-                            .flatMap(tx -> Flux.just(tx.getSourceProductId(), tx.getTargetProductId()))
-                            .distinct()
-                            .collectList()
-                            .map(activeProductIds -> {
-                                List<BankProductDTO> filtered = allProducts.stream()
-                                        .filter(p -> activeProductIds.contains(p.getId()))
-                                        .collect(Collectors.toList());
-
-                                ProductGeneralSummaryResponseSummary summary =
-                                        new ProductGeneralSummaryResponseSummary();
-                                summary.setCustomerId(customerId);
-                                summary.setStart(start);
-                                summary.setEnd(end);
-                                summary.setProducts(ProductMapper.toOpenApiList(filtered));
-
-                                return summary;
-                            });
+                            .collect(Collectors.toSet())
+                            .flatMap(activeProductIds -> reportScheduler.compute(() -> toGeneralSummary(
+                                    customerId, start, end, allProducts, activeProductIds)));
                 });
     }
 
@@ -81,51 +73,26 @@ public class ReportingServiceImpl implements ReportingService {
     @Override
     public Mono<ProductConsolidatedSummaryResponseSummary> generateConsolidatedProductSummary(String customerId) {
         return productService.getProductByCustomerId(customerId)
-                .map(response -> {
-                    ProductConsolidatedSummaryResponseSummary summary = new ProductConsolidatedSummaryResponseSummary();
-                    summary.setCustomerId(customerId);
-                    summary.setProducts(ProductMapper.toOpenApiList(response.getProducts()));
-                    return summary;
-                });
+                .flatMap(response -> reportScheduler.compute(
+                        () -> toConsolidatedSummary(customerId, response.getProducts())));
     }
 
     @Override
     public Mono<AvailableBalanceResponseBalance> generateReportAvailableBalance(String sourceProductId) {
-        return  productService.getProductById(sourceProductId)
-                .map(response -> {
-                    BankProductDTO product = response.getProducts().get(0);
-                    BigDecimal balance = product.getBalance() != null ? product.getBalance() : BigDecimal.ZERO;
-
-                    if (isCreditCard(product.getType())) {
-                        CreditProduct detailsCreditProduct = (CreditProduct) product.getDetails();
-                        balance = detailsCreditProduct.getCreditLimit().subtract(balance);
-                    }
-                    AvailableBalanceResponseBalance availableBalanceResponseBalance =
-                            new AvailableBalanceResponseBalance();
-                    availableBalanceResponseBalance.setProductId(product.getId());
-                    availableBalanceResponseBalance.setAvailableBalance(balance);
-                    availableBalanceResponseBalance.setProductCategory(product.getType().name());
-                    return availableBalanceResponseBalance;
-                });
+        return  productService.getProductById(sourceProductId, StalenessPolicy.REPORT)
+                .map(response -> toAvailableBalance(response.getProducts().get(0)));
     }
 
     @Override
     public Flux<BalanceSummaryResponseBalanceSummary> generateMonthlyBalanceSummary(String customerId) {
         YearMonth currentMonth = YearMonth.now();
-        LocalDateTime startDateTime = currentMonth.atDay(1).atStartOfDay();
-        LocalDateTime endDateTime = currentMonth.atEndOfMonth().atTime(LocalTime.MAX);
 
         return productService.getProductByCustomerId(customerId) // Mono<TemplateResponse>
                 .flatMapMany(templateResponse -> Flux.fromIterable(templateResponse.getProducts()))
-                .flatMap(product -> calculateAverageBalance(product, startDateTime, endDateTime))
+                .flatMap(product -> calculateAverageBalance(product, currentMonth))
                 .collectList()
-                .map(summaries -> {
-                    BalanceSummaryResponseBalanceSummary response = new BalanceSummaryResponseBalanceSummary();
-                    response.setCustomerId(customerId);
-                    response.setMonth(currentMonth.toString());
-                    response.setProducts(summaries);
-                    return response;
-                })
+                .flatMap(summaries -> reportScheduler.compute(
+                        () -> toBalanceSummary(customerId, currentMonth, summaries)))
                 .flatMapMany(Flux::just);
     }
 
@@ -148,77 +115,137 @@ public class ReportingServiceImpl implements ReportingService {
         Map<String, ProductType> productTypeMap = products.stream()
                 .collect(Collectors.toMap(BankProductDTO::getId, BankProductDTO::getType));
 
-        return repository.findByDateTimeBetween(start, end)
-                .filter(tx -> tx.getTransactionFee() != null && tx.getTransactionFee() > 0)
-                .filter(tx -> productTypeMap.containsKey(tx.getSourceProductId()))
-                .groupBy(Transaction::getSourceProductId)
-                .flatMap(grouped -> grouped.collectList().map(transactions -> {
-                    String productId = grouped.key();
-                    ProductType productType = productTypeMap.get(productId);
+        // Filtrado y agrupación en Mongo: solo vuelve una fila por producto
+        return reportScheduler.offload(repository.sumCommissionsByProduct(productTypeMap.keySet(), start, end))
+                .map(total -> toCommissionReport(total, productTypeMap.get(total.getProductId())));
+    }
 
-                    BigDecimal totalFee = transactions.stream()
-                            .map(Transaction::getTransactionFee)
-                            .map(BigDecimal::valueOf)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+    @Override
+    public Mono<CustomerDashboard> generateCustomerDashboard(String customerId,
+                                                             OffsetDateTime start,
+                                                             OffsetDateTime end) {
+        YearMonth currentMonth = YearMonth.now();
 
-                    CommissionReportResponseCommissionReport report = new CommissionReportResponseCommissionReport();
-                    report.setProductId(productId);
-                    report.setProductType(productType.name());
-                    report.setTotalTransactions(transactions.size());
-                    report.setTotalFee(totalFee);
-                    report.setCurrency("PEN");
+        return productService.getProductByCustomerId(customerId)
+                .flatMap(response -> {
+                    List<BankProductDTO> products = response.getProducts();
+                    Set<String> productIds = products.stream()
+                            .map(BankProductDTO::getId)
+                            .collect(Collectors.toSet());
+
+                    // Una sola pasada sobre las transacciones del periodo alimenta el resumen general
+                    // y las comisiones; los saldos disponibles salen de los productos ya obtenidos
+                    // El plegado se hace en el planificador de reportes, no en el hilo que entrega los documentos
+                    Mono<ReportAccumulator> scan = reportScheduler.offload(repository
+                                    .findReportableByProducts(productIds, start.toLocalDateTime(),
+                                            end.toLocalDateTime()))
+                            .reduce(new ReportAccumulator(productIds), ReportAccumulator::add);
+
+                    return Mono.zip(scan, statsService.averageDailyBalances(products, currentMonth))
+                            .flatMap(result -> reportScheduler.compute(() -> {
+                                ReportAccumulator accumulator = result.getT1();
+                                Map<String, BigDecimal> averages = result.getT2();
+                                Map<String, ProductType> productTypeMap = products.stream()
+                                        .collect(Collectors.toMap(BankProductDTO::getId, BankProductDTO::getType));
+
+                                CustomerDashboard dashboard = new CustomerDashboard();
+                                dashboard.setCustomerId(customerId);
+                                dashboard.setGeneralSummary(toGeneralSummary(customerId, start, end,
+                                        products, accumulator.activeProductIds));
+                                dashboard.setConsolidatedSummary(toConsolidatedSummary(customerId, products));
+                                dashboard.setAvailableBalances(products.stream()
+                                        .map(this::toAvailableBalance)
+                                        .collect(Collectors.toList()));
+                                dashboard.setBalanceSummary(toBalanceSummary(customerId, currentMonth,
+                                        products.stream()
+                                                .map(product -> toProductBalanceSummary(product,
+                                                        averages.get(product.getId())))
+                                                .collect(Collectors.toList())));
+                                dashboard.setCommissions(accumulator.commissions.values().stream()
+                                        .map(total -> toCommissionReport(total,
+                                                productTypeMap.get(total.getProductId())))
+                                        .collect(Collectors.toList()));
+                                return dashboard;
+                            }));
+                });
+    }
 
-                    return report;
-                }));
+    private ProductGeneralSummaryResponseSummary toGeneralSummary(String customerId,
+                                                                  OffsetDateTime start,
+                                                                  OffsetDateTime end,
+                                                                  List<BankProductDTO> allProducts,
+                                                                  Set<String> activeProductIds) {
+        List<BankProductDTO> filtered = allProducts.stream()
+                .filter(p -> activeProductIds.contains(p.getId()))
+                .collect(Collectors.toList());
+
+        ProductGeneralSummaryResponseSummary summary = new ProductGeneralSummaryResponseSummary();
+        summary.setCustomerId(customerId);
+        summary.setStart(start);
+        summary.setEnd(end);
+        summary.setProducts(ProductMapper.toOpenApiList(filtered));
+        return summary;
     }
 
+    private ProductConsolidatedSummaryResponseSummary toConsolidatedSummary(String customerId,
+                                                                            List<BankProductDTO> products) {
+        ProductConsolidatedSummaryResponseSummary summary = new ProductConsolidatedSummaryResponseSummary();
+        summary.setCustomerId(customerId);
+        summary.setProducts(ProductMapper.toOpenApiList(products));
+        return summary;
+    }
 
+    private AvailableBalanceResponseBalance toAvailableBalance(BankProductDTO product) {
+        BigDecimal balance = product.getBalance() != null ? product.getBalance() : BigDecimal.ZERO;
 
+        if (isCreditCard(product.getType())) {
+            CreditProduct detailsCreditProduct = (CreditProduct) product.getDetails();
+            balance = detailsCreditProduct.getCreditLimit().subtract(balance);
+        }
+        AvailableBalanceResponseBalance availableBalanceResponseBalance =
+                new AvailableBalanceResponseBalance();
+        availableBalanceResponseBalance.setProductId(product.getId());
+        availableBalanceResponseBalance.setAvailableBalance(balance);
+        availableBalanceResponseBalance.setProductCategory(product.getType().name());
+        return availableBalanceResponseBalance;
+    }
 
-    private Mono<ProductBalanceSummary> calculateAverageBalance(BankProductDTO sourceProductId,
-                                                                LocalDateTime startDateTime,
-                                                                LocalDateTime endDateTime) {
+    private BalanceSummaryResponseBalanceSummary toBalanceSummary(String customerId,
+                                                                  YearMonth month,
+                                                                  List<ProductBalanceSummary> summaries) {
+        BalanceSummaryResponseBalanceSummary response = new BalanceSummaryResponseBalanceSummary();
+        response.setCustomerId(customerId);
+        response.setMonth(month.toString());
+        response.setProducts(summaries);
+        return response;
+    }
 
-        return repository.findBySourceProductIdAndDateTimeBetween(sourceProductId.getId(), startDateTime, endDateTime)
-                .collectList()
-                .map(transactions -> {
-                    Map<LocalDate, BigDecimal> dailyBalances = getDailyBalances(startDateTime,
-                            endDateTime, transactions,
-                            sourceProductId.getBalance());
-                    BigDecimal average = dailyBalances.values().stream()
-                            .reduce(BigDecimal.ZERO, BigDecimal::add)
-                            .divide(BigDecimal.valueOf(dailyBalances.size()), 2, RoundingMode.HALF_UP);
-
-                    ProductBalanceSummary response = new ProductBalanceSummary();
-                    response.setProductId(sourceProductId.getId());
-                    response.setProductType(sourceProductId.getType().name());
-                    response.setAverageDailyBalance(average);
-                    return response;
-                });
+    private CommissionReportResponseCommissionReport toCommissionReport(ProductCommissionTotal total,
+                                                                        ProductType productType) {
+        CommissionReportResponseCommissionReport report = new CommissionReportResponseCommissionReport();
+        report.setProductId(total.getProductId());
+        report.setProductType(productType.name());
+        report.setTotalTransactions((int) total.getTotalTransactions());
+        report.setTotalFee(total.getTotalFee());
+        report.setCurrency(Constants.DEFAULT_CURRENCY);
+        return report;
     }
 
-    private Map<LocalDate, BigDecimal> getDailyBalances(LocalDateTime start,
-                                                        LocalDateTime end,
-                                                        List<Transaction> txs,
-                                                        BigDecimal initialBalance) {
-        Map<LocalDate, BigDecimal> balances = new LinkedHashMap<>();
-        BigDecimal balance = initialBalance;
 
-        for (LocalDate date = start.toLocalDate(); !date.isAfter(end.toLocalDate()); date = date.plusDays(1)) {
-            final LocalDate currentDate = date;
 
-            BigDecimal delta = txs.stream()
-                    .filter(t -> t.getDateTime().toLocalDate().equals(currentDate))
-                    .map(t -> t.getType() == TransactionType.DEPOSIT
-                            ? t.getAmount()
-                            : t.getAmount().negate())
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
 
-            balance = balance.add(delta);
-            balances.put(currentDate, balance);
-        }
+    private Mono<ProductBalanceSummary> calculateAverageBalance(BankProductDTO product, YearMonth month) {
+        // Lee como máximo un resumen diario por día del mes en lugar de las transacciones del mes
+        return statsService.averageDailyBalance(product, month)
+                .map(average -> toProductBalanceSummary(product, average));
+    }
 
-        return balances;
+    private ProductBalanceSummary toProductBalanceSummary(BankProductDTO product, BigDecimal average) {
+        ProductBalanceSummary response = new ProductBalanceSummary();
+        response.setProductId(product.getId());
+        response.setProductType(product.getType().name());
+        response.setAverageDailyBalance(average);
+        return response;
     }
 
     private boolean isCreditCard(ProductType type) {
@@ -226,5 +253,36 @@ public class ReportingServiceImpl implements ReportingService {
         return type == ProductType.CREDIT;
     }
 
+    /**
+     * Acumula en una pasada los productos con actividad y las comisiones por producto origen,
+     * con los mismos criterios que las consultas de los reportes individuales.
+     */
+    private static final class ReportAccumulator {
+        private final Set<String> productIds;
+        private final Set<String> activeProductIds = new HashSet<>();
+        // Ordenado por producto, como el $sort del reporte de comisiones
+        private final Map<String, ProductCommissionTotal> commissions = new TreeMap<>();
+
+        private ReportAccumulator(Set<String> productIds) {
+            this.productIds = productIds;
+        }
+
+        private ReportAccumulator add(Transaction tx) {
+            String source = tx.getSourceProductId();
+            if (productIds.contains(source)) {
+                activeProductIds.add(source);
+                if (tx.getTransactionFee() != null && tx.getTransactionFee().signum() > 0) {
+                    // Misma conversión a céntimos que la agregación del reporte de comisiones
+                    commissions.computeIfAbsent(source, id -> new ProductCommissionTotal(id, 0L, 0L))
+                            .add(tx.getTransactionFee());
+                }
+            }
+            if (productIds.contains(tx.getTargetProductId())) {
+                activeProductIds.add(tx.getTargetProductId());
+            }
+            return this;
+        }
+    }
+
 
 }
@@ -1,7 +1,9 @@
 package com.nttdata.transaction.service.impl;
 
+import com.nttdata.transaction.config.CardProperties;
 import com.nttdata.transaction.model.Dto.CardProductDTO;
 import com.nttdata.transaction.model.Transaction;
+import com.nttdata.transaction.model.Type.StalenessPolicy;
 import com.nttdata.transaction.service.ProductService;
 import com.nttdata.transaction.service.TransactionCardService;
 import com.nttdata.transaction.service.TransactionService;
@@ -12,6 +14,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -21,26 +24,36 @@ import java.util.Optional;
 public class TransactionCardServiceImpl implements TransactionCardService {
     private final ProductService productService;
     private final TransactionService transactionService;
+    private final CardProperties cardProperties;
 
     @Override
     public Mono<Transaction> processCardTransaction(Transaction transaction) {
-        return productService.getCardById(transaction.getSourceProductId())
-                .flatMap(responseSource -> {
-                    CardProductDTO cardSource = responseSource.getProducts().get(0);
-                    // Orden: principal + resto
-                    List<String> orderedAccounts = new ArrayList<>();
-                    orderedAccounts.add(cardSource.getPrimaryAccountId());
-                    cardSource.getLinkedAccountIds().stream()
-                            .filter(id -> !id.equals(cardSource.getPrimaryAccountId()))
-                            .forEach(orderedAccounts::add);
+        return Mono.defer(() -> {
+            // Las lecturas del product-service hechas desde aquí pueden reutilizarse al registrar el cargo
+            Instant requestStart = Instant.now();
+            return productService.getCardById(transaction.getSourceProductId())
+                    .flatMap(responseSource -> {
+                        CardProductDTO cardSource = responseSource.getProducts().get(0);
+                        // Orden: principal + resto
+                        List<String> orderedAccounts = new ArrayList<>();
+                        orderedAccounts.add(cardSource.getPrimaryAccountId());
+                        cardSource.getLinkedAccountIds().stream()
+                                .filter(id -> !id.equals(cardSource.getPrimaryAccountId()))
+                                .forEach(orderedAccounts::add);
 
-                    return handleCardTransaction(orderedAccounts, transaction);
-                });
+                        return handleCardTransaction(orderedAccounts, transaction, requestStart);
+                    });
+        });
     }
 
-    private Mono<Transaction> handleCardTransaction( List<String> orderedAccounts, Transaction transaction){
+    private Mono<Transaction> handleCardTransaction(List<String> orderedAccounts, Transaction transaction,
+                                                    Instant requestStart) {
         return Flux.fromIterable(orderedAccounts)
-                .concatMap(productService::getProductById) // Consulta ordenada una por una
+                // Consulta las cuentas en paralelo (acotado) y entrega los resultados en orden principal-primero;
+                // al encontrar la primera con saldo suficiente se cancelan las consultas pendientes.
+                // La selección acepta una copia reciente; el saldo se vuelve a validar al registrar la transacción
+                .flatMapSequential(id -> productService.getProductById(id, StalenessPolicy.LOOKUP),
+                        cardProperties.getProbeConcurrency())
                 .map(response -> response.getProducts().get(0))
                 .filter(account -> {
                     BigDecimal balance = Optional.ofNullable(account.getBalance()).orElse(BigDecimal.ZERO);
@@ -55,7 +68,8 @@ public class TransactionCardServiceImpl implements TransactionCardService {
                     newTx.setAmount(transaction.getAmount());
                     newTx.setSourceProductId(selectedAccount.getId());
                     newTx.setDateTime(transaction.getDateTime());
-                    return transactionService.create(newTx);
+                    // El saldo se relee dentro del carril salvo que la consulta anterior se hiciera en esta petición
+                    return transactionService.create(newTx, requestStart);
                 });
     }
 
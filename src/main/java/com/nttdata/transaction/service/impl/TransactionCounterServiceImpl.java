@@ -0,0 +1,112 @@
+package com.nttdata.transaction.service.impl;
+
+import com.nttdata.transaction.model.ProductMonthlyCounter;
+import com.nttdata.transaction.repository.TransactionRepository;
+import com.nttdata.transaction.service.TransactionCounterService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+
+@Service
+@RequiredArgsConstructor
+public class TransactionCounterServiceImpl implements TransactionCounterService {
+    private static final Logger log = LoggerFactory.getLogger(TransactionCounterServiceImpl.class);
+    private static final int MAX_SYNC_ATTEMPTS = 5;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final TransactionRepository repository;
+
+    @Override
+    public Mono<Long> getMonthlyCount(String productId, YearMonth month) {
+        return mongoTemplate.findById(ProductMonthlyCounter.buildId(productId, month), ProductMonthlyCounter.class)
+                .filter(ProductMonthlyCounter::isSeeded)
+                .map(ProductMonthlyCounter::getCount)
+                // Si el contador no existe o no se sembró, se suma el historial previo
+                .switchIfEmpty(Mono.defer(() -> counter(productId, month, LocalDateTime.now())
+                        .then(syncHistory(productId, month))));
+    }
+
+    @Override
+    public Mono<Void> increment(String productId, LocalDateTime dateTime, long delta) {
+        YearMonth month = YearMonth.from(dateTime);
+        // Un contador creado por el incremento empieza en la fecha de la transacción: las anteriores
+        // se suman después, al sembrarlo
+        return counter(productId, month, dateTime)
+                .flatMap(counter -> dateTime.isBefore(counter.getCreatedAt())
+                        // Transacción en curso mientras se creaba el contador: ya forma parte del historial
+                        ? syncHistory(productId, month).then()
+                        : mongoTemplate.updateFirst(byId(productId, month),
+                                new Update().inc("count", delta).set("updatedAt", LocalDateTime.now()),
+                                ProductMonthlyCounter.class).then());
+    }
+
+    private Mono<ProductMonthlyCounter> counter(String productId, YearMonth month, LocalDateTime createdAt) {
+        return Mono.defer(() -> mongoTemplate.findAndModify(byId(productId, month),
+                        new Update()
+                                .setOnInsert("productId", productId)
+                                .setOnInsert("month", month.toString())
+                                .setOnInsert("count", 0L)
+                                .setOnInsert("historyCount", 0L)
+                                .setOnInsert("seeded", false)
+                                .setOnInsert("createdAt", createdAt),
+                        FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        ProductMonthlyCounter.class))
+                // Dos upserts simultáneos del primer movimiento del mes: el segundo se reintenta
+                .retryWhen(Retry.max(1).filter(DuplicateKeyException.class::isInstance));
+    }
+
+    /**
+     * Suma al contador las transacciones del mes anteriores a su creación que aún no incluye. El
+     * historial se cuenta después de leer el contador y la diferencia solo se aplica si nadie cambió
+     * mientras tanto cuántas incluye, así que cada transacción se suma una sola vez aunque se
+     * registre durante el conteo o su incremento llegue después de sembrarlo. Si otra petición se
+     * adelantó, se vuelve a contar.
+     */
+    private Mono<Long> syncHistory(String productId, YearMonth month) {
+        return Mono.defer(() -> mongoTemplate.findById(ProductMonthlyCounter.buildId(productId, month),
+                        ProductMonthlyCounter.class))
+                .flatMap(counter -> countFromRepository(productId, month, counter.getCreatedAt())
+                        .flatMap(historical -> mongoTemplate.findAndModify(
+                                Query.query(Criteria.where("_id").is(counter.getId())
+                                        .and("historyCount").is(counter.getHistoryCount())),
+                                new Update()
+                                        .inc("count", historical - counter.getHistoryCount())
+                                        .set("historyCount", historical)
+                                        .set("seeded", true)
+                                        .set("updatedAt", LocalDateTime.now()),
+                                FindAndModifyOptions.options().returnNew(true),
+                                ProductMonthlyCounter.class)))
+                .map(ProductMonthlyCounter::getCount)
+                .repeatWhenEmpty(MAX_SYNC_ATTEMPTS, attempts -> attempts)
+                .doOnError(e -> log.warn("No se pudo conciliar el historial del contador {}: {}",
+                        ProductMonthlyCounter.buildId(productId, month), e.getMessage()));
+    }
+
+    /**
+     * Transacciones del mes hasta la fecha indicada (exclusiva) o, si es nula, de todo el mes.
+     */
+    private Mono<Long> countFromRepository(String productId, YearMonth month, LocalDateTime before) {
+        LocalDateTime start = month.atDay(1).atStartOfDay();
+        LocalDateTime end = month.atEndOfMonth().atTime(LocalTime.MAX);
+        if (before != null && before.isBefore(end)) {
+            end = before.minusNanos(1);
+        }
+        return repository.countBySourceProductIdAndDateTimeBetween(productId, start, end);
+    }
+
+    private Query byId(String productId, YearMonth month) {
+        return Query.query(Criteria.where("_id").is(ProductMonthlyCounter.buildId(productId, month)));
+    }
+}
@@ -0,0 +1,325 @@
+package com.nttdata.transaction.service.impl;
+
+import com.nttdata.transaction.config.OutboxProperties;
+import com.nttdata.transaction.config.PartitionLeaseProperties;
+import com.nttdata.transaction.model.Dto.BankProductDTO;
+import com.nttdata.transaction.model.ProductBalanceUpdate;
+import com.nttdata.transaction.model.ProductSequence;
+import com.nttdata.transaction.model.Transaction;
+import com.nttdata.transaction.model.TransactionOutbox;
+import com.nttdata.transaction.model.Type.OutboxStatus;
+import com.nttdata.transaction.repository.TransactionRepository;
+import com.nttdata.transaction.service.ProductService;
+import com.nttdata.transaction.service.TransactionOutboxService;
+import com.nttdata.transaction.support.ProductLaneSequencer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+@Service
+public class TransactionOutboxServiceImpl implements TransactionOutboxService {
+    private static final Logger log = LoggerFactory.getLogger(TransactionOutboxServiceImpl.class);
+    private static final List<OutboxStatus> UNDISPATCHED = List.of(OutboxStatus.PENDING, OutboxStatus.FAILED);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final TransactionRepository repository;
+    private final ProductService productService;
+    private final ProductLaneSequencer laneSequencer;
+    private final OutboxProperties properties;
+    private final String instanceId;
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final Counter dispatchedProducts;
+    private final Counter failedProducts;
+
+    public TransactionOutboxServiceImpl(ReactiveMongoTemplate mongoTemplate,
+                                        TransactionRepository repository,
+                                        ProductService productService,
+                                        ProductLaneSequencer laneSequencer,
+                                        OutboxProperties properties,
+                                        PartitionLeaseProperties leaseProperties,
+                                        MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.repository = repository;
+        this.productService = productService;
+        this.laneSequencer = laneSequencer;
+        this.properties = properties;
+        this.instanceId = leaseProperties.getInstanceId();
+        this.dispatchedProducts = meterRegistry.counter("transaction.outbox.product.updates", "result", "success");
+        this.failedProducts = meterRegistry.counter("transaction.outbox.product.updates", "result", "error");
+        meterRegistry.gauge("transaction.outbox.pending", pendingCount);
+        meterRegistry.gauge("transaction.outbox.lag.seconds", lagSeconds);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @Override
+    public Mono<BankProductDTO> withPendingBalance(BankProductDTO product) {
+        return latestPendingUpdate(product.getId())
+                .map(update -> {
+                    product.setBalance(update.getBalance());
+                    return product;
+                })
+                .defaultIfEmpty(product);
+    }
+
+    @Override
+    public Mono<Void> attachPendingBalances(Transaction tx, List<BankProductDTO> products) {
+        // El orden entre saldos de un producto lo da su secuencia, asignada dentro de su carril;
+        // dateTime se fija antes de entrar al carril y no sirve para ordenarlos
+        return Flux.fromIterable(products)
+                .concatMap(product -> nextSequence(product.getId())
+                        .map(sequence -> new ProductBalanceUpdate(product.getId(), product.getBalance(), sequence)))
+                .collectList()
+                .doOnNext(updates -> tx.setOutbox(TransactionOutbox.builder()
+                        .status(OutboxStatus.PENDING)
+                        .updates(updates)
+                        .pendingProductIds(updates.stream()
+                                .map(ProductBalanceUpdate::getProductId)
+                                .collect(Collectors.toList()))
+                        .attempts(0)
+                        .nextAttemptAt(tx.getDateTime())
+                        .build()))
+                .then();
+    }
+
+    @Override
+    public Mono<Transaction> saveWithPendingBalances(Transaction tx, List<BankProductDTO> products) {
+        // Transacción y registro outbox viajan en el mismo documento: una sola escritura atómica
+        return attachPendingBalances(tx, products)
+                .then(Mono.defer(() -> repository.save(tx)));
+    }
+
+    private Mono<Long> nextSequence(String productId) {
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(productId)),
+                        new Update().inc("value", 1L),
+                        FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        ProductSequence.class)
+                .map(ProductSequence::getValue);
+    }
+
+    @Override
+    public Mono<Integer> dispatchPending() {
+        Query due = Query.query(Criteria.where("outbox.status").is(OutboxStatus.PENDING)
+                        .and("outbox.nextAttemptAt").lte(LocalDateTime.now()))
+                .with(Sort.by(Sort.Direction.ASC, "dateTime"))
+                .limit(properties.getBatchSize());
+
+        return mongoTemplate.find(due, Transaction.class)
+                .collectList()
+                .flatMap(batch -> {
+                    Set<String> productIds = new LinkedHashSet<>();
+                    batch.forEach(tx -> productIds.addAll(tx.getOutbox().getPendingProductIds()));
+
+                    return Flux.fromIterable(productIds)
+                            .flatMap(productId -> dispatchProduct(productId, batch), properties.getConcurrency())
+                            .then(markDispatched())
+                            .thenReturn(batch.size());
+                })
+                .flatMap(size -> refreshLagMetrics().thenReturn(size));
+    }
+
+    @Override
+    public Mono<Long> replayFailed(String transactionId) {
+        Criteria criteria = Criteria.where("outbox.status").is(OutboxStatus.FAILED);
+        if (transactionId != null) {
+            criteria = criteria.and("_id").is(transactionId);
+        }
+        return mongoTemplate.updateMulti(Query.query(criteria),
+                        new Update()
+                                .set("outbox.status", OutboxStatus.PENDING)
+                                .set("outbox.attempts", 0)
+                                .set("outbox.nextAttemptAt", LocalDateTime.now()),
+                        Transaction.class)
+                .map(result -> result.getModifiedCount())
+                .doOnNext(count -> log.info("Registros outbox reprogramados: {}", count));
+    }
+
+    /**
+     * Propaga al product-service el saldo más reciente pendiente del producto. Como el saldo es
+     * absoluto, todas las transacciones anteriores quedan aplicadas con una sola actualización.
+     *
+     * <p>El carril solo ordena los envíos de esta instancia: antes de leer el saldo se reserva el
+     * producto en product_sequences, de modo que dos instancias no lo envían a la vez, y un saldo
+     * con secuencia no posterior a la ya enviada no se vuelve a enviar. Si otra instancia tiene el
+     * producto reservado, sus transacciones siguen pendientes para el próximo ciclo.</p>
+     */
+    private Mono<Void> dispatchProduct(String productId, List<Transaction> batch) {
+        return laneSequencer.execute(productId, () -> claimDispatch(productId)
+                        .flatMap(claimed -> latestPendingUpdate(productId)
+                                .flatMap(latest -> isAlreadyDispatched(claimed, latest)
+                                        // Otra instancia ya envió un saldo posterior: no se retrocede
+                                        ? markProductApplied(productId, latest.getSequence())
+                                        : productService.getProductById(productId)
+                                                .map(response -> response.getProducts().get(0))
+                                                .flatMap(product -> {
+                                                    product.setBalance(latest.getBalance());
+                                                    return productService.updateProduct(product);
+                                                })
+                                                .then(releaseDispatch(productId, latest.getSequence()))
+                                                .then(markProductApplied(productId, latest.getSequence())))
+                                .then(releaseDispatch(productId, null))
+                                .onErrorResume(e -> releaseDispatch(productId, null).then(Mono.error(e)))))
+                .doOnSuccess(v -> dispatchedProducts.increment())
+                .onErrorResume(e -> {
+                    failedProducts.increment();
+                    log.warn("No se pudo propagar el saldo del producto {}: {}", productId, e.getMessage());
+                    return registerFailure(productId, batch, e);
+                });
+    }
+
+    /**
+     * Reserva el producto para esta instancia si está libre, vencido o ya era suyo. Vacío si lo
+     * tiene otra instancia. Los saldos registrados antes de existir la secuencia crean su documento.
+     */
+    private Mono<ProductSequence> claimDispatch(String productId) {
+        LocalDateTime now = LocalDateTime.now();
+        Query free = Query.query(Criteria.where("_id").is(productId)
+                .orOperator(Criteria.where("dispatchOwner").is(null),
+                        Criteria.where("dispatchOwner").is(instanceId),
+                        Criteria.where("dispatchUntil").lt(now)));
+        return mongoTemplate.findAndModify(free,
+                        new Update().set("dispatchOwner", instanceId)
+                                .set("dispatchUntil", now.plus(properties.getDispatchLeaseTtl())),
+                        FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        ProductSequence.class)
+                // El upsert choca con el documento existente: lo tiene reservado otra instancia
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty())
+                .doOnSuccess(claimed -> {
+                    if (claimed == null) {
+                        log.debug("El saldo del producto {} lo está propagando otra instancia", productId);
+                    }
+                });
+    }
+
+    private boolean isAlreadyDispatched(ProductSequence claimed, ProductBalanceUpdate latest) {
+        return claimed.getDispatchedSequence() != null && latest.getSequence() != null
+                && latest.getSequence() <= claimed.getDispatchedSequence();
+    }
+
+    /**
+     * Registra la secuencia enviada, si se indica, y libera la reserva si sigue siendo de esta instancia.
+     */
+    private Mono<Void> releaseDispatch(String productId, Long dispatched) {
+        Update update = new Update().unset("dispatchOwner").unset("dispatchUntil");
+        if (dispatched != null) {
+            update.max("dispatchedSequence", dispatched);
+        }
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(productId)
+                                .and("dispatchOwner").is(instanceId)),
+                        update, ProductSequence.class)
+                .then();
+    }
+
+    private Mono<Void> markProductApplied(String productId, Long upTo) {
+        // Saldos registrados antes de existir la secuencia: se consideran anteriores a cualquier otro
+        Criteria applied = upTo != null
+                ? new Criteria().orOperator(Criteria.where("sequence").lte(upTo),
+                        Criteria.where("sequence").is(null))
+                : Criteria.where("sequence").is(null);
+        return mongoTemplate.updateMulti(
+                        Query.query(Criteria.where("outbox.pendingProductIds").is(productId)
+                                .and("outbox.updates").elemMatch(Criteria.where("productId").is(productId)
+                                        .andOperator(applied))),
+                        new Update().pull("outbox.pendingProductIds", productId),
+                        Transaction.class)
+                .then();
+    }
+
+    private Mono<Void> markDispatched() {
+        return mongoTemplate.updateMulti(
+                        Query.query(Criteria.where("outbox.status").in(UNDISPATCHED)
+                                .and("outbox.pendingProductIds").size(0)),
+                        new Update()
+                                .set("outbox.status", OutboxStatus.DISPATCHED)
+                                .set("outbox.dispatchedAt", LocalDateTime.now()),
+                        Transaction.class)
+                .then();
+    }
+
+    private Mono<Void> registerFailure(String productId, List<Transaction> batch, Throwable error) {
+        List<Transaction> affected = new ArrayList<>();
+        for (Transaction tx : batch) {
+            if (tx.getOutbox().getPendingProductIds().contains(productId)) {
+                affected.add(tx);
+            }
+        }
+        return Flux.fromIterable(affected)
+                .flatMap(tx -> {
+                    int attempts = tx.getOutbox().getAttempts() + 1;
+                    Update update = new Update()
+                            .set("outbox.attempts", attempts)
+                            .set("outbox.lastError", error.getMessage())
+                            .set("outbox.nextAttemptAt", LocalDateTime.now().plus(backoff(attempts)));
+                    if (attempts >= properties.getMaxAttempts()) {
+                        update.set("outbox.status", OutboxStatus.FAILED);
+                        log.error("Transacción {} marcada como FAILED tras {} intentos", tx.getId(), attempts);
+                    }
+                    return mongoTemplate.updateFirst(
+                            Query.query(Criteria.where("_id").is(tx.getId())
+                                    .and("outbox.status").is(OutboxStatus.PENDING)),
+                            update, Transaction.class);
+                })
+                .then();
+    }
+
+    private Duration backoff(int attempts) {
+        long factor = 1L << Math.min(attempts - 1, 20);
+        Duration delay = properties.getInitialBackoff().multipliedBy(factor);
+        return delay.compareTo(properties.getMaxBackoff()) > 0 ? properties.getMaxBackoff() : delay;
+    }
+
+    /**
+     * Saldo pendiente más reciente del producto: el de mayor secuencia entre sus transacciones
+     * pendientes (índice outbox_pending_dateTime).
+     */
+    private Mono<ProductBalanceUpdate> latestPendingUpdate(String productId) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("outbox.pendingProductIds").is(productId)),
+                Aggregation.unwind("outbox.updates"),
+                Aggregation.match(Criteria.where("outbox.updates.productId").is(productId)),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "outbox.updates.sequence", "dateTime")),
+                Aggregation.limit(1),
+                Aggregation.replaceRoot("outbox.updates"));
+        return mongoTemplate.aggregate(aggregation, Transaction.class, ProductBalanceUpdate.class)
+                .next();
+    }
+
+    private Mono<Void> refreshLagMetrics() {
+        Query pending = Query.query(Criteria.where("outbox.status").is(OutboxStatus.PENDING));
+        Query oldest = Query.query(Criteria.where("outbox.status").is(OutboxStatus.PENDING))
+                .with(Sort.by(Sort.Direction.ASC, "dateTime"))
+                .limit(1);
+        return mongoTemplate.count(pending, Transaction.class)
+                .doOnNext(pendingCount::set)
+                .then(mongoTemplate.findOne(oldest, Transaction.class)
+                        .map(tx -> Duration.between(tx.getDateTime(), LocalDateTime.now()).getSeconds())
+                        .defaultIfEmpty(0L)
+                        .doOnNext(lagSeconds::set))
+                .then();
+    }
+}
@@ -6,25 +6,46 @@ import com.nttdata.transaction.model.Details.FixedTermAccount;
 import com.nttdata.transaction.model.Details.SavingsAccount;
 import com.nttdata.transaction.model.Details.CurrentAccount;
 import com.nttdata.transaction.model.Details.ProductDetails;
+import com.nttdata.transaction.config.TransactionBatchProperties;
+import com.nttdata.transaction.config.TransactionListingProperties;
 import com.nttdata.transaction.model.Dto.BankProductDTO;
+import com.nttdata.transaction.model.Dto.BankProductResponse;
+import com.nttdata.transaction.model.Dto.TransactionBatchItem;
+import com.nttdata.transaction.model.Dto.TransactionCursor;
+import com.nttdata.transaction.model.Dto.TransactionPage;
+import com.nttdata.transaction.model.Money;
 import com.nttdata.transaction.model.Transaction;
 import com.nttdata.transaction.model.Type.ProductType;
+import com.nttdata.transaction.model.Type.StalenessPolicy;
 import com.nttdata.transaction.model.Type.TransactionType;
 import com.nttdata.transaction.repository.TransactionRepository;
+import com.nttdata.transaction.service.ProductDailyStatsService;
 import com.nttdata.transaction.service.ProductService;
+import com.nttdata.transaction.service.TransactionCounterService;
+import com.nttdata.transaction.service.TransactionOutboxService;
 import com.nttdata.transaction.service.TransactionService;
+import com.nttdata.transaction.support.ProductLaneSequencer;
 import com.nttdata.transaction.utils.Constants;
+import com.nttdata.transaction.utils.Utils;
+import com.nttdata.transaction.utils.exceptions.FailedAfterApplyException;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -32,6 +53,12 @@ public class TransactionServiceImpl implements TransactionService {
     private static final Logger log = LoggerFactory.getLogger(TransactionServiceImpl.class);
     private final TransactionRepository repository;
     private final ProductService productService;
+    private final TransactionCounterService counterService;
+    private final ProductLaneSequencer laneSequencer;
+    private final TransactionOutboxService outboxService;
+    private final TransactionBatchProperties batchProperties;
+    private final ProductDailyStatsService statsService;
+    private final TransactionListingProperties listingProperties;
 
     @Override
     public Flux<Transaction> getAll() {
@@ -48,6 +75,39 @@ public class TransactionServiceImpl implements TransactionService {
         return repository.findBySourceProductId(productId);
     }
 
+    @Override
+    public Mono<TransactionPage> getPage(String productId, String cursor, Integer limit) {
+        return Mono.defer(() -> {
+            int size = pageSize(limit);
+            TransactionCursor after = cursor != null && !cursor.isBlank() ? TransactionCursor.decode(cursor) : null;
+            // Se pide un elemento de más para saber si existe una página siguiente
+            return repository.findPage(productId, after, size + 1)
+                    .collectList()
+                    .map(found -> {
+                        if (found.size() <= size) {
+                            return new TransactionPage(found, null);
+                        }
+                        List<Transaction> page = found.subList(0, size);
+                        return new TransactionPage(page, TransactionCursor.after(page.get(size - 1)).encode());
+                    });
+        });
+    }
+
+    @Override
+    public Flux<Transaction> stream(String productId) {
+        return repository.streamOrdered(productId, listingProperties.getStreamBatchSize());
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return listingProperties.getDefaultPageSize();
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException(Constants.ERROR_INVALID_PAGE_SIZE);
+        }
+        return Math.min(limit, listingProperties.getMaxPageSize());
+    }
+
     @Override
     public Mono<Transaction> update(String id, Transaction transaction) {
         return repository.findById(id)
@@ -66,55 +126,277 @@ public class TransactionServiceImpl implements TransactionService {
 
     @Override
     public Mono<Transaction> create(Transaction transaction) {
+        return create(transaction, null);
+    }
+
+    @Override
+    public Mono<Transaction> create(Transaction transaction, Instant sourceObservedSince) {
         transaction.setDateTime(LocalDateTime.now());
 
-        return  productService.getProductById(transaction.getSourceProductId())
-                .flatMap(responseSource -> {
-                    BankProductDTO productSource = responseSource.getProducts().get(0);
-                    switch (transaction.getType()) {
-                        case PAYMENT:
-                            // Procesa el pago de un producto de crédito, como préstamos o tarjetas de crédito.
-                            return handleCreditPayment(transaction, productSource);
-                        case WITHDRAWAL:
-                            // Si el producto es una tarjeta de crédito:
-                            // Aplica la lógica específica para retiros con crédito.
-                            // En caso contrario, maneja el retiro como una transacción bancaria común.
-                            return isCreditCard(productSource.getType())
-                                    ? handleCreditCardWithdrawal(transaction, productSource)
-                                    : handleBankTransaction(transaction, productSource, null);
-                        case DEPOSIT:
-                            // Aplica el depósito directamente en productos bancarios (c. de ahorro, corriente, etc.).
-                            return handleBankTransaction(transaction, productSource, null);
-                        case TRANSFER:
-                            //Busca el producto destino
-                            return productService.getProductById(transaction.getTargetProductId())
-                                    .flatMap(responseTarget ->{
-                                                BankProductDTO productTarget = responseTarget.getProducts().get(0);
-                                                return handleBankTransaction(transaction, productSource, productTarget);
-                                    });
-                        default:
-                            // Rechaza transacciones no soportadas por el sistema.
-                            return Mono.error(
-                                    new IllegalArgumentException(Constants.ERROR_UNSUPPORTED_TRANSACTION_TYPE));
+        // Serializa la lectura-cálculo-actualización del saldo por producto;
+        // en transferencias se reservan origen y destino.
+        String targetProductId = transaction.getType() == TransactionType.TRANSFER
+                ? transaction.getTargetProductId()
+                : null;
+        return laneSequencer.execute(transaction.getSourceProductId(), targetProductId,
+                () -> processCreate(transaction, sourceObservedSince));
+    }
+
+    private Mono<Transaction> processCreate(Transaction transaction, Instant sourceObservedSince) {
+        return  fetchProduct(transaction.getSourceProductId(), sourceObservedSince)
+                .flatMap(productSource -> transaction.getType() == TransactionType.TRANSFER
+                        //Busca el producto destino
+                        ? fetchProduct(transaction.getTargetProductId())
+                                .flatMap(productTarget -> applyAndSave(transaction, productSource, productTarget))
+                        : applyAndSave(transaction, productSource, null));
+    }
+
+    private Mono<Transaction> applyAndSave(Transaction transaction,
+                                           BankProductDTO productSource,
+                                           BankProductDTO productTarget) {
+        return monthlyCount(productSource)
+                .flatMap(monthlyCount -> applyRules(transaction, productSource, productTarget, monthlyCount))
+                .flatMap(applied -> updateProductAndSaveTransaction(productSource, productTarget, applied));
+    }
+
+    /**
+     * Aplica las reglas de negocio sobre el estado en memoria de los productos: valida la transacción,
+     * calcula la comisión y deja en los productos el saldo resultante. No persiste nada; si la
+     * transacción se rechaza los productos quedan sin cambios.
+     */
+    private Mono<Transaction> applyRules(Transaction transaction,
+                                         BankProductDTO productSource,
+                                         BankProductDTO productTarget,
+                                         long monthlyCount) {
+        switch (transaction.getType()) {
+            case PAYMENT:
+                // Procesa el pago de un producto de crédito, como préstamos o tarjetas de crédito.
+                return handleCreditPayment(transaction, productSource);
+            case WITHDRAWAL:
+                // Si el producto es una tarjeta de crédito:
+                // Aplica la lógica específica para retiros con crédito.
+                // En caso contrario, maneja el retiro como una transacción bancaria común.
+                return isCreditCard(productSource.getType())
+                        ? handleCreditCardWithdrawal(transaction, productSource)
+                        : handleBankTransaction(transaction, productSource, null, monthlyCount);
+            case DEPOSIT:
+                // Aplica el depósito directamente en productos bancarios (c. de ahorro, corriente, etc.).
+                return handleBankTransaction(transaction, productSource, null, monthlyCount);
+            case TRANSFER:
+                return handleBankTransaction(transaction, productSource, productTarget, monthlyCount);
+            default:
+                // Rechaza transacciones no soportadas por el sistema.
+                return Mono.error(
+                        new IllegalArgumentException(Constants.ERROR_UNSUPPORTED_TRANSACTION_TYPE));
+        }
+    }
+
+    private Mono<Long> monthlyCount(BankProductDTO product) {
+        //Solo las cuentas bancarias consultan el contador mensual materializado
+        return isBankAccount(product.getType())
+                ? counterService.getMonthlyCount(product.getId(), YearMonth.now())
+                : Mono.just(0L);
+    }
+
+    @Override
+    public Flux<TransactionBatchItem> createBatch(Flux<TransactionBatchItem> items) {
+        //Una ventana se procesa al llenarse o al vencer su plazo: un cliente lento no retiene las líneas leídas
+        return items
+                .bufferTimeout(batchProperties.getWindowSize(), batchProperties.getWindowTimeout())
+                .concatMap(this::processWindow);
+    }
+
+    private Flux<TransactionBatchItem> processWindow(List<TransactionBatchItem> window) {
+        //Agrupa la ventana por producto origen conservando el orden de llegada dentro de cada grupo
+        Map<String, List<TransactionBatchItem>> groups = new LinkedHashMap<>();
+        List<TransactionBatchItem> rejected = new ArrayList<>();
+        for (TransactionBatchItem item : window) {
+            if (item.isFailed()) {
+                rejected.add(item);
+            } else {
+                groups.computeIfAbsent(item.getTransaction().getSourceProductId(), id -> new ArrayList<>())
+                        .add(item);
+            }
+        }
+
+        return Flux.fromIterable(rejected)
+                .concatWith(Flux.fromIterable(groups.entrySet())
+                        .flatMap(group -> processGroup(group.getKey(), group.getValue()),
+                                batchProperties.getConcurrency()));
+    }
+
+    private Flux<TransactionBatchItem> processGroup(String productId, List<TransactionBatchItem> items) {
+        //Las transferencias involucran un segundo producto: se registran por el flujo individual
+        //y dividen el grupo en tramos que se procesan en orden.
+        List<List<TransactionBatchItem>> segments = new ArrayList<>();
+        List<TransactionBatchItem> current = new ArrayList<>();
+        for (TransactionBatchItem item : items) {
+            if (item.getTransaction().getType() == TransactionType.TRANSFER) {
+                if (!current.isEmpty()) {
+                    segments.add(current);
+                    current = new ArrayList<>();
+                }
+                segments.add(List.of(item));
+            } else {
+                current.add(item);
+            }
+        }
+        if (!current.isEmpty()) {
+            segments.add(current);
+        }
+
+        return Flux.fromIterable(segments)
+                .concatMap(segment -> segment.get(0).getTransaction().getType() == TransactionType.TRANSFER
+                        ? createBatchTransfer(segment.get(0)).flux()
+                        : processSegment(productId, segment));
+    }
+
+    private Mono<TransactionBatchItem> createBatchTransfer(TransactionBatchItem item) {
+        return create(item.getTransaction())
+                .map(saved -> TransactionBatchItem.of(item.getIndex(), saved))
+                .onErrorResume(e -> Mono.just(item.reject(e)));
+    }
+
+    private Flux<TransactionBatchItem> processSegment(String productId, List<TransactionBatchItem> segment) {
+        //Un solo acceso al producto y al contador mensual por tramo, dentro del carril del producto
+        return laneSequencer.execute(productId, () -> fetchProduct(productId)
+                        .flatMap(product -> monthlyCount(product)
+                                .flatMap(monthlyCount -> applySegment(product, segment, monthlyCount))))
+                .flatMapMany(Flux::fromIterable)
+                .onErrorResume(e -> Flux.fromIterable(segment).map(item -> item.reject(e)));
+    }
+
+    private Mono<List<TransactionBatchItem>> applySegment(BankProductDTO product,
+                                                          List<TransactionBatchItem> segment,
+                                                          long monthlyCount) {
+        //Cada transacción aceptada actualiza el saldo y el contador que verá la siguiente
+        List<Transaction> accepted = new ArrayList<>();
+        AtomicLong count = new AtomicLong(monthlyCount);
+
+        return Flux.fromIterable(segment)
+                .concatMap(item -> {
+                    Transaction tx = item.getTransaction();
+                    tx.setDateTime(LocalDateTime.now());
+                    return Mono.defer(() -> applyRules(tx, product, null, count.get()))
+                            .map(applied -> {
+                                accepted.add(applied);
+                                count.incrementAndGet();
+                                return item;
+                            })
+                            .onErrorResume(e -> Mono.just(item.reject(e)));
+                })
+                .collectList()
+                .flatMap(results -> saveSegment(product, accepted)
+                        .thenReturn(results)
+                        //Si falla la escritura se rechazan las transacciones que habían sido aceptadas; si el
+                        //saldo ya se aplicó el error es FailedAfterApplyException y se informan como registradas
+                        .onErrorResume(e -> Mono.just(results.stream()
+                                .map(item -> item.isFailed() ? item : item.reject(e))
+                                .collect(Collectors.toList()))));
+    }
+
+    private Mono<Void> saveSegment(BankProductDTO product, List<Transaction> accepted) {
+        if (accepted.isEmpty()) {
+            return Mono.empty();
+        }
+
+        Transaction last = accepted.get(accepted.size() - 1);
+        //El último movimiento del tramo lleva el saldo final del producto para el despachador
+        Mono<Void> attachOutbox = outboxService.isEnabled()
+                ? outboxService.attachPendingBalances(last, List.of(product))
+                : Mono.empty();
+
+        //Ids asignados antes de insertar: si la inserción falla a medias se sabe qué borrar
+        accepted.stream().filter(tx -> tx.getId() == null).forEach(tx -> tx.setId(new ObjectId().toHexString()));
+
+        return attachOutbox
+                //Inserción masiva (insertMany) antes de tocar el saldo: si falla, no se aplicó nada
+                //Una inserción ordenada que falla deja insertadas las anteriores al error: se eliminan
+                .then(Mono.defer(() -> repository.insert(accepted).then()
+                        .onErrorResume(e -> deleteInserted(product, accepted, e))))
+                .then(Mono.defer(() -> applySegmentBalance(product, accepted)))
+                //El saldo ya está aplicado: un fallo posterior no rechaza las transacciones
+                .then(Mono.defer(() -> incrementCounters(product.getId(), accepted)
+                        .then(statsService.record(product, accepted))
+                        .onErrorMap(this::failedAfterApply)));
+    }
+
+    /**
+     * Suma las transacciones al contador del mes de cada una: un tramo puede cruzar el cambio de mes.
+     */
+    private Mono<Void> incrementCounters(String productId, List<Transaction> accepted) {
+        Map<YearMonth, List<Transaction>> byMonth = accepted.stream()
+                .collect(Collectors.groupingBy(tx -> YearMonth.from(tx.getDateTime()), LinkedHashMap::new,
+                        Collectors.toList()));
+        return Flux.fromIterable(byMonth.values())
+                .concatMap(month -> counterService.increment(productId,
+                        month.get(month.size() - 1).getDateTime(), month.size()))
+                .then();
+    }
+
+    /**
+     * Compensa un tramo cuyo saldo no se aplicó eliminando sus transacciones y propaga el error.
+     */
+    private Mono<Void> deleteInserted(BankProductDTO product, List<Transaction> accepted, Throwable e) {
+        return repository.deleteAllById(accepted.stream().map(Transaction::getId).collect(Collectors.toList()))
+                .onErrorMap(deleteError -> {
+                    log.error("No se pudieron eliminar las transacciones del producto {} "
+                            + "cuyo saldo no se actualizó", product.getId(), deleteError);
+                    return failedAfterApply(e);
+                })
+                .then(Mono.error(e));
+    }
+
+    private Mono<Void> applySegmentBalance(BankProductDTO product, List<Transaction> accepted) {
+        if (outboxService.isEnabled()) {
+            return Mono.empty();
+        }
+        return productService.updateProduct(product)
+                .then()
+                .onErrorResume(e -> {
+                    if (!Utils.isRejectedBeforeApply(e)) {
+                        // No se sabe si el product-service aplicó el saldo: se conservan las transacciones
+                        log.error("Saldo del producto {} sin confirmar tras registrar {} transacciones",
+                                product.getId(), accepted.size(), e);
+                        return Mono.error(failedAfterApply(e));
                     }
+                    // El saldo no cambió: se compensa eliminando las transacciones insertadas
+                    return deleteInserted(product, accepted, e);
                 });
     }
 
+    private Mono<BankProductDTO> fetchProduct(String productId) {
+        return fetchProduct(productId, null);
+    }
+
+    private Mono<BankProductDTO> fetchProduct(String productId, Instant observedSince) {
+        // Solo se reutiliza lo leído del product-service durante esta misma petición; si no, se consulta
+        Mono<BankProductResponse> response = observedSince != null
+                ? productService.getProductById(productId, observedSince)
+                : productService.getProductById(productId, StalenessPolicy.STRICT);
+        //Obtiene el producto con su saldo efectivo (incluye saldos aún no propagados en modo outbox)
+        return response
+                .map(product -> product.getProducts().get(0))
+                .flatMap(product -> outboxService.isEnabled()
+                        ? outboxService.withPendingBalance(product)
+                        : Mono.just(product));
+    }
+
     private Mono<Transaction> handleCreditPayment(Transaction tx, BankProductDTO product) {
         //Funcion que maneja el pago de dinero de tarjetas de credito
         if (!isCreditCard(product.getType())) {
             return Mono.error(new IllegalArgumentException(Constants.ERROR_PAYMENT_ONLY_FOR_CREDIT_PRODUCTS));
         }
 
-        BigDecimal balance = safeBalance(product);
-        BigDecimal amount = tx.getAmount();
+        Money balance = safeBalance(product);
+        Money amount = Money.of(tx.getAmount());
 
-        if (amount.compareTo(balance) > 0) {
+        if (amount.isGreaterThan(balance)) {
             return Mono.error(new IllegalArgumentException(Constants.ERROR_PAYMENT_EXCEEDS_DEBT));
         }
 
-        product.setBalance(balance.subtract(amount));
-        return updateProductAndSaveTransaction(product, null, tx);
+        product.setBalance(balance.minus(amount).toBigDecimal());
+        return Mono.just(tx);
     }
 
 
@@ -125,15 +407,14 @@ public class TransactionServiceImpl implements TransactionService {
             return Mono.error(new IllegalArgumentException(Constants.ERROR_CREDIT_LIMIT_NOT_DEFINED));
         }
 
-        BigDecimal balance = safeBalance(product);
-        BigDecimal newBalance = balance.add(tx.getAmount());
+        Money newBalance = safeBalance(product).plus(Money.of(tx.getAmount()));
 
-        if (newBalance.compareTo(detailsCreditProduct.getCreditLimit()) > 0) {
+        if (newBalance.isGreaterThan(Money.of(detailsCreditProduct.getCreditLimit()))) {
             return Mono.error(new IllegalArgumentException(Constants.ERROR_AMOUNT_EXCEEDS_CREDIT_LIMIT));
         }
 
-        product.setBalance(newBalance);
-        return updateProductAndSaveTransaction(product, null, tx);
+        product.setBalance(newBalance.toBigDecimal());
+        return Mono.just(tx);
     }
 
     /**
@@ -141,20 +422,21 @@ public class TransactionServiceImpl implements TransactionService {
      */
     private Mono<Transaction> handleBankTransaction(Transaction tx,
                                                     BankProductDTO productSource,
-                                                    BankProductDTO productTarget) {
+                                                    BankProductDTO productTarget,
+                                                    long monthlyCount) {
         return Mono.empty()
                 //Valida que el producto sea de tipo bancario.
                 .then(validateBankAccountType(productSource))
                 //Valida que una cuenta a plazo fijo solo permita transacción en el día permitido.
                 .then(validateFixedTermAccountRestrictions(productSource))
                 //Valida que el número de transacciones mensuales permitidas no se haya superado.
-                .then(validateMonthlyTransactionLimit(productSource))
+                .then(validateMonthlyTransactionLimit(productSource, monthlyCount))
                 //Valida que la cuentas para las transferencias son validas.
                 .then(validateTransferAccountType(tx, productSource, productTarget))
                 // Se aplica la lógica para verificar y calcular la comisión si excede el límite
-                .then(applyTransactionFeeIfExceeded(tx, productSource))
-                //Realiza el cálculo del nuevo saldo y actualiza el producto, guardando la transacción.
-                .flatMap(valid -> processTransactionAndUpdate(tx, productSource, productTarget));
+                .then(applyTransactionFeeIfExceeded(tx, productSource, monthlyCount))
+                //Realiza el cálculo del nuevo saldo de los productos.
+                .flatMap(valid -> processTransaction(tx, productSource, productTarget));
     }
 
     private Mono<Void> validateTransferAccountType(Transaction tx,
@@ -202,8 +484,8 @@ public class TransactionServiceImpl implements TransactionService {
         return Mono.empty();
     }
 
-    private Mono<Void> validateMonthlyTransactionLimit(BankProductDTO product) {
-        return canPerformTransaction(product)
+    private Mono<Void> validateMonthlyTransactionLimit(BankProductDTO product, long monthlyCount) {
+        return canPerformTransaction(product, monthlyCount)
                 .flatMap(canProceed -> {
                     if (!canProceed) {
                         return Mono.error(new IllegalArgumentException(Constants.ERROR_MONTHLY_LIMIT_REACHED));
@@ -212,90 +494,94 @@ public class TransactionServiceImpl implements TransactionService {
                 });
     }
 
-    private Mono<Transaction> processTransactionAndUpdate(Transaction tx,
-                                                          BankProductDTO productSource,
-                                                          BankProductDTO productTarget) {
-        BigDecimal balance = safeBalance(productSource);
-        BigDecimal fee = tx.getTransactionFee() != null ? BigDecimal.valueOf(tx.getTransactionFee()) : BigDecimal.ZERO;
-        BigDecimal newBalance;
+    private Mono<Transaction> processTransaction(Transaction tx,
+                                                 BankProductDTO productSource,
+                                                 BankProductDTO productTarget) {
+        Money balance = safeBalance(productSource);
+        Money amount = Money.of(tx.getAmount());
+        Money fee = Money.of(tx.getTransactionFee());
 
         if (tx.getType() == TransactionType.DEPOSIT) {
             // El depósito se reduce por la comisión cobrada
-            BigDecimal netAmount = tx.getAmount().subtract(fee);
-            newBalance = balance.add(netAmount);
-            productSource.setBalance(newBalance);
+            productSource.setBalance(balance.plus(amount.minus(fee)).toBigDecimal());
         }
         else if(tx.getType() == TransactionType.TRANSFER){
             //Retiro del dinero en la cuenta origen
-            BigDecimal totalWithdrawal = tx.getAmount().add(fee);
-            if (totalWithdrawal.compareTo(balance) > 0) {
+            Money totalWithdrawal = amount.plus(fee);
+            if (totalWithdrawal.isGreaterThan(balance)) {
                 return Mono.error(new IllegalArgumentException(Constants.ERROR_INSUFFICIENT_FUNDS));
             }
-            newBalance = balance.subtract(totalWithdrawal);
-            productSource.setBalance(newBalance);
+            productSource.setBalance(balance.minus(totalWithdrawal).toBigDecimal());
 
             //Ingreso del dinero a la cuenta destino
-            BigDecimal newBalanceProductTarget = productTarget.getBalance().add(tx.getAmount());
-            productTarget.setBalance(newBalanceProductTarget);
+            productTarget.setBalance(safeBalance(productTarget).plus(amount).toBigDecimal());
 
         }
         else if (tx.getType() == TransactionType.WITHDRAWAL || tx.getType() == TransactionType.PURCHASE) {
             // El retiro se incrementa por la comisión
-            BigDecimal totalWithdrawal = tx.getAmount().add(fee);
-            if (totalWithdrawal.compareTo(balance) > 0) {
+            Money totalWithdrawal = amount.plus(fee);
+            if (totalWithdrawal.isGreaterThan(balance)) {
                 return Mono.error(new IllegalArgumentException(Constants.ERROR_INSUFFICIENT_FUNDS));
             }
-            newBalance = balance.subtract(totalWithdrawal);
-            productSource.setBalance(newBalance);
+            productSource.setBalance(balance.minus(totalWithdrawal).toBigDecimal());
         } else {
             return Mono.error(new IllegalArgumentException(Constants.ERROR_INVALID_TRANSACTION_FOR_BANK_ACCOUNT));
         }
 
 
-        return updateProductAndSaveTransaction(productSource, productTarget, tx);
+        return Mono.just(tx);
     }
 
-    private Mono<Transaction> applyTransactionFeeIfExceeded(Transaction tx, BankProductDTO product) {
+    private Mono<Transaction> applyTransactionFeeIfExceeded(Transaction tx, BankProductDTO product, long count) {
         if (!(product.getDetails() instanceof SavingsAccount || product.getDetails() instanceof CurrentAccount)) {
             return Mono.just(tx);
         }
 
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime start = now.withDayOfMonth(1).with(LocalTime.MIN);
-        LocalDateTime end = now.withDayOfMonth(now.toLocalDate().lengthOfMonth()).with(LocalTime.MAX);
-
-        return repository.findBySourceProductIdAndDateTimeBetween(product.getId(), start, end)
-                .count()
-                .map(count -> {
-                    ProductDetails details = product.getDetails();
-
-                    Integer freeLimit = null;
-                    Double fee = null;
-
-                    if (details instanceof SavingsAccount) {
-                        SavingsAccount sa = (SavingsAccount) details;
-                        freeLimit = sa.getFreeMonthlyTransactionLimit();
-                        fee = sa.getTransactionFee();
-                    } else if (details instanceof CurrentAccount) {
-                        CurrentAccount ca = (CurrentAccount) details;
-                        freeLimit = ca.getFreeMonthlyTransactionLimit();
-                        fee = ca.getTransactionFee();
-                    }
+        ProductDetails details = product.getDetails();
 
-                    if (freeLimit != null && fee != null && fee > 0 && count >= freeLimit) {
-                        tx.setTransactionFee(fee);
-                    } else {
-                        tx.setTransactionFee(0.0);
-                    }
+        Integer freeLimit = null;
+        Double fee = null;
 
-                    return tx;
-                });
+        if (details instanceof SavingsAccount) {
+            SavingsAccount sa = (SavingsAccount) details;
+            freeLimit = sa.getFreeMonthlyTransactionLimit();
+            fee = sa.getTransactionFee();
+        } else if (details instanceof CurrentAccount) {
+            CurrentAccount ca = (CurrentAccount) details;
+            freeLimit = ca.getFreeMonthlyTransactionLimit();
+            fee = ca.getTransactionFee();
+        }
+
+        if (freeLimit != null && fee != null && fee > 0 && count >= freeLimit) {
+            // Se guarda en céntimos exactos, con el mismo redondeo con que se cobra
+            tx.setTransactionFee(Money.of(fee).toBigDecimal());
+        } else {
+            tx.setTransactionFee(Money.zero().toBigDecimal());
+        }
+
+        return Mono.just(tx);
     }
 
 
     private Mono<Transaction> updateProductAndSaveTransaction(BankProductDTO productSource,
                                                               BankProductDTO productTarget,
                                                               Transaction tx) {
+        if (outboxService.isEnabled()) {
+            // Modo outbox: se guarda la transacción con los saldos pendientes y se responde de inmediato;
+            // el despachador los propaga al product-service en segundo plano.
+            List<BankProductDTO> products = new ArrayList<>();
+            products.add(productSource);
+            if (productTarget != null) {
+                products.add(productTarget);
+            }
+            return outboxService.saveWithPendingBalances(tx, products)
+                    .flatMap(saved -> counterService.increment(saved.getSourceProductId(), saved.getDateTime(), 1)
+                            .then(recordStats(saved, productSource, productTarget))
+                            .thenReturn(saved)
+                            //Ya registrada con sus saldos pendientes: no se debe repetir
+                            .onErrorMap(this::failedAfterApply));
+        }
+
         Mono<Void> updateSource = productSource != null
                 ? productService.updateProduct(productSource).then()
                 : Mono.empty();
@@ -305,13 +591,34 @@ public class TransactionServiceImpl implements TransactionService {
                 : Mono.empty();
 
         return updateSource
-                .then(updateTarget)
-                .then(repository.save(tx));
+                //Sin respuesta del product-service no se sabe si aplicó el saldo: la transacción no se repite
+                .onErrorMap(e -> !Utils.isRejectedBeforeApply(e), this::failedAfterApply)
+                .then(Mono.defer(() -> updateTarget
+                        .then(repository.save(tx))
+                        //Actualiza el contador mensual en el mismo flujo de escritura.
+                        .flatMap(saved -> counterService.increment(saved.getSourceProductId(), saved.getDateTime(), 1)
+                                .then(recordStats(saved, productSource, productTarget))
+                                .thenReturn(saved))
+                        //El saldo de origen ya se aplicó: un fallo posterior no es un rechazo
+                        .onErrorMap(e -> productSource != null && !(e instanceof FailedAfterApplyException),
+                                this::failedAfterApply)));
+    }
+
+    private FailedAfterApplyException failedAfterApply(Throwable e) {
+        return new FailedAfterApplyException(String.format(Constants.ERROR_FAILED_AFTER_APPLY, e.getMessage()), e);
     }
 
-    private BigDecimal safeBalance(BankProductDTO product) {
-        //Funcion que trata de devolver un balance correcto
-        return product.getBalance() != null ? product.getBalance() : BigDecimal.ZERO;
+    private Mono<Void> recordStats(Transaction saved, BankProductDTO productSource, BankProductDTO productTarget) {
+        //Acumula el movimiento en los resúmenes diarios de los productos afectados
+        return statsService.record(productSource, List.of(saved))
+                .then(productTarget != null
+                        ? statsService.record(productTarget, List.of(saved))
+                        : Mono.empty());
+    }
+
+    private Money safeBalance(BankProductDTO product) {
+        //Funcion que trata de devolver un balance correcto (nulo equivale a cero)
+        return Money.of(product.getBalance());
     }
 
     private boolean isCreditCard(ProductType type) {
@@ -319,32 +626,24 @@ public class TransactionServiceImpl implements TransactionService {
         return type == ProductType.CREDIT;
     }
 
-    private Mono<Boolean> canPerformTransaction(BankProductDTO product) {
+    private Mono<Boolean> canPerformTransaction(BankProductDTO product, long count) {
         //Funcion que valida cuantas transacciones le quedan al producto
         if (product.getType() == ProductType.CURRENT) {
             return Mono.just(true); // No hay límite de movimientos
         }
 
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime startOfMonth = now.withDayOfMonth(1).with(LocalTime.MIN);
-        LocalDateTime endOfMonth = now.withDayOfMonth(now.toLocalDate().lengthOfMonth()).with(LocalTime.MAX);
-
-        return repository.findBySourceProductIdAndDateTimeBetween(product.getId(), startOfMonth, endOfMonth)
-                .count()
-                .map(count -> {
-                    ProductDetails details = product.getDetails();
-                    Integer limit = null;
+        ProductDetails details = product.getDetails();
+        Integer limit = null;
 
-                    if (details instanceof SavingsAccount) {
-                        limit = ((SavingsAccount) details).getMonthlyLimit();
-                    }
+        if (details instanceof SavingsAccount) {
+            limit = ((SavingsAccount) details).getMonthlyLimit();
+        }
 
-                    if (details instanceof FixedTermAccount) {
-                        limit = ((FixedTermAccount) details).getMonthlyLimit();
-                    }
+        if (details instanceof FixedTermAccount) {
+            limit = ((FixedTermAccount) details).getMonthlyLimit();
+        }
 
-                    return count < limit;
-                });
+        return Mono.just(count < limit);
     }
 
     private boolean isBankAccount(ProductType type) {
@@ -0,0 +1,146 @@
+package com.nttdata.transaction.support;
+
+import com.nttdata.transaction.model.Dto.BankProductDTO;
+import com.nttdata.transaction.model.Money;
+import com.nttdata.transaction.model.Transaction;
+import com.nttdata.transaction.model.Type.ProductType;
+import com.nttdata.transaction.model.Type.TransactionType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Calcula los saldos diarios de un producto en una sola pasada: cada transacción se acumula en el
+ * día que le corresponde y los saldos se obtienen barriendo los días una vez. Los importes se
+ * manejan en céntimos ({@code long}) para no crear un {@link BigDecimal} por movimiento.
+ *
+ * <p>No es seguro para uso concurrente: se crea una instancia por producto y rango.</p>
+ */
+public final class DailyBalanceEngine {
+
+    private final String productId;
+    private final boolean credit;
+    private final LocalDate start;
+    private final long[] deltas;
+    private final long[] counts;
+    private final long[] fees;
+
+    public DailyBalanceEngine(BankProductDTO product, LocalDate start, LocalDate end) {
+        this.productId = product.getId();
+        this.credit = product.getType() == ProductType.CREDIT;
+        this.start = start;
+        int days = (int) ChronoUnit.DAYS.between(start, end) + 1;
+        this.deltas = new long[days];
+        this.counts = new long[days];
+        this.fees = new long[days];
+    }
+
+    /**
+     * Acumula la transacción en su día; las que caen fuera del rango se ignoran.
+     *
+     * @return la misma instancia, para usarla como acumulador
+     */
+    public DailyBalanceEngine add(Transaction tx) {
+        int day = (int) ChronoUnit.DAYS.between(start, tx.getDateTime().toLocalDate());
+        if (day < 0 || day >= deltas.length) {
+            return this;
+        }
+
+        boolean isSource = productId.equals(tx.getSourceProductId());
+        long amount = toMinor(tx.getAmount());
+        long fee = isSource ? feeOf(tx) : 0L;
+        deltas[day] += isSource ? sourceDelta(tx.getType(), amount, fee) : amount;
+        counts[day]++;
+        fees[day] += fee;
+        return this;
+    }
+
+    public int days() {
+        return deltas.length;
+    }
+
+    public LocalDate dateAt(int day) {
+        return start.plusDays(day);
+    }
+
+    public long deltaAt(int day) {
+        return deltas[day];
+    }
+
+    public long countAt(int day) {
+        return counts[day];
+    }
+
+    public long feeAt(int day) {
+        return fees[day];
+    }
+
+    /**
+     * Saldos al cierre de cada día partiendo del saldo de apertura del primer día.
+     */
+    public long[] balancesFrom(long openingBalance) {
+        long[] balances = new long[deltas.length];
+        long balance = openingBalance;
+        for (int day = 0; day < deltas.length; day++) {
+            balance = Math.addExact(balance, deltas[day]);
+            balances[day] = balance;
+        }
+        return balances;
+    }
+
+    /**
+     * Saldos al cierre de cada día conociendo el saldo al cierre del último día.
+     */
+    public long[] balancesEndingAt(long closingBalance) {
+        long total = 0;
+        for (long delta : deltas) {
+            total = Math.addExact(total, delta);
+        }
+        return balancesFrom(Math.subtractExact(closingBalance, total));
+    }
+
+    /**
+     * Promedio de los saldos diarios, en céntimos y redondeado al céntimo.
+     */
+    public static long average(long[] balances) {
+        if (balances.length == 0) {
+            return 0L;
+        }
+        long sum = 0;
+        for (long balance : balances) {
+            sum = Math.addExact(sum, balance);
+        }
+        return BigDecimal.valueOf(sum).divide(BigDecimal.valueOf(balances.length), 0, RoundingMode.HALF_UP)
+                .longValueExact();
+    }
+
+    public static long toMinor(BigDecimal amount) {
+        return Money.of(amount).getMinor();
+    }
+
+    public static BigDecimal fromMinor(long amount) {
+        return Money.ofMinor(amount).toBigDecimal();
+    }
+
+    /**
+     * Variación del saldo del producto origen, con las mismas reglas que se aplican al registrar
+     * la transacción. En productos de crédito el saldo es la deuda: los consumos la incrementan.
+     */
+    private long sourceDelta(TransactionType type, long amount, long fee) {
+        switch (type) {
+            case DEPOSIT:
+                return amount - fee;
+            case PAYMENT:
+            case MAINTENANCE:
+                return -amount;
+            default:
+                return credit ? amount : -(amount + fee);
+        }
+    }
+
+    private static long feeOf(Transaction tx) {
+        return Money.of(tx.getTransactionFee()).getMinor();
+    }
+}
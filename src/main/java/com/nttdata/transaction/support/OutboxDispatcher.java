@@ -0,0 +1,58 @@
+package com.nttdata.transaction.support;
+
+import com.nttdata.transaction.config.OutboxProperties;
+import com.nttdata.transaction.service.TransactionOutboxService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Ejecuta periódicamente la propagación de saldos pendientes cuando el modo outbox está activo.
+ * Si un ciclo llena el lote, se encadena el siguiente sin esperar al próximo intervalo.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "transaction.outbox", name = "enabled", havingValue = "true")
+public class OutboxDispatcher implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private final TransactionOutboxService outboxService;
+    private final OutboxProperties properties;
+    private Disposable subscription;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        subscription = Flux.interval(properties.getPollInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> drain(), 1)
+                .subscribe();
+        log.info("Despachador outbox iniciado cada {}", properties.getPollInterval());
+    }
+
+    private Mono<Void> drain() {
+        return Mono.defer(outboxService::dispatchPending)
+                .expand(processed -> processed >= properties.getBatchSize()
+                        ? Mono.defer(outboxService::dispatchPending)
+                        : Mono.empty())
+                .onErrorResume(e -> {
+                    log.error("Error en el ciclo del despachador outbox: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    @Override
+    public void destroy() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+}
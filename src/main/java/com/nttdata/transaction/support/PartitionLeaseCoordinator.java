@@ -0,0 +1,202 @@
+package com.nttdata.transaction.support;
+
+import com.nttdata.transaction.config.PartitionLeaseProperties;
+import com.nttdata.transaction.model.PartitionLease;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * Reparte un trabajo entre instancias por particiones del espacio de ids. Cada partición se
+ * procesa bajo un lease en Mongo (partition_leases) con dueño y vencimiento: la instancia que lo
+ * obtiene lo renueva con latidos mientras trabaja y, si deja de hacerlo, otra instancia toma la
+ * partición cuando el lease vence. Una partición completada en un periodo no se vuelve a tomar
+ * en ese periodo.
+ *
+ * <p>Cada obtención incrementa la época del lease. El trabajo recibe el lease obtenido y debe
+ * reclamar sus elementos y comprobar {@link #holds(PartitionLease)} antes de efectos externos, ya que
+ * los elementos en curso de un dueño anterior pueden seguir ejecutándose tras perderlo.</p>
+ */
+@Component
+@RequiredArgsConstructor
+public class PartitionLeaseCoordinator {
+    private static final Logger log = LoggerFactory.getLogger(PartitionLeaseCoordinator.class);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final PartitionLeaseProperties properties;
+
+    /**
+     * Partición de una clave; {@link String#hashCode()} está definido por la especificación, así que
+     * todas las instancias asignan la misma partición.
+     */
+    public int partitionOf(String key) {
+        return Math.floorMod(key.hashCode(), properties.getPartitions());
+    }
+
+    /**
+     * Procesa todas las particiones del trabajo para el periodo, cooperando con otras instancias.
+     * Recorre las particiones tomando las libres o vencidas y repite las pasadas hasta que todas
+     * estén completadas, por esta u otra instancia.
+     *
+     * @param work Trabajo de una partición. Recibe el lease obtenido y una señal que se emite si se
+     *             pierde: el trabajo debe dejar de tomar elementos nuevos
+     */
+    public <T> Flux<T> runPartitions(String job, String period,
+                                     BiFunction<PartitionLease, Mono<Boolean>, Flux<T>> work) {
+        return runPass(job, period, work)
+                .concatWith(Flux.defer(() -> completedPartitions(job, period)
+                        .flatMapMany(completed -> completed >= properties.getPartitions()
+                                ? Flux.<T>empty()
+                                : Mono.delay(properties.getRetryInterval())
+                                        .thenMany(runPartitions(job, period, work)))));
+    }
+
+    private <T> Flux<T> runPass(String job, String period,
+                                BiFunction<PartitionLease, Mono<Boolean>, Flux<T>> work) {
+        // Cada instancia empieza por una partición distinta para reducir la competencia por los leases
+        int partitions = properties.getPartitions();
+        int offset = Math.floorMod(properties.getInstanceId().hashCode(), partitions);
+        return Flux.range(0, partitions)
+                .map(i -> (i + offset) % partitions)
+                .concatMap(partition -> tryAcquire(job, partition, period)
+                        .flatMapMany(lease -> runWithLease(lease, period, work)));
+    }
+
+    /**
+     * Vuelve a abrir las particiones completadas en el periodo, para que una nueva ejecución del mismo
+     * periodo retome lo que quedó pendiente.
+     */
+    public Mono<Void> reopen(String job, String period) {
+        return mongoTemplate.updateMulti(Query.query(Criteria.where("job").is(job).and("completedPeriod").is(period)),
+                        new Update().unset("completedPeriod").set("updatedAt", LocalDateTime.now()),
+                        PartitionLease.class)
+                .then();
+    }
+
+    /**
+     * Indica si esta instancia sigue siendo dueña del lease con la misma época con que lo obtuvo y
+     * sin vencer. Se comprueba antes de cada efecto externo del trabajo de la partición.
+     */
+    public Mono<Boolean> holds(PartitionLease lease) {
+        return mongoTemplate.exists(Query.query(Criteria.where("_id").is(lease.getId())
+                        .and("owner").is(properties.getInstanceId())
+                        .and("epoch").is(lease.getEpoch())
+                        .and("expiresAt").gt(LocalDateTime.now())),
+                PartitionLease.class);
+    }
+
+    /**
+     * Toma el lease si no tiene dueño, si ya es de esta instancia o si venció, salvo que la
+     * partición ya esté completada en el periodo. Devuelve el lease con su nueva época, o vacío si
+     * no se obtuvo.
+     */
+    Mono<PartitionLease> tryAcquire(String job, int partition, String period) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where("_id").is(PartitionLease.buildId(job, partition))
+                .and("completedPeriod").ne(period)
+                .orOperator(
+                        Criteria.where("owner").is(properties.getInstanceId()),
+                        Criteria.where("owner").is(null),
+                        Criteria.where("expiresAt").lt(now)));
+        Update update = new Update()
+                .setOnInsert("job", job)
+                .setOnInsert("partition", partition)
+                .set("owner", properties.getInstanceId())
+                .set("expiresAt", now.plus(properties.getTtl()))
+                .inc("epoch", 1L)
+                .set("updatedAt", now);
+
+        return mongoTemplate.findAndModify(query, update,
+                        FindAndModifyOptions.options().upsert(true).returnNew(true), PartitionLease.class)
+                // El upsert choca con el documento existente: la partición es de otra instancia o ya se completó
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+    }
+
+    private <T> Flux<T> runWithLease(PartitionLease lease, String period,
+                                     BiFunction<PartitionLease, Mono<Boolean>, Flux<T>> work) {
+        String leaseId = lease.getId();
+        return Flux.defer(() -> {
+            AtomicReference<LocalDateTime> renewedAt = new AtomicReference<>(LocalDateTime.now());
+            AtomicBoolean lost = new AtomicBoolean();
+            Sinks.One<Boolean> leaseLost = Sinks.one();
+            Disposable heartbeat = Flux.interval(properties.getHeartbeatInterval())
+                    .concatMap(tick -> renew(lease, renewedAt))
+                    .filter(renewed -> !renewed)
+                    .next()
+                    .subscribe(renewed -> {
+                        lost.set(true);
+                        log.warn("Se perdió el lease de la partición {}; se deja de tomar trabajo", leaseId);
+                        leaseLost.tryEmitValue(true);
+                    });
+
+            log.info("Partición {} tomada por la instancia {} (época {})", leaseId, properties.getInstanceId(),
+                    lease.getEpoch());
+            return work.apply(lease, leaseLost.asMono())
+                    // Solo se marca completada si se conservó el lease hasta el final
+                    .concatWith(Mono.defer(() -> lost.get()
+                            ? Mono.<T>empty()
+                            : complete(lease, period).then(Mono.<T>empty())))
+                    .doFinally(signal -> heartbeat.dispose());
+        });
+    }
+
+    private Mono<Boolean> renew(PartitionLease lease, AtomicReference<LocalDateTime> renewedAt) {
+        LocalDateTime now = LocalDateTime.now();
+        return mongoTemplate.updateFirst(heldLease(lease),
+                        new Update().set("expiresAt", now.plus(properties.getTtl())).set("updatedAt", now),
+                        PartitionLease.class)
+                .map(result -> result.getMatchedCount() > 0)
+                .doOnNext(renewed -> {
+                    if (renewed) {
+                        renewedAt.set(now);
+                    }
+                })
+                // Un fallo puntual no pierde el lease mientras no haya vencido
+                .onErrorResume(e -> Mono.just(renewedAt.get().plus(properties.getTtl()).isAfter(now)));
+    }
+
+    private Mono<Void> complete(PartitionLease lease, String period) {
+        LocalDateTime now = LocalDateTime.now();
+        return mongoTemplate.updateFirst(heldLease(lease),
+                        new Update()
+                                .set("completedPeriod", period)
+                                .unset("owner")
+                                .set("expiresAt", now)
+                                .set("updatedAt", now),
+                        PartitionLease.class)
+                .doOnNext(result -> {
+                    if (result.getMatchedCount() == 0) {
+                        // Otra instancia la tomó: la completará ella, retomando desde los puntos de control
+                        log.warn("La partición {} cambió de dueño antes de completarse", lease.getId());
+                    }
+                })
+                .then();
+    }
+
+    private Query heldLease(PartitionLease lease) {
+        return Query.query(Criteria.where("_id").is(lease.getId())
+                .and("owner").is(properties.getInstanceId())
+                .and("epoch").is(lease.getEpoch()));
+    }
+
+    private Mono<Long> completedPartitions(String job, String period) {
+        return mongoTemplate.count(Query.query(Criteria.where("job").is(job).and("completedPeriod").is(period)),
+                PartitionLease.class);
+    }
+}
@@ -0,0 +1,135 @@
+package com.nttdata.transaction.support;
+
+import com.nttdata.transaction.config.CircuitBreakerConfigHelper;
+import com.nttdata.transaction.config.ProductLoaderProperties;
+import com.nttdata.transaction.model.Dto.BankProductDTO;
+import com.nttdata.transaction.model.Dto.BankProductResponse;
+import com.nttdata.transaction.utils.Constants;
+import com.nttdata.transaction.utils.ProductMapper;
+import com.nttdata.transaction.utils.exceptions.EmptyResultException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cargador de productos al estilo DataLoader: acumula las consultas por id durante una ventana corta
+ * (o hasta completar el tamaño máximo de lote), las resuelve con una sola petición multi-id y entrega
+ * a cada consulta su producto.
+ */
+@Component
+public class ProductBatchLoader implements DisposableBean {
+
+    private final WebClient productServiceWebClient;
+    private final CircuitBreakerConfigHelper resilience;
+    private final ProductLoaderProperties properties;
+    private final DistributionSummary batchSize;
+    private final Timer queueDelay;
+    private final Disposable pipeline;
+    private FluxSink<Request> requests;
+
+    public ProductBatchLoader(WebClient productServiceWebClient,
+                              CircuitBreakerConfigHelper resilience,
+                              ProductLoaderProperties properties,
+                              MeterRegistry meterRegistry) {
+        this.productServiceWebClient = productServiceWebClient;
+        this.resilience = resilience;
+        this.properties = properties;
+        this.batchSize = DistributionSummary.builder("product.loader.batch.size")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        this.queueDelay = Timer.builder("product.loader.queue.delay")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        this.pipeline = Flux.<Request>create(sink -> this.requests = sink)
+                .bufferTimeout(properties.getMaxBatchSize(), properties.getWindow())
+                // Los lotes se emiten por tiempo aunque no haya demanda: se encolan hasta poder enviarse
+                .onBackpressureBuffer()
+                .flatMap(this::dispatch, properties.getConcurrency())
+                .subscribe();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Encola la consulta del producto en el lote en curso.
+     *
+     * @return Mono con una respuesta que contiene solo el producto solicitado
+     */
+    public Mono<BankProductResponse> load(String productId) {
+        return Mono.create(sink -> requests.next(new Request(productId, sink, System.nanoTime())));
+    }
+
+    private Mono<Void> dispatch(List<Request> batch) {
+        long now = System.nanoTime();
+        Set<String> ids = new LinkedHashSet<>();
+        for (Request request : batch) {
+            queueDelay.record(now - request.enqueuedAt, TimeUnit.NANOSECONDS);
+            ids.add(request.productId);
+        }
+        batchSize.record(ids.size());
+
+        return resilience.protectRead(productServiceWebClient.get()
+                        .uri(uri -> uri.path(properties.getBatchPath())
+                                .queryParam("ids", String.join(",", ids))
+                                .build())
+                        .retrieve()
+                        .bodyToMono(BankProductResponse.class))
+                .defaultIfEmpty(new BankProductResponse())
+                .doOnNext(response -> complete(batch, response))
+                .doOnError(e -> batch.forEach(request -> request.sink.error(e)))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private void complete(List<Request> batch, BankProductResponse response) {
+        Map<String, BankProductDTO> byId = new HashMap<>();
+        if (response.getProducts() != null) {
+            response.getProducts().forEach(product -> byId.put(product.getId(), product));
+        }
+
+        for (Request request : batch) {
+            BankProductDTO product = byId.get(request.productId);
+            if (product == null) {
+                request.sink.error(new EmptyResultException(Constants.ERROR_FIND_PRODUCT));
+            } else {
+                // Cada consulta recibe su propia copia, aunque el id se haya pedido varias veces
+                request.sink.success(new BankProductResponse(response.getStatus(), response.getMessage(),
+                        List.of(ProductMapper.copyOf(product))));
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        pipeline.dispose();
+    }
+
+    private static final class Request {
+        private final String productId;
+        private final MonoSink<BankProductResponse> sink;
+        private final long enqueuedAt;
+
+        private Request(String productId, MonoSink<BankProductResponse> sink, long enqueuedAt) {
+            this.productId = productId;
+            this.sink = sink;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.nttdata.transaction.support;
+
+import com.nttdata.transaction.config.ProductLaneProperties;
+import com.nttdata.transaction.utils.Constants;
+import com.nttdata.transaction.utils.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Ejecuta las mutaciones de saldo de un mismo producto de una en una (single-writer),
+ * sin bloquear hilos: cada producto tiene su propia cola y productos distintos avanzan
+ * en paralelo. Las transferencias toman ambos productos siempre en el mismo orden
+ * (lexicográfico) para evitar interbloqueos.
+ *
+ * <p>El orden solo se garantiza dentro de esta instancia del servicio.</p>
+ */
+@Component
+public class ProductLaneSequencer {
+
+    private final ProductLaneProperties properties;
+    private final ConcurrentHashMap<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger[] shardDepth;
+    private final Counter rejected;
+
+    public ProductLaneSequencer(ProductLaneProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.shardDepth = new AtomicInteger[Math.max(1, properties.getShards())];
+        for (int i = 0; i < shardDepth.length; i++) {
+            shardDepth[i] = meterRegistry.gauge("product.lane.queue.depth",
+                    Tags.of("shard", String.valueOf(i)), new AtomicInteger());
+        }
+        this.rejected = meterRegistry.counter("product.lane.rejected");
+        meterRegistry.gaugeMapSize("product.lane.active", Tags.empty(), lanes);
+    }
+
+    /**
+     * Ejecuta la acción cuando el producto no tenga otra mutación en curso.
+     */
+    public <T> Mono<T> execute(String productId, Supplier<Mono<T>> action) {
+        return Mono.create(sink -> enqueue(new Task<>(productId, action, sink)));
+    }
+
+    /**
+     * Ejecuta la acción con ambos productos reservados. Si el segundo es nulo o igual
+     * al primero, equivale a reservar un único producto.
+     */
+    public <T> Mono<T> execute(String firstProductId, String secondProductId, Supplier<Mono<T>> action) {
+        if (secondProductId == null || secondProductId.equals(firstProductId)) {
+            return execute(firstProductId, action);
+        }
+        String first = firstProductId.compareTo(secondProductId) < 0 ? firstProductId : secondProductId;
+        String second = first.equals(firstProductId) ? secondProductId : firstProductId;
+        return execute(first, () -> execute(second, action));
+    }
+
+    /**
+     * Ejecuta la acción con todos los productos reservados. Se toman uno a uno en orden
+     * lexicográfico, como en las transferencias, y se liberan juntos al terminar la acción.
+     */
+    public <T> Mono<T> execute(Collection<String> productIds, Supplier<Mono<T>> action) {
+        List<String> ordered = productIds.stream().distinct().sorted().collect(Collectors.toList());
+        return Mono.defer(() -> {
+            // Cada carril queda retenido hasta que termina la acción; se reservan sin anidar
+            // suscripciones para no acumular pila con lotes grandes
+            Sinks.Empty<Void> done = Sinks.empty();
+            return Flux.fromIterable(ordered)
+                    .concatMap(productId -> hold(productId, done))
+                    .then(Mono.defer(action))
+                    .doFinally(signal -> done.tryEmitEmpty());
+        });
+    }
+
+    private Mono<Void> hold(String productId, Sinks.Empty<Void> done) {
+        return Mono.create(acquired -> {
+            Disposable held = execute(productId, () -> {
+                acquired.success();
+                return done.asMono();
+            }).subscribe(unused -> { }, acquired::error);
+            // Si se cancela antes de obtener el carril se retira de la cola
+            acquired.onCancel(held);
+        });
+    }
+
+    private void enqueue(Task<?> task) {
+        boolean[] runNow = {false};
+        boolean[] full = {false};
+
+        lanes.compute(task.productId, (key, lane) -> {
+            Lane current = lane != null ? lane : new Lane();
+            if (!current.busy) {
+                current.busy = true;
+                runNow[0] = true;
+            } else if (current.waiting.size() >= properties.getMaxPendingPerProduct()) {
+                full[0] = true;
+            } else {
+                current.waiting.addLast(task);
+                depth(key).incrementAndGet();
+            }
+            return current;
+        });
+
+        if (full[0]) {
+            rejected.increment();
+            task.sink.error(new ServiceUnavailableException(Constants.ERROR_PRODUCT_LANE_FULL));
+            return;
+        }
+        task.sink.onCancel(task::cancel);
+        if (runNow[0]) {
+            task.run();
+        }
+    }
+
+    private void release(String productId) {
+        Object[] next = {null};
+        lanes.computeIfPresent(productId, (key, lane) -> {
+            Task<?> task = lane.waiting.pollFirst();
+            if (task == null) {
+                // Sin operaciones pendientes: se libera la cola del producto
+                return null;
+            }
+            depth(key).decrementAndGet();
+            next[0] = task;
+            return lane;
+        });
+        if (next[0] != null) {
+            // Se cede el turno en otro hilo para no encadenar pilas entre operaciones síncronas
+            Schedulers.parallel().schedule((Task<?>) next[0]);
+        }
+    }
+
+    private AtomicInteger depth(String productId) {
+        return shardDepth[Math.floorMod(productId.hashCode(), shardDepth.length)];
+    }
+
+    private static final class Lane {
+        private final Deque<Task<?>> waiting = new ArrayDeque<>();
+        private boolean busy;
+    }
+
+    private final class Task<T> implements Runnable {
+        private final String productId;
+        private final Supplier<Mono<T>> action;
+        private final MonoSink<T> sink;
+        private volatile boolean cancelled;
+        private volatile Disposable running;
+
+        private Task(String productId, Supplier<Mono<T>> action, MonoSink<T> sink) {
+            this.productId = productId;
+            this.action = action;
+            this.sink = sink;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                release(productId);
+                return;
+            }
+            running = Mono.defer(action)
+                    .doFinally(signal -> release(productId))
+                    .subscribe(sink::success, sink::error, sink::success);
+            if (cancelled) {
+                running.dispose();
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            Disposable current = running;
+            if (current != null) {
+                current.dispose();
+            }
+        }
+    }
+}
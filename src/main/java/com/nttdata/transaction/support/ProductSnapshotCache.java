@@ -0,0 +1,154 @@
+package com.nttdata.transaction.support;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.nttdata.transaction.config.ProductCacheProperties;
+import com.nttdata.transaction.model.Dto.BankProductDTO;
+import com.nttdata.transaction.model.Dto.BankProductResponse;
+import com.nttdata.transaction.model.Type.StalenessPolicy;
+import com.nttdata.transaction.utils.ProductMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Caché local (acotada y con TTL) de productos del product-service, indexada por id de producto.
+ * Se actualiza en cada lectura y en cada actualización exitosa (write-through) y se invalida
+ * ante errores. Cada lectura indica la antigüedad máxima que acepta mediante {@link StalenessPolicy}.
+ */
+@Component
+public class ProductSnapshotCache {
+
+    private final ProductCacheProperties properties;
+    private final Cache<String, Snapshot> cache;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter stale;
+    private final Counter evictions;
+
+    public ProductSnapshotCache(ProductCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.hits = meterRegistry.counter("product.snapshot.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("product.snapshot.cache.requests", "result", "miss");
+        this.stale = meterRegistry.counter("product.snapshot.cache.requests", "result", "stale");
+        this.evictions = meterRegistry.counter("product.snapshot.cache.evictions");
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfterWrite(properties.getTtl())
+                .removalListener((String key, Snapshot value, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+        meterRegistry.gauge("product.snapshot.cache.size", cache, Cache::estimatedSize);
+    }
+
+    /**
+     * Devuelve una copia del producto si la entrada no supera la antigüedad permitida.
+     */
+    public Optional<BankProductResponse> get(String productId, StalenessPolicy policy) {
+        Duration maxStaleness = maxStaleness(policy);
+        if (maxStaleness.isZero() || maxStaleness.isNegative()) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        Snapshot snapshot = cache.getIfPresent(productId);
+        if (snapshot == null || snapshot.response == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        if (snapshot.cachedAt.plus(maxStaleness).isBefore(Instant.now())) {
+            stale.increment();
+            return Optional.empty();
+        }
+
+        hits.increment();
+        return Optional.of(ProductMapper.copyOf(snapshot.response));
+    }
+
+    /**
+     * Devuelve una copia del producto solo si se leyó del product-service o se escribió después de
+     * {@code since}. Permite reutilizar lo que ya consultó la misma petición sin aceptar copias anteriores.
+     */
+    public Optional<BankProductResponse> getObservedSince(String productId, Instant since) {
+        Snapshot snapshot = cache.getIfPresent(productId);
+        if (snapshot == null || snapshot.response == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        if (snapshot.cachedAt.isBefore(since)) {
+            stale.increment();
+            return Optional.empty();
+        }
+
+        hits.increment();
+        return Optional.of(ProductMapper.copyOf(snapshot.response));
+    }
+
+    /**
+     * Guarda una copia de cada producto contenido en la respuesta.
+     */
+    public void put(BankProductResponse response) {
+        put(response, Instant.now());
+    }
+
+    /**
+     * Guarda una copia de cada producto, salvo que la caché ya tenga una copia observada después.
+     * Una lectura se marca con el instante en que empezó, de modo que una respuesta que llega tarde
+     * no reemplaza el estado escrito por una actualización posterior.
+     */
+    public void put(BankProductResponse response, Instant observedAt) {
+        if (response == null || response.getProducts() == null) {
+            return;
+        }
+        for (BankProductDTO product : response.getProducts()) {
+            if (product != null && product.getId() != null) {
+                BankProductResponse single = new BankProductResponse(response.getStatus(),
+                        response.getMessage(), List.of(ProductMapper.copyOf(product)));
+                cache.asMap().compute(product.getId(), (id, current) ->
+                        current != null && current.cachedAt.isAfter(observedAt)
+                                ? current
+                                : new Snapshot(single, observedAt));
+            }
+        }
+    }
+
+    /**
+     * Descarta la copia del producto y deja una marca con el instante de la invalidación: una lectura
+     * iniciada antes (por ejemplo, en paralelo con una escritura fallida) no vuelve a guardar su estado.
+     */
+    public void invalidate(String productId) {
+        if (productId != null) {
+            cache.put(productId, new Snapshot(null, Instant.now()));
+        }
+    }
+
+    private Duration maxStaleness(StalenessPolicy policy) {
+        switch (policy) {
+            case LOOKUP:
+                return properties.getLookupMaxStaleness();
+            case REPORT:
+                return properties.getReportMaxStaleness();
+            default:
+                return Duration.ZERO;
+        }
+    }
+
+    private static final class Snapshot {
+        private final BankProductResponse response;
+        private final Instant cachedAt;
+
+        private Snapshot(BankProductResponse response, Instant cachedAt) {
+            this.response = response;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
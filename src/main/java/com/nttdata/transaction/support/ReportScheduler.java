@@ -0,0 +1,87 @@
+package com.nttdata.transaction.support;
+
+import com.nttdata.transaction.config.ReportSchedulerProperties;
+import com.nttdata.transaction.utils.Constants;
+import com.nttdata.transaction.utils.exceptions.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Planificador acotado para el cálculo de reportes: un número fijo de hilos y una cola de tamaño
+ * limitado. Así el plegado de reportes grandes no ocupa los hilos de E/S que comparten el resto de
+ * peticiones, y cuando la cola se llena el reporte se rechaza en lugar de acumular trabajo.
+ */
+@Component
+public class ReportScheduler implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+    private final Scheduler scheduler;
+    private final Counter rejected;
+
+    public ReportScheduler(ReportSchedulerProperties properties, MeterRegistry meterRegistry) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, properties.getName() + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        this.scheduler = Schedulers.fromExecutorService(executor, properties.getName());
+
+        Tags tags = Tags.of("scheduler", properties.getName());
+        meterRegistry.gauge("report.scheduler.queue.size", tags, executor, e -> e.getQueue().size());
+        meterRegistry.gauge("report.scheduler.active", tags, executor, ThreadPoolExecutor::getActiveCount);
+        this.rejected = meterRegistry.counter("report.scheduler.rejected", tags);
+    }
+
+    /**
+     * Calcula el resultado en el planificador de reportes.
+     */
+    public <T> Mono<T> compute(Supplier<T> task) {
+        return Mono.fromSupplier(task).subscribeOn(scheduler)
+                .onErrorMap(RejectedExecutionException.class, this::busy);
+    }
+
+    /**
+     * Entrega los elementos en el planificador de reportes, para que el plegado posterior no se
+     * ejecute en el hilo que los produce.
+     */
+    public <T> Flux<T> offload(Flux<T> source) {
+        return source.publishOn(scheduler).onErrorMap(RejectedExecutionException.class, this::busy);
+    }
+
+    public int queueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int activeCount() {
+        return executor.getActiveCount();
+    }
+
+    private Throwable busy(RejectedExecutionException e) {
+        rejected.increment();
+        return new ServiceUnavailableException(Constants.ERROR_REPORT_SCHEDULER_BUSY);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,82 @@
+package com.nttdata.transaction.support;
+
+import com.nttdata.transaction.config.SingleFlightProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Agrupa consultas concurrentes con la misma clave en una sola llamada en curso (single-flight).
+ * Quien llega mientras la consulta está en curso recibe el mismo resultado, copiado para cada
+ * suscriptor; al terminar la consulta la clave se libera y la siguiente vuelve a consultar.
+ */
+@Component
+public class SingleFlight {
+
+    private final SingleFlightProperties properties;
+    private final ConcurrentHashMap<String, Flight<?>> flights = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter collapsed;
+    private final Counter overflow;
+
+    public SingleFlight(SingleFlightProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.leaders = meterRegistry.counter("product.singleflight.calls", "result", "leader");
+        this.collapsed = meterRegistry.counter("product.singleflight.calls", "result", "collapsed");
+        this.overflow = meterRegistry.counter("product.singleflight.calls", "result", "overflow");
+        meterRegistry.gaugeMapSize("product.singleflight.inflight", Tags.empty(), flights);
+    }
+
+    /**
+     * Ejecuta la consulta o se une a la que ya está en curso para la misma clave.
+     *
+     * @param key Clave de la consulta
+     * @param call Consulta a ejecutar
+     * @param copy Copia entregada a cada suscriptor, para que ninguno modifique el resultado de otro
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> execute(String key, Supplier<Mono<T>> call, UnaryOperator<T> copy) {
+        if (!properties.isEnabled()) {
+            return Mono.defer(call).map(copy);
+        }
+
+        return Mono.defer(() -> {
+            Flight<T> created = new Flight<>();
+            created.result = Mono.defer(call)
+                    .doFinally(signal -> flights.remove(key, created))
+                    .cache();
+
+            Flight<T> current = (Flight<T>) flights.putIfAbsent(key, created);
+            if (current == null) {
+                leaders.increment();
+                return created.result.map(copy);
+            }
+            if (current.subscribers.incrementAndGet() > properties.getMaxSubscribersPerKey()) {
+                overflow.increment();
+                return Mono.defer(call).map(copy);
+            }
+            collapsed.increment();
+            return current.result.map(copy);
+        });
+    }
+
+    /**
+     * Libera la clave: las consultas posteriores no se unen a la que esté en curso. Se usa tras una
+     * escritura, para que nadie reciba un resultado obtenido antes de ella.
+     */
+    public void forget(String key) {
+        flights.remove(key);
+    }
+
+    private static final class Flight<T> {
+        private final AtomicInteger subscribers = new AtomicInteger(1);
+        private Mono<T> result;
+    }
+}
@@ -0,0 +1,26 @@
+package com.nttdata.transaction.support;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.ReactiveHealthIndicator;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Marca la instancia como no lista mientras falte alguno de los índices requeridos de transacciones.
+ */
+@Component("transactionIndexes")
+@RequiredArgsConstructor
+public class TransactionIndexHealthIndicator implements ReactiveHealthIndicator {
+
+    private final TransactionIndexManager indexManager;
+
+    @Override
+    public Mono<Health> health() {
+        return indexManager.findMissingIndexes()
+                .map(missing -> missing.isEmpty()
+                        ? Health.up().withDetail("indexes", indexManager.getRequiredIndexes().keySet()).build()
+                        : Health.down().withDetail("missingIndexes", missing).build())
+                .onErrorResume(e -> Mono.just(Health.down().withDetail("error", e.getMessage()).build()));
+    }
+}
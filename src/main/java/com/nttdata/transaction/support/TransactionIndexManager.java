@@ -0,0 +1,78 @@
+package com.nttdata.transaction.support;
+
+import com.nttdata.transaction.model.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Crea al arrancar los índices declarados en {@link Transaction} y verifica que sigan existiendo.
+ * Las consultas frecuentes filtran por producto y rango de fechas: sin estos índices recorren la colección.
+ */
+@Component
+public class TransactionIndexManager {
+    private static final Logger log = LoggerFactory.getLogger(TransactionIndexManager.class);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final Map<String, IndexDefinition> requiredIndexes = new LinkedHashMap<>();
+
+    public TransactionIndexManager(ReactiveMongoTemplate mongoTemplate, MongoMappingContext mappingContext) {
+        this.mongoTemplate = mongoTemplate;
+        new MongoPersistentEntityIndexResolver(mappingContext).resolveIndexFor(Transaction.class)
+                .forEach(index -> requiredIndexes.put((String) index.getIndexOptions().get("name"), index));
+    }
+
+    /**
+     * Índices requeridos por nombre.
+     */
+    public Map<String, IndexDefinition> getRequiredIndexes() {
+        return requiredIndexes;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        createIndexes().subscribe(names -> log.info("Índices de transacciones verificados: {}", names),
+                e -> log.error("No se pudieron crear los índices de transacciones", e));
+    }
+
+    /**
+     * Crea los índices requeridos que falten y devuelve sus nombres.
+     */
+    public Mono<List<String>> createIndexes() {
+        return Flux.fromIterable(requiredIndexes.values())
+                .concatMap(index -> mongoTemplate.indexOps(Transaction.class).ensureIndex(index))
+                .collectList();
+    }
+
+    /**
+     * Nombres de los índices requeridos que no existen en la colección.
+     */
+    public Mono<List<String>> findMissingIndexes() {
+        return mongoTemplate.indexOps(Transaction.class).getIndexInfo()
+                .map(IndexInfo::getName)
+                .collect(Collectors.toSet())
+                .map(this::missing);
+    }
+
+    private List<String> missing(Set<String> existing) {
+        List<String> missing = new ArrayList<>(requiredIndexes.keySet());
+        missing.removeAll(existing);
+        return missing;
+    }
+}
@@ -26,12 +26,50 @@ public class Constants {
             "Saldo disponible obtenido correctamente.";
     public static final String SUCCESS_APPLY_MONTHLY_FEE =
             "Tareas mensuales completadas correctamente.";
+    public static final String SUCCESS_MONTHLY_TASKS_STARTED =
+            "Tareas mensuales en ejecución; consulte su avance en /transactions/applyMonthlyTasks/status.";
+    public static final String SUCCESS_MONTHLY_TASKS_STATUS =
+            "Estado de las tareas mensuales obtenido correctamente.";
+    public static final String ERROR_MONTHLY_TASKS_NOT_FOUND =
+            "No se encontró ninguna ejecución de las tareas mensuales.";
+    public static final String ERROR_MONTHLY_TASKS_RUNNING =
+            "Ya hay una ejecución de las tareas mensuales en curso.";
+    public static final String ERROR_PRODUCT_NOT_UPDATED =
+            "El servicio de productos no confirmó la actualización del producto.";
+    public static final String ERROR_MAINTENANCE_FEE_UNRECONCILED =
+            "La comisión pendiente está registrada sin confirmar el saldo; se requiere conciliación manual.";
+    public static final String SUCCESS_OUTBOX_REPLAY =
+            "Registros outbox reprogramados: %d.";
+    public static final String SUCCESS_DAILY_STATS_BACKFILL =
+            "Resúmenes diarios reconstruidos: %d.";
+    public static final String SUCCESS_MONEY_MIGRATION =
+            "Transacciones migradas a Decimal128: %d.";
     public static final String ERROR_INTERNAL  =
             "Hubo un problema con la solicitud";
     public static final String ERROR_VALIDATION_MESSAGE =
             "Error de validación: %s";
     public static final String ERROR_CIRCUIT_BREAKER =
             "Timeout: El servicio no respondió en el tiempo esperado";
+    public static final String ERROR_PRODUCT_SERVICE_UNAVAILABLE =
+            "El servicio de productos no está disponible, intente nuevamente.";
+    public static final String ERROR_PRODUCT_SERVICE_BUSY =
+            "El servicio de productos está saturado, intente nuevamente.";
+    public static final String ERROR_REPORT_SCHEDULER_BUSY =
+            "Hay demasiados reportes en curso, intente nuevamente.";
+    public static final String ERROR_PRODUCT_LANE_FULL =
+            "Demasiadas operaciones en espera para el producto, intente nuevamente.";
+
+    public static final String ERROR_IDEMPOTENCY_KEY_REUSED =
+            "La clave de idempotencia ya fue usada con otros datos.";
+    public static final String ERROR_IDEMPOTENCY_IN_PROGRESS =
+            "La petición con esta clave de idempotencia aún se está procesando, intente nuevamente.";
+    public static final String ERROR_IDEMPOTENCY_UNKNOWN =
+            "No se pudo confirmar si la petición con esta clave de idempotencia se aplicó; "
+                    + "consulte sus transacciones antes de reintentar con otra clave.";
+    public static final String IDEMPOTENCY_SCOPE_TRANSACTIONS = "transactions";
+    public static final String IDEMPOTENCY_SCOPE_DEBIT_CARDS = "debit-cards";
+    public static final String MIGRATION_MONEY_DECIMAL128 = "money-decimal128";
+    public static final String MONTHLY_TASKS_JOB = "monthly-tasks";
 
     // Constantes para validaciones de reglas de transacción
     public static final String ERROR_UNSUPPORTED_TRANSACTION_TYPE =
@@ -58,5 +96,18 @@ public class Constants {
             "La cuenta origen no es valida.";
     public static final String ERROR_INVALID_TRANSFER_FOR_TARGET_ACCOUNT =
             "La cuenta destino no es valida.";
+    public static final String ERROR_INVALID_CURSOR =
+            "El cursor de paginación no es válido.";
+    public static final String ERROR_INVALID_PAGE_SIZE =
+            "El tamaño de página debe ser mayor que cero.";
+    public static final String ERROR_CURRENCY_MISMATCH =
+            "No se pueden operar importes en monedas distintas: %s y %s.";
+    public static final String ERROR_FAILED_AFTER_APPLY =
+            "La transacción quedó registrada, pero no se pudo completar: %s";
+    public static final String ERROR_AMOUNT_SCALE =
+            "El importe %s tiene más de dos decimales.";
+    public static final String ERROR_AMOUNT_OUT_OF_RANGE =
+            "El importe está fuera del rango admitido.";
+    public static final String DEFAULT_CURRENCY = "PEN";
 
 }
\ No newline at end of file
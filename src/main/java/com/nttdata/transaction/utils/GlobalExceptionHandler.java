@@ -1,6 +1,7 @@
 package com.nttdata.transaction.utils;
 
 import com.nttdata.transaction.utils.exceptions.EmptyResultException;
+import com.nttdata.transaction.utils.exceptions.FailedAfterApplyException;
 import com.nttdata.transaction.utils.exceptions.ServiceUnavailableException;
 import org.openapitools.model.AvailableBalanceResponse;
 import org.openapitools.model.TemplateResponse;
@@ -48,6 +49,18 @@ public class GlobalExceptionHandler {
                         .transactions(null));
     }
 
+    @ExceptionHandler(FailedAfterApplyException.class)
+    public ResponseEntity<TemplateResponse> handleFailedAfterApply(FailedAfterApplyException e) {
+        // La transacción pudo quedar registrada: se informa como aceptada para que no se reintente
+        log.warn("Transacción registrada con un error posterior: {}", e.getMessage());
+        return ResponseEntity
+                .status(HttpStatus.ACCEPTED)
+                .body(new TemplateResponse()
+                        .status(HttpStatus.ACCEPTED.value())
+                        .message(e.getMessage())
+                        .transactions(null));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<TemplateResponse> handleGeneralException(Exception e) {
         log.error("Error inesperado: ", e);
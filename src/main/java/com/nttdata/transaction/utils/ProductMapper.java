@@ -1,10 +1,75 @@
 package com.nttdata.transaction.utils;
 
+import com.nttdata.transaction.model.Details.CreditProduct;
+import com.nttdata.transaction.model.Details.CurrentAccount;
+import com.nttdata.transaction.model.Details.FixedTermAccount;
+import com.nttdata.transaction.model.Details.ProductDetails;
+import com.nttdata.transaction.model.Details.SavingsAccount;
+import com.nttdata.transaction.model.Dto.BankProductResponse;
+
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class ProductMapper {
 
+    /**
+     * Copia una respuesta del product-service para que quien la recibe pueda
+     * modificar sus productos sin alterar la copia compartida (caché).
+     */
+    public static BankProductResponse copyOf(BankProductResponse source) {
+        List<com.nttdata.transaction.model.Dto.BankProductDTO> products = null;
+        if (source.getProducts() != null) {
+            products = new ArrayList<>(source.getProducts().size());
+            for (com.nttdata.transaction.model.Dto.BankProductDTO product : source.getProducts()) {
+                products.add(copyOf(product));
+            }
+        }
+        return new BankProductResponse(source.getStatus(), source.getMessage(), products);
+    }
+
+    /**
+     * Copia un producto junto con sus listas y detalles, que también son mutables.
+     */
+    public static com.nttdata.transaction.model.Dto.BankProductDTO copyOf
+    (com.nttdata.transaction.model.Dto.BankProductDTO dto) {
+        return com.nttdata.transaction.model.Dto.BankProductDTO.builder()
+                .id(dto.getId())
+                .customerId(dto.getCustomerId())
+                .type(dto.getType())
+                .status(dto.getStatus())
+                .name(dto.getName())
+                .balance(dto.getBalance())
+                .holders(dto.getHolders() != null ? new ArrayList<>(dto.getHolders()) : null)
+                .signers(dto.getSigners() != null ? new ArrayList<>(dto.getSigners()) : null)
+                .details(copyOf(dto.getDetails()))
+                .build();
+    }
+
+    public static ProductDetails copyOf(ProductDetails details) {
+        if (details instanceof SavingsAccount) {
+            SavingsAccount savings = (SavingsAccount) details;
+            return new SavingsAccount(savings.getMaintenanceFee(), savings.getMonthlyLimit(),
+                    savings.getRequiredMonthlyAverageBalance(), savings.getFreeMonthlyTransactionLimit(),
+                    savings.getTransactionFee());
+        }
+        if (details instanceof CurrentAccount) {
+            CurrentAccount current = (CurrentAccount) details;
+            return new CurrentAccount(current.getMaintenanceFee(), current.getMonthlyLimit(),
+                    current.getFreeMonthlyTransactionLimit(), current.getTransactionFee());
+        }
+        if (details instanceof FixedTermAccount) {
+            FixedTermAccount fixedTerm = (FixedTermAccount) details;
+            return new FixedTermAccount(fixedTerm.getMaintenanceFee(), fixedTerm.getMonthlyLimit(),
+                    fixedTerm.getAllowedTransactionDay());
+        }
+        if (details instanceof CreditProduct) {
+            return new CreditProduct(((CreditProduct) details).getCreditLimit());
+        }
+        // Tipos desconocidos o nulos: no hay forma genérica de copiarlos
+        return details;
+    }
+
     public static List<org.openapitools.model.BankProductDTO> toOpenApiList
     (List<com.nttdata.transaction.model.Dto.BankProductDTO> sourceList) {
         return sourceList.stream()
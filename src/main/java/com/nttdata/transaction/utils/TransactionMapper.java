@@ -1,22 +1,34 @@
 package com.nttdata.transaction.utils;
 
+import com.nttdata.transaction.model.Dto.TransactionBatchItem;
+import com.nttdata.transaction.model.Dto.TransactionPage;
+import com.nttdata.transaction.model.MonthlyJobRun;
 import com.nttdata.transaction.model.Transaction;
 import com.nttdata.transaction.model.Type.TransactionType;
+import com.nttdata.transaction.utils.exceptions.EmptyResultException;
+import com.nttdata.transaction.utils.exceptions.FailedAfterApplyException;
+import com.nttdata.transaction.utils.exceptions.ServiceUnavailableException;
 import org.openapitools.model.AvailableBalanceResponse;
 import org.openapitools.model.AvailableBalanceResponseBalance;
 import org.openapitools.model.BalanceSummaryResponse;
 import org.openapitools.model.BalanceSummaryResponseBalanceSummary;
 import org.openapitools.model.CommissionReportResponse;
 import org.openapitools.model.CommissionReportResponseCommissionReport;
+import org.openapitools.model.CustomerDashboard;
+import org.openapitools.model.CustomerDashboardResponse;
+import org.openapitools.model.MonthlyTasksJob;
+import org.openapitools.model.MonthlyTasksStatusResponse;
 import org.openapitools.model.ProductConsolidatedSummaryResponse;
 import org.openapitools.model.ProductConsolidatedSummaryResponseSummary;
 import org.openapitools.model.ProductGeneralSummaryResponse;
 import org.openapitools.model.ProductGeneralSummaryResponseSummary;
 import org.openapitools.model.TemplateResponse;
+import org.openapitools.model.TransactionBatchResult;
 import org.openapitools.model.TransactionBody;
 import org.openapitools.model.TransactionResponse;
 
-import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -49,7 +61,7 @@ public class TransactionMapper {
         body.setTargetProductId(transaction.getTargetProductId());
         body.setType(transaction.getType().name());
         body.setAmount(transaction.getAmount());
-        body.setTransactionFee(BigDecimal.valueOf(transaction.getTransactionFee()));
+        body.setTransactionFee(transaction.getTransactionFee());
         body.setDateTime(transaction.getDateTime().atOffset(ZoneOffset.UTC));
         return body;
     }
@@ -78,6 +90,14 @@ public class TransactionMapper {
                 .transactions(bodyList);
     }
 
+    /**
+     * Construye una respuesta con una página de transacciones y el token de la siguiente.
+     */
+    public static TemplateResponse toResponse(TransactionPage page, int status, String message) {
+        return toResponse(page.getTransactions(), status, message)
+                .nextCursor(page.getNextCursor());
+    }
+
     /**
      * Construye una respuesta vacía (usado por ejemplo para delete o not found).
      */
@@ -88,6 +108,41 @@ public class TransactionMapper {
                 .transactions(null);
     }
 
+    /**
+     * Construye el resultado de una línea de un lote; los errores siguen los mismos códigos
+     * que el manejador global de excepciones.
+     */
+    public static TransactionBatchResult toBatchResult(TransactionBatchItem item) {
+        TransactionBatchResult result = new TransactionBatchResult().index(item.getIndex());
+        if (!item.isFailed()) {
+            return result
+                    .status(201)
+                    .message(Constants.SUCCESS_CREATE_TRANSACTION)
+                    .transaction(toTransactionResponse(item.getTransaction()));
+        }
+
+        Throwable error = item.getError();
+        if (error instanceof FailedAfterApplyException) {
+            // Registrada: se informa junto con la transacción para que no se reintente
+            return result
+                    .status(202)
+                    .message(error.getMessage())
+                    .transaction(toTransactionResponse(item.getTransaction()));
+        }
+        if (error instanceof IllegalArgumentException) {
+            return result
+                    .status(400)
+                    .message(String.format(Constants.ERROR_VALIDATION_MESSAGE, error.getMessage()));
+        }
+        if (error instanceof EmptyResultException) {
+            return result.status(404).message(error.getMessage());
+        }
+        if (error instanceof ServiceUnavailableException) {
+            return result.status(503).message(error.getMessage());
+        }
+        return result.status(500).message(Constants.ERROR_INTERNAL);
+    }
+
     public static AvailableBalanceResponse toResponseAvailableBalance(int status, String message) {
         return new AvailableBalanceResponse()
                 .status(status)
@@ -169,4 +224,56 @@ public class TransactionMapper {
                 .message(message)
                 .summary(null);
     }
+
+    public static CustomerDashboardResponse toResponseCustomerDashboard(CustomerDashboard dto,
+                                                                        int status,
+                                                                        String message) {
+        return new CustomerDashboardResponse()
+                .status(status)
+                .message(message)
+                .dashboard(dto);
+    }
+
+    public static CustomerDashboardResponse toResponseCustomerDashboard(int status, String message) {
+        return new CustomerDashboardResponse()
+                .status(status)
+                .message(message)
+                .dashboard(null);
+    }
+
+    /**
+     * Construye el estado de una ejecución mensual; el rendimiento se calcula sobre los productos
+     * atendidos desde su inicio hasta su fin o hasta ahora si sigue en curso.
+     */
+    public static MonthlyTasksStatusResponse toResponseMonthlyTasksStatus(MonthlyJobRun run,
+                                                                          int status,
+                                                                          String message) {
+        long handled = run.getProcessedProducts() + run.getSkippedProducts() + run.getFailedProducts();
+        LocalDateTime until = run.getFinishedAt() != null ? run.getFinishedAt() : LocalDateTime.now();
+        long elapsedMillis = Math.max(1L, Duration.between(run.getStartedAt(), until).toMillis());
+
+        MonthlyTasksJob job = new MonthlyTasksJob()
+                .period(run.getId())
+                .state(run.getStatus().name())
+                .totalProducts(run.getTotalProducts())
+                .processedProducts(run.getProcessedProducts())
+                .skippedProducts(run.getSkippedProducts())
+                .failedProducts(run.getFailedProducts())
+                .throughputPerSecond(handled * 1000.0 / elapsedMillis)
+                .lastError(run.getLastError())
+                .startedAt(run.getStartedAt().atOffset(ZoneOffset.UTC))
+                .finishedAt(run.getFinishedAt() != null ? run.getFinishedAt().atOffset(ZoneOffset.UTC) : null);
+
+        return new MonthlyTasksStatusResponse()
+                .status(status)
+                .message(message)
+                .job(job);
+    }
+
+    public static MonthlyTasksStatusResponse toResponseMonthlyTasksStatus(int status, String message) {
+        return new MonthlyTasksStatusResponse()
+                .status(status)
+                .message(message)
+                .job(null);
+    }
 }
\ No newline at end of file
@@ -1,30 +1,20 @@
 package com.nttdata.transaction.utils;
 
+import com.nttdata.transaction.model.Money;
 import com.nttdata.transaction.model.Type.TransactionType;
+import com.nttdata.transaction.utils.exceptions.ServiceUnavailableException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import org.openapitools.model.TransactionBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import java.math.BigDecimal;
-import java.util.function.Supplier;
 
 public class Utils {
     private static final Logger log = LoggerFactory.getLogger(Utils.class);
 
-    private static Supplier<WebClient> productService =
-            () -> WebClient.builder()
-                    .baseUrl("http://localhost:8081") // URL del customer-service
-                    .build();
-
-    public static void setProductService(Supplier<WebClient> supplier) {
-        productService = supplier;
-    }
-
-    public static Supplier<WebClient> getProductService() {
-        return productService;
-    }
-
     public static void validateTransactionBody(TransactionBody body) {
         if (body == null) {
             throw new IllegalArgumentException("El cuerpo de la transacción no puede ser nulo.");
@@ -51,5 +41,24 @@ public class Utils {
         if (body.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("El monto de la transacción debe ser mayor a 0.");
         }
+
+        // Solo el importe del cliente se rechaza con más decimales; los saldos se redondean al céntimo
+        if (!Money.hasValidScale(body.getAmount())) {
+            throw new IllegalArgumentException(String.format(Constants.ERROR_AMOUNT_SCALE,
+                    body.getAmount().toPlainString()));
+        }
+    }
+
+    /**
+     * Indica si el product-service rechazó la actualización sin aplicarla: respondió con un error 4xx
+     * o la petición no llegó a enviarse (circuito abierto o bulkhead lleno).
+     */
+    public static boolean isRejectedBeforeApply(Throwable e) {
+        if (e instanceof WebClientResponseException) {
+            return ((WebClientResponseException) e).getStatusCode().is4xxClientError();
+        }
+        return e instanceof ServiceUnavailableException
+                && (e.getCause() instanceof CallNotPermittedException
+                || e.getCause() instanceof BulkheadFullException);
     }
 }
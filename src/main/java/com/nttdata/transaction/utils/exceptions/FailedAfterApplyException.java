@@ -0,0 +1,11 @@
+package com.nttdata.transaction.utils.exceptions;
+
+/**
+ * La transacción quedó registrada, pero un paso posterior falló o no pudo confirmarse.
+ * Quien la recibe no debe reintentarla como si no se hubiera aplicado.
+ */
+public class FailedAfterApplyException extends RuntimeException {
+    public FailedAfterApplyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
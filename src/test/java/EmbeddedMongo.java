@@ -0,0 +1,72 @@
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.nttdata.transaction.config.MoneyCodecConfig;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.net.InetSocketAddress;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Mongo en memoria para pruebas: un único servidor que habla el protocolo de red, compartido por
+ * toda la ejecución. Cada llamada a {@link #template()} usa una base de datos nueva, y varias
+ * plantillas sobre la misma base simulan varias instancias del servicio.
+ *
+ * <p>No implementa explain ni todos los operadores de agregación del servidor real; las pruebas de
+ * planes de consulta usan {@link #realServer()}.</p>
+ */
+final class EmbeddedMongo {
+
+    private static MongoClient client;
+
+    private EmbeddedMongo() {
+    }
+
+    static ReactiveMongoTemplate template() {
+        return template("test-" + UUID.randomUUID());
+    }
+
+    static synchronized ReactiveMongoTemplate template(String database) {
+        if (client == null) {
+            MongoServer server = new MongoServer(new MemoryBackend());
+            InetSocketAddress address = server.bind();
+            client = MongoClients.create("mongodb://localhost:" + address.getPort());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                client.close();
+                server.shutdownNow();
+            }));
+        }
+
+        return template(client, database);
+    }
+
+    /**
+     * Plantilla sobre un Mongo real, indicado con la propiedad {@code mongo.explain.uri} o la variable
+     * {@code MONGO_EXPLAIN_URI}, para las pruebas que necesitan el planificador de consultas. Cada
+     * llamada usa una base de datos nueva.
+     */
+    static Optional<ReactiveMongoTemplate> realServer() {
+        String uri = System.getProperty("mongo.explain.uri", System.getenv("MONGO_EXPLAIN_URI"));
+        if (uri == null || uri.isBlank()) {
+            return Optional.empty();
+        }
+        return Optional.of(template(MongoClients.create(uri), "explain-" + UUID.randomUUID()));
+    }
+
+    private static ReactiveMongoTemplate template(MongoClient client, String database) {
+        MongoCustomConversions conversions = new MoneyCodecConfig().mongoCustomConversions();
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return new ReactiveMongoTemplate(new SimpleReactiveMongoDatabaseFactory(client, database), converter);
+    }
+}
@@ -0,0 +1,108 @@
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nttdata.transaction.model.Dto.BankProductDTO;
+import com.nttdata.transaction.model.Dto.BankProductResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Product-service local para pruebas: atiende GET /products/{id}, la consulta multi-id
+ * GET /products/by-ids?ids=... y la actualización por lote PUT /products/batch sin red, y registra
+ * las peticiones recibidas. El lote solo actualiza los productos conocidos y responde con ellos.
+ */
+class StubProductService implements ExchangeFunction {
+
+    private static final String PRODUCTS_PATH = "/products/";
+    private static final String BATCH_PATH = "/products/by-ids";
+    private static final String BATCH_UPDATE_PATH = "/products/batch";
+
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+    private final Map<String, BankProductDTO> products = new ConcurrentHashMap<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    StubProductService with(BankProductDTO product) {
+        products.put(product.getId(), product);
+        return this;
+    }
+
+    WebClient client() {
+        return WebClient.builder().exchangeFunction(this).build();
+    }
+
+    BankProductDTO product(String id) {
+        return products.get(id);
+    }
+
+    List<String> requests() {
+        return requests;
+    }
+
+    @Override
+    public Mono<ClientResponse> exchange(ClientRequest request) {
+        String path = request.url().getPath();
+        requests.add(request.method() + " " + path);
+
+        if (request.method() == HttpMethod.GET && path.equals(BATCH_PATH)) {
+            String ids = UriComponentsBuilder.fromUri(request.url()).build().getQueryParams().getFirst("ids");
+            return respond(Arrays.stream(ids.split(","))
+                    .map(products::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList()));
+        }
+        if (request.method() == HttpMethod.PUT && path.equals(BATCH_UPDATE_PATH)) {
+            MockClientHttpRequest body = new MockClientHttpRequest(request.method(), request.url());
+            return request.writeTo(body, ExchangeStrategies.withDefaults())
+                    .then(Mono.defer(body::getBodyAsString))
+                    .flatMap(json -> {
+                        try {
+                            BankProductDTO[] updates = mapper.readValue(json, BankProductDTO[].class);
+                            return respond(Arrays.stream(updates)
+                                    .filter(product -> products.containsKey(product.getId()))
+                                    .peek(product -> products.put(product.getId(), product))
+                                    .collect(Collectors.toList()));
+                        } catch (JsonProcessingException e) {
+                            return Mono.error(e);
+                        }
+                    });
+        }
+        if (request.method() == HttpMethod.GET && path.startsWith(PRODUCTS_PATH)) {
+            BankProductDTO product = products.get(path.substring(PRODUCTS_PATH.length()));
+            return product == null
+                    ? Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build())
+                    : respond(List.of(product));
+        }
+        return Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build());
+    }
+
+    private Mono<ClientResponse> respond(List<BankProductDTO> found) {
+        BankProductResponse response = new BankProductResponse();
+        response.setStatus(HttpStatus.OK.value());
+        response.setProducts(found);
+        try {
+            return Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(mapper.writeValueAsString(response))
+                    .build());
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+    }
+}
@@ -1,31 +1,167 @@
 
+import com.nttdata.transaction.config.CardProperties;
+import com.nttdata.transaction.config.CircuitBreakerConfigHelper;
+import com.nttdata.transaction.config.IdempotencyProperties;
+import com.nttdata.transaction.config.MoneyCodecConfig;
+import com.nttdata.transaction.config.MoneyMigrationProperties;
+import com.nttdata.transaction.config.MonthlyJobProperties;
+import com.nttdata.transaction.config.OutboxProperties;
+import com.nttdata.transaction.config.PartitionLeaseProperties;
+import com.nttdata.transaction.config.ProductBatchUpdateProperties;
+import com.nttdata.transaction.config.ProductCacheProperties;
+import com.nttdata.transaction.config.ProductLaneProperties;
+import com.nttdata.transaction.config.ProductLoaderProperties;
+import com.nttdata.transaction.config.ProductResilienceProperties;
+import com.nttdata.transaction.config.ReportSchedulerProperties;
+import com.nttdata.transaction.config.SingleFlightProperties;
+import com.nttdata.transaction.config.TransactionBatchProperties;
+import com.nttdata.transaction.config.TransactionListingProperties;
+import com.nttdata.transaction.model.Details.CreditProduct;
 import com.nttdata.transaction.model.Details.SavingsAccount;
 import com.nttdata.transaction.model.Dto.BankProductDTO;
+import com.nttdata.transaction.model.Dto.TransactionCursor;
+import com.nttdata.transaction.model.Dto.TransactionPage;
 import com.nttdata.transaction.model.Dto.BankProductResponse;
+import com.nttdata.transaction.model.Dto.ProductAverageBalance;
+import com.nttdata.transaction.model.Dto.CardProductDTO;
+import com.nttdata.transaction.model.Dto.CardProductResponse;
+import com.nttdata.transaction.model.Dto.ProductCommissionTotal;
+import com.nttdata.transaction.model.Dto.TransactionBatchItem;
+import com.nttdata.transaction.model.IdempotencyRecord;
+import com.nttdata.transaction.model.MigrationCheckpoint;
+import com.nttdata.transaction.model.Money;
+import com.nttdata.transaction.model.MonthlyJobCheckpoint;
+import com.nttdata.transaction.model.MonthlyJobRun;
+import com.nttdata.transaction.model.PartitionLease;
+import com.nttdata.transaction.model.ProductBalanceUpdate;
+import com.nttdata.transaction.model.ProductDailyStats;
+import com.nttdata.transaction.model.ProductSequence;
 import com.nttdata.transaction.model.Transaction;
+import com.nttdata.transaction.model.TransactionOutbox;
+import com.nttdata.transaction.model.Type.IdempotencyStatus;
+import com.nttdata.transaction.model.Type.MonthlyJobStatus;
+import com.nttdata.transaction.model.Type.OutboxStatus;
+import com.nttdata.transaction.model.Type.ProductStatus;
 import com.nttdata.transaction.model.Type.ProductType;
+import com.nttdata.transaction.model.Type.StalenessPolicy;
 import com.nttdata.transaction.model.Type.TransactionType;
 import com.nttdata.transaction.repository.TransactionRepository;
+import com.nttdata.transaction.repository.TransactionRepositoryCustomImpl;
+import com.nttdata.transaction.service.ProductDailyStatsService;
 import com.nttdata.transaction.service.ProductService;
+import com.nttdata.transaction.service.TransactionCounterService;
+import com.nttdata.transaction.service.TransactionOutboxService;
+import com.nttdata.transaction.service.TransactionService;
+import com.nttdata.transaction.service.impl.IdempotencyServiceImpl;
+import com.nttdata.transaction.service.impl.MoneyStorageMigrationServiceImpl;
 import com.nttdata.transaction.service.impl.MonthlyTasksServiceImpl;
+import com.nttdata.transaction.service.impl.ProductDailyStatsServiceImpl;
 import com.nttdata.transaction.service.impl.ProductServiceImpl;
 import com.nttdata.transaction.service.impl.ReportingServiceImpl;
+import com.nttdata.transaction.service.impl.TransactionCardServiceImpl;
+import com.nttdata.transaction.service.impl.TransactionCounterServiceImpl;
+import com.nttdata.transaction.service.impl.TransactionOutboxServiceImpl;
 import com.nttdata.transaction.service.impl.TransactionServiceImpl;
+import com.nttdata.transaction.support.DailyBalanceEngine;
+import com.nttdata.transaction.support.PartitionLeaseCoordinator;
+import com.nttdata.transaction.support.ProductBatchLoader;
+import com.nttdata.transaction.support.ProductLaneSequencer;
+import com.nttdata.transaction.support.ProductSnapshotCache;
+import com.nttdata.transaction.support.ReportScheduler;
+import com.nttdata.transaction.support.SingleFlight;
+import com.nttdata.transaction.support.TransactionIndexHealthIndicator;
+import com.nttdata.transaction.support.TransactionIndexManager;
+import com.nttdata.transaction.utils.Constants;
+import com.nttdata.transaction.utils.GlobalExceptionHandler;
+import com.nttdata.transaction.utils.ProductMapper;
+import com.nttdata.transaction.utils.TransactionMapper;
 import com.nttdata.transaction.utils.Utils;
+import com.nttdata.transaction.utils.exceptions.EmptyResultException;
+import com.nttdata.transaction.utils.exceptions.FailedAfterApplyException;
+import com.nttdata.transaction.utils.exceptions.ServiceUnavailableException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.openapitools.model.CommissionReportResponseCommissionReport;
+import org.openapitools.model.CustomerDashboard;
+import org.openapitools.model.TransactionBody;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypeBasedAggregationOperationContext;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -38,6 +174,16 @@ public class TransactionServiceImplTest {
     private TransactionRepository repository;
     @Mock
     private ProductServiceImpl productService;
+    @Mock
+    private TransactionCounterService counterService;
+
+    @Mock
+    private TransactionOutboxService outboxService;
+
+    @Mock
+    private ProductDailyStatsService statsService;
+
+    private ProductLaneSequencer laneSequencer;
 
     @InjectMocks
     private TransactionServiceImpl transactionService;
@@ -49,48 +195,18 @@ public class TransactionServiceImplTest {
     void setup() {
         repository = mock(TransactionRepository.class);
         productService = mock(ProductServiceImpl.class);
-        transactionService = new TransactionServiceImpl(repository, productService);
-
-        // Mock del WebClient y sus componentes
-        WebClient.RequestHeadersUriSpec uriSpec = mock(WebClient.RequestHeadersUriSpec.class);
-        WebClient.RequestHeadersSpec headersSpec = mock(WebClient.RequestHeadersSpec.class);
-        WebClient.ResponseSpec responseSpec = mock(WebClient.ResponseSpec.class);
-        WebClient.RequestBodyUriSpec bodyUriSpec = mock(WebClient.RequestBodyUriSpec.class);
-        WebClient.RequestBodySpec bodySpec = mock(WebClient.RequestBodySpec.class);
-        WebClient client = mock(WebClient.class);
-
-        // Objeto de producto simulado
-        BankProductDTO product = BankProductDTO.builder()
-                .id("prod-1")
-                .customerId("cust-1")
-                .type(ProductType.SAVINGS)
-                .name("Cuenta de Ahorro")
-                .balance(BigDecimal.valueOf(1000))
-                .details(new SavingsAccount(10.0, 10, 0.0, 0, 0.0))
-                .holders(List.of("holder1"))
-                .signers(List.of("signer1"))
-                .build();
-
-
-        // Respuesta simulada
-        BankProductResponse mockResponse = mock(BankProductResponse.class);
-        Mockito.when(mockResponse.getProducts()).thenReturn(List.of(product));
-
-        // Comportamiento del WebClient GET
-        Mockito.when(client.get()).thenReturn(uriSpec);
-        Mockito.when(uriSpec.uri(anyString(), (Object[]) any())).thenReturn(headersSpec);
-        Mockito.when(headersSpec.retrieve()).thenReturn(responseSpec);
-        Mockito.when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
-        Mockito.when(responseSpec.bodyToMono(eq(BankProductResponse.class))).thenReturn(Mono.just(mockResponse));
-
-        // Comportamiento del WebClient PUT
-        Mockito.when(client.put()).thenReturn(bodyUriSpec);
-        Mockito.when(uriSpec.uri(anyString(), (Object[]) any())).thenReturn(bodySpec);
-        Mockito.when(bodySpec.bodyValue(any())).thenReturn(headersSpec);
-        Mockito.when(responseSpec.bodyToMono(eq(BankProductResponse.class))).thenReturn(Mono.just(mockResponse));
-
-        // Inyectar mock en Utils
-        Utils.setProductService(() -> client);
+        counterService = mock(TransactionCounterService.class);
+        Mockito.when(counterService.getMonthlyCount(anyString(), any())).thenReturn(Mono.just(0L));
+        Mockito.when(counterService.increment(anyString(), any(), Mockito.anyLong())).thenReturn(Mono.empty());
+        laneSequencer = new ProductLaneSequencer(new ProductLaneProperties(), new SimpleMeterRegistry());
+        outboxService = mock(TransactionOutboxService.class);
+        statsService = mock(ProductDailyStatsService.class);
+        Mockito.when(statsService.record(any(), any())).thenReturn(Mono.empty());
+        Mockito.when(statsService.averageDailyBalance(any(), any())).thenReturn(Mono.just(BigDecimal.ZERO));
+        Mockito.when(statsService.streamMonthlyAverages(any(), any())).thenReturn(Flux.empty());
+        transactionService = new TransactionServiceImpl(repository, productService, counterService,
+                laneSequencer, outboxService, new TransactionBatchProperties(), statsService,
+                new TransactionListingProperties());
     }
 
 
@@ -115,6 +231,30 @@ public class TransactionServiceImplTest {
         StepVerifier.create(transactionService.getByProductId("prod-1")).expectNext(transaction).verifyComplete();
     }
 
+    @Test
+    void testGetPage_shouldReturnCursorOnlyWhenMoreResultsExist() {
+        LocalDateTime dateTime = LocalDateTime.of(2024, 5, 20, 10, 30);
+        Transaction first = Transaction.builder().id("a").dateTime(dateTime).build();
+        Transaction second = Transaction.builder().id("b").dateTime(dateTime).build();
+        Transaction third = Transaction.builder().id("c").dateTime(dateTime.plusMinutes(1)).build();
+        // Se pide un elemento de más para detectar la página siguiente
+        Mockito.when(repository.findPage("prod-1", null, 3)).thenReturn(Flux.just(first, second, third));
+        TransactionCursor afterSecond = new TransactionCursor(dateTime, "b");
+        Mockito.when(repository.findPage("prod-1", afterSecond, 3)).thenReturn(Flux.just(third));
+
+        TransactionPage page = transactionService.getPage("prod-1", null, 2).block();
+        assertEquals(List.of(first, second), page.getTransactions());
+        assertEquals(afterSecond, TransactionCursor.decode(page.getNextCursor()));
+
+        StepVerifier.create(transactionService.getPage("prod-1", page.getNextCursor(), 2))
+                .expectNextMatches(last -> last.getTransactions().equals(List.of(third))
+                        && last.getNextCursor() == null)
+                .verifyComplete();
+        StepVerifier.create(transactionService.getPage("prod-1", "no-es-un-cursor", 2))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+
     @Test
     void testDelete() {
         Mockito.when(repository.deleteById("123")).thenReturn(Mono.empty());
@@ -152,7 +292,8 @@ public class TransactionServiceImplTest {
         ProductService productService = Mockito.mock(ProductService.class);
 
         // Simulación de métodos del ProductService
-        Mockito.when(productService.getProductById("prod-1")).thenReturn(Mono.just(mockResponse));
+        Mockito.when(productService.getProductById("prod-1", StalenessPolicy.STRICT))
+                .thenReturn(Mono.just(mockResponse));
         Mockito.when(productService.updateProduct(any(BankProductDTO.class))).thenReturn(Mono.just(mockResponse));
 
         // Simulación del guardado de la transacción
@@ -161,7 +302,9 @@ public class TransactionServiceImplTest {
                 (anyString(), any(), any())).thenReturn(Flux.empty());
 
         // Instanciar el servicio
-        TransactionServiceImpl transactionService = new TransactionServiceImpl(repository, productService);
+        TransactionServiceImpl transactionService =
+                new TransactionServiceImpl(repository, productService, counterService, laneSequencer, outboxService,
+                        new TransactionBatchProperties(), statsService, new TransactionListingProperties());
 
         // Ejecutar y verificar
         StepVerifier.create(transactionService.create(tx))
@@ -174,6 +317,780 @@ public class TransactionServiceImplTest {
     }
 
 
+    @Test
+    void testMonthlyCounter_shouldNotLoseTransactionsSavedWhileSeeding() {
+        ReactiveMongoTemplate mongoTemplate = EmbeddedMongo.template();
+        TransactionRepository history = mock(TransactionRepository.class);
+        TransactionCounterServiceImpl counters = new TransactionCounterServiceImpl(mongoTemplate, history);
+        YearMonth month = YearMonth.now();
+        // Mientras se cuenta el historial (3 transacciones) se registra otra transacción del producto
+        Mockito.when(history.countBySourceProductIdAndDateTimeBetween(eq("prod-1"), any(), any()))
+                .thenReturn(Mono.defer(() -> counters.increment("prod-1", LocalDateTime.now(), 1)).thenReturn(3L));
+
+        StepVerifier.create(counters.getMonthlyCount("prod-1", month)).expectNext(4L).verifyComplete();
+        // El historial se suma una sola vez y los incrementos posteriores se acumulan
+        StepVerifier.create(counters.increment("prod-1", LocalDateTime.now(), 1)
+                        .then(counters.getMonthlyCount("prod-1", month)))
+                .expectNext(5L)
+                .verifyComplete();
+        Mockito.verify(history, Mockito.times(1)).countBySourceProductIdAndDateTimeBetween(any(), any(), any());
+    }
+
+    @Test
+    void testMonthlyCounter_shouldCountTransactionsFromBeforeItsCreationOnce() {
+        ReactiveMongoTemplate mongoTemplate = EmbeddedMongo.template();
+        TransactionRepository history = mock(TransactionRepository.class);
+        List<LocalDateTime> saved = new CopyOnWriteArrayList<>();
+        Mockito.when(history.countBySourceProductIdAndDateTimeBetween(eq("prod-1"), any(), any()))
+                .thenAnswer(inv -> Mono.fromSupplier(() -> saved.stream()
+                        .filter(dateTime -> !dateTime.isBefore(inv.getArgument(1))
+                                && !dateTime.isAfter(inv.getArgument(2)))
+                        .count()));
+        TransactionCounterServiceImpl counters = new TransactionCounterServiceImpl(mongoTemplate, history);
+        YearMonth month = YearMonth.now();
+
+        // Una transacción guardada antes de sembrar el contador cuyo incremento llega después
+        LocalDateTime early = LocalDateTime.now().minusSeconds(2);
+        saved.add(early);
+        StepVerifier.create(counters.getMonthlyCount("prod-1", month)).expectNext(1L).verifyComplete();
+        StepVerifier.create(counters.increment("prod-1", early, 1)).verifyComplete();
+        StepVerifier.create(counters.getMonthlyCount("prod-1", month)).expectNext(1L).verifyComplete();
+
+        // Otra instancia la guarda con una fecha anterior a la creación y la registra tras la siembra
+        LocalDateTime inFlight = early.plusSeconds(1);
+        saved.add(inFlight);
+        StepVerifier.create(counters.increment("prod-1", inFlight, 1)).verifyComplete();
+        LocalDateTime later = LocalDateTime.now();
+        saved.add(later);
+        StepVerifier.create(counters.increment("prod-1", later, 1)
+                        .then(counters.getMonthlyCount("prod-1", month)))
+                .expectNext(3L)
+                .verifyComplete();
+    }
+
+    @Test
+    void testCreate_whenMonthlyCounterReachedLimit_shouldFail() {
+        Transaction tx = Transaction.builder()
+                .sourceProductId("prod-1")
+                .type(TransactionType.DEPOSIT)
+                .amount(BigDecimal.valueOf(500))
+                .build();
+
+        BankProductDTO product = BankProductDTO.builder()
+                .id("prod-1")
+                .type(ProductType.SAVINGS)
+                .balance(BigDecimal.valueOf(1000))
+                .details(new SavingsAccount(10.0, 10, 0.0, 0, 0.0))
+                .build();
+
+        BankProductResponse mockResponse = new BankProductResponse();
+        mockResponse.setProducts(List.of(product));
+
+        // El contador materializado ya alcanzó el límite mensual (10)
+        Mockito.when(productService.getProductById("prod-1", StalenessPolicy.STRICT))
+                .thenReturn(Mono.just(mockResponse));
+        Mockito.when(counterService.getMonthlyCount(eq("prod-1"), any())).thenReturn(Mono.just(10L));
+
+        StepVerifier.create(transactionService.create(tx))
+                .expectErrorMatches(e -> e instanceof IllegalArgumentException
+                        && e.getMessage().equals(Constants.ERROR_MONTHLY_LIMIT_REACHED))
+                .verify();
+
+        // No se recorre el historial de transacciones del mes
+        Mockito.verify(repository, Mockito.never())
+                .findBySourceProductIdAndDateTimeBetween(anyString(), any(), any());
+        Mockito.verify(repository, Mockito.never()).save(any(Transaction.class));
+    }
+
+    @Test
+    void testLaneSequencer_serializesSameProductAndRunsOthersInParallel() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        Mono<Integer> sameProduct = laneSequencer.execute("prod-1", () -> Mono.fromCallable(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    return 1;
+                })
+                .delayElement(Duration.ofMillis(20))
+                .doOnNext(v -> inFlight.decrementAndGet()));
+
+        // Transferencias en sentidos opuestos no se bloquean entre sí
+        Mono<Integer> transferAb = laneSequencer.execute("prod-1", "prod-2", () -> Mono.just(2));
+        Mono<Integer> transferBa = laneSequencer.execute("prod-2", "prod-1", () -> Mono.just(3));
+
+        StepVerifier.create(Flux.merge(sameProduct, sameProduct, sameProduct, transferAb, transferBa)
+                        .reduce(0, Integer::sum))
+                .expectNext(8)
+                .verifyComplete();
+
+        assertEquals(1, maxInFlight.get());
+    }
+
+    @Test
+    void testCreate_withOutboxEnabled_shouldNotWaitForProductUpdate() {
+        Transaction tx = Transaction.builder()
+                .sourceProductId("prod-1")
+                .type(TransactionType.DEPOSIT)
+                .amount(BigDecimal.valueOf(500))
+                .build();
+
+        BankProductDTO product = BankProductDTO.builder()
+                .id("prod-1")
+                .type(ProductType.SAVINGS)
+                .balance(BigDecimal.valueOf(1000))
+                .details(new SavingsAccount(10.0, 10, 0.0, 0, 0.0))
+                .build();
+
+        BankProductResponse mockResponse = new BankProductResponse();
+        mockResponse.setProducts(List.of(product));
+
+        Mockito.when(productService.getProductById("prod-1", StalenessPolicy.STRICT))
+                .thenReturn(Mono.just(mockResponse));
+        Mockito.when(outboxService.isEnabled()).thenReturn(true);
+        // Hay un depósito previo aún no propagado: el saldo efectivo es 1200
+        Mockito.when(outboxService.withPendingBalance(any(BankProductDTO.class))).thenAnswer(invocation -> {
+            BankProductDTO source = invocation.getArgument(0);
+            source.setBalance(BigDecimal.valueOf(1200));
+            return Mono.just(source);
+        });
+        Mockito.when(outboxService.saveWithPendingBalances(any(Transaction.class), any()))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(transactionService.create(tx))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        Mockito.verify(outboxService).saveWithPendingBalances(eq(tx), Mockito.argThat(products ->
+                products.size() == 1 && products.get(0).getBalance().compareTo(BigDecimal.valueOf(1700)) == 0));
+        Mockito.verify(productService, Mockito.never()).updateProduct(any(BankProductDTO.class));
+    }
+
+    @Test
+    void testOutbox_shouldPropagateLatestBalanceByLaneSequenceNotDateTime() {
+        ReactiveMongoTemplate mongoTemplate = EmbeddedMongo.template();
+        OutboxProperties properties = new OutboxProperties();
+        properties.setEnabled(true);
+        TransactionOutboxServiceImpl outbox = new TransactionOutboxServiceImpl(mongoTemplate,
+                mongoRepository(mongoTemplate), productService, laneSequencer, properties,
+                new PartitionLeaseProperties(), new SimpleMeterRegistry());
+        BankProductDTO product = BankProductDTO.builder().id("prod-1").type(ProductType.SAVINGS)
+                .balance(BigDecimal.valueOf(1000)).build();
+
+        // create() fija dateTime antes de esperar el carril: la segunda en aplicarse tiene la hora menor
+        LocalDateTime now = LocalDateTime.now();
+        Transaction first = deposit("prod-1", 100);
+        first.setDateTime(now);
+        Transaction second = deposit("prod-1", 50);
+        second.setDateTime(now.minusSeconds(1));
+        product.setBalance(BigDecimal.valueOf(1100));
+        outbox.saveWithPendingBalances(first, List.of(ProductMapper.copyOf(product))).block();
+        product.setBalance(BigDecimal.valueOf(1150));
+        outbox.saveWithPendingBalances(second, List.of(ProductMapper.copyOf(product))).block();
+
+        StepVerifier.create(outbox.withPendingBalance(BankProductDTO.builder().id("prod-1").build()))
+                .expectNextMatches(effective -> effective.getBalance().compareTo(BigDecimal.valueOf(1150)) == 0)
+                .verifyComplete();
+
+        BankProductResponse stored = new BankProductResponse(200, "ok", List.of(BankProductDTO.builder()
+                .id("prod-1").balance(BigDecimal.valueOf(1000)).build()));
+        Mockito.when(productService.getProductById("prod-1")).thenReturn(Mono.just(stored));
+        Mockito.when(productService.updateProduct(any(BankProductDTO.class))).thenReturn(Mono.just(stored));
+        StepVerifier.create(outbox.dispatchPending())
+                .expectNext(2)
+                .verifyComplete();
+
+        Mockito.verify(productService).updateProduct(Mockito.argThat(updated ->
+                updated.getBalance().compareTo(BigDecimal.valueOf(1150)) == 0));
+        assertEquals(2L, mongoTemplate.count(Query.query(Criteria.where("outbox.status")
+                .is(OutboxStatus.DISPATCHED)), Transaction.class).block());
+    }
+
+    @Test
+    void testOutbox_shouldNotDispatchAProductReservedOrAlreadyAdvancedByAnotherInstance() {
+        ReactiveMongoTemplate mongoTemplate = EmbeddedMongo.template();
+        OutboxProperties properties = new OutboxProperties();
+        properties.setEnabled(true);
+        TransactionOutboxServiceImpl outbox = new TransactionOutboxServiceImpl(mongoTemplate,
+                mongoRepository(mongoTemplate), productService, laneSequencer, properties,
+                new PartitionLeaseProperties(), new SimpleMeterRegistry());
+        BankProductDTO product = BankProductDTO.builder().id("prod-1").type(ProductType.SAVINGS)
+                .balance(BigDecimal.valueOf(1100)).build();
+        Transaction pending = deposit("prod-1", 100);
+        pending.setDateTime(LocalDateTime.now());
+        outbox.saveWithPendingBalances(pending, List.of(product)).block();
+
+        BankProductResponse stored = new BankProductResponse(200, "ok", List.of(BankProductDTO.builder()
+                .id("prod-1").balance(BigDecimal.valueOf(1000)).build()));
+        Mockito.when(productService.getProductById("prod-1")).thenReturn(Mono.just(stored));
+        Mockito.when(productService.updateProduct(any(BankProductDTO.class))).thenReturn(Mono.just(stored));
+        Query sequence = Query.query(Criteria.where("_id").is("prod-1"));
+
+        // Otra instancia está propagando el producto: el registro queda pendiente para otro ciclo
+        mongoTemplate.updateFirst(sequence, new Update().set("dispatchOwner", "other-instance")
+                .set("dispatchUntil", LocalDateTime.now().plusMinutes(1)), ProductSequence.class).block();
+        StepVerifier.create(outbox.dispatchPending()).expectNext(1).verifyComplete();
+        Mockito.verify(productService, Mockito.never()).updateProduct(any(BankProductDTO.class));
+
+        // Ya envió un saldo posterior y liberó el producto: el pendiente se da por aplicado sin retroceder
+        mongoTemplate.updateFirst(sequence, new Update().unset("dispatchOwner").unset("dispatchUntil")
+                .set("dispatchedSequence", 5L), ProductSequence.class).block();
+        StepVerifier.create(outbox.dispatchPending()).expectNext(1).verifyComplete();
+        Mockito.verify(productService, Mockito.never()).updateProduct(any(BankProductDTO.class));
+        assertEquals(1L, mongoTemplate.count(Query.query(Criteria.where("outbox.status")
+                .is(OutboxStatus.DISPATCHED)), Transaction.class).block());
+        assertNull(mongoTemplate.findOne(sequence, ProductSequence.class).block().getDispatchOwner());
+    }
+
+    @Test
+    void testCreateBatch_shouldFetchProductOnceAndInsertInBulk() {
+        BankProductDTO product = BankProductDTO.builder()
+                .id("prod-1")
+                .type(ProductType.SAVINGS)
+                .balance(BigDecimal.valueOf(1000))
+                .details(new SavingsAccount(10.0, 10, 0.0, 0, 0.0))
+                .build();
+
+        BankProductResponse mockResponse = new BankProductResponse();
+        mockResponse.setProducts(List.of(product));
+
+        // Quedan dos movimientos disponibles en el mes: la tercera línea supera el límite
+        Mockito.when(productService.getProductById("prod-1", StalenessPolicy.STRICT))
+                .thenReturn(Mono.just(mockResponse));
+        Mockito.when(counterService.getMonthlyCount(eq("prod-1"), any())).thenReturn(Mono.just(8L));
+        Mockito.when(productService.updateProduct(any(BankProductDTO.class))).thenReturn(Mono.just(mockResponse));
+        Mockito.when(repository.insert(Mockito.<Iterable<Transaction>>any()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<Iterable<Transaction>>getArgument(0)));
+
+        Flux<TransactionBatchItem> items = Flux.just(
+                TransactionBatchItem.of(0, deposit("prod-1", 100)),
+                TransactionBatchItem.failed(1, new IllegalArgumentException("Línea inválida")),
+                TransactionBatchItem.of(2, deposit("prod-1", 200)),
+                TransactionBatchItem.of(3, deposit("prod-1", 50)));
+
+        StepVerifier.create(transactionService.createBatch(items).collectList())
+                .assertNext(results -> {
+                    assertEquals(4, results.size());
+                    assertEquals(2, results.stream().filter(item -> !item.isFailed()).count());
+                    assertEquals(Constants.ERROR_MONTHLY_LIMIT_REACHED, results.stream()
+                            .filter(item -> item.getIndex() == 3)
+                            .findFirst().orElseThrow().getError().getMessage());
+                })
+                .verifyComplete();
+
+        Mockito.verify(productService, Mockito.times(1)).getProductById("prod-1", StalenessPolicy.STRICT);
+        Mockito.verify(productService, Mockito.times(1)).updateProduct(Mockito.argThat(updated ->
+                updated.getBalance().compareTo(BigDecimal.valueOf(1300)) == 0));
+        Mockito.verify(repository, Mockito.times(1)).insert(Mockito.<Iterable<Transaction>>argThat(inserted ->
+                inserted instanceof List && ((List<Transaction>) inserted).size() == 2));
+        Mockito.verify(counterService).increment(eq("prod-1"), any(), eq(2L));
+    }
+
+    @Test
+    void testCreateBatch_shouldInsertBeforeUpdatingBalanceAndReportFailuresAfterApply() {
+        BankProductDTO product = BankProductDTO.builder()
+                .id("prod-1")
+                .type(ProductType.SAVINGS)
+                .balance(BigDecimal.valueOf(1000))
+                .details(new SavingsAccount(10.0, 10, 0.0, 10, 0.0))
+                .build();
+        Mockito.when(productService.getProductById("prod-1", StalenessPolicy.STRICT))
+                .thenAnswer(invocation -> Mono.just(new BankProductResponse(200, "ok",
+                        List.of(ProductMapper.copyOf(product)))));
+        Mockito.when(repository.insert(Mockito.<Iterable<Transaction>>any()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<Iterable<Transaction>>getArgument(0)));
+        Mockito.when(repository.deleteAllById(Mockito.<Iterable<String>>any())).thenReturn(Mono.empty());
+
+        // Inserción ordenada que falla a medias: se eliminan las ya insertadas y no se toca el saldo
+        Mockito.doReturn(Flux.error(new IllegalStateException("bulk write error")))
+                .when(repository).insert(Mockito.<Iterable<Transaction>>any());
+        List<TransactionBatchItem> notInserted = transactionService.createBatch(Flux.just(
+                TransactionBatchItem.of(0, deposit("prod-1", 100)),
+                TransactionBatchItem.of(1, deposit("prod-1", 50)))).collectList().block();
+        assertTrue(notInserted.stream().allMatch(item -> item.getError() instanceof IllegalStateException));
+        Mockito.verify(repository).deleteAllById(Mockito.<Iterable<String>>argThat(ids ->
+                ((List<String>) ids).size() == 2 && ((List<String>) ids).stream().allMatch(Objects::nonNull)));
+        Mockito.verify(productService, Mockito.never()).updateProduct(any(BankProductDTO.class));
+        Mockito.doAnswer(invocation -> Flux.fromIterable(invocation.<Iterable<Transaction>>getArgument(0)))
+                .when(repository).insert(Mockito.<Iterable<Transaction>>any());
+        Mockito.clearInvocations(repository, productService);
+
+        // 4xx: el saldo no cambió, se eliminan las transacciones insertadas y se rechazan
+        Mockito.when(productService.updateProduct(any(BankProductDTO.class))).thenReturn(Mono.error(
+                WebClientResponseException.create(409, "Conflict", HttpHeaders.EMPTY, new byte[0], null)));
+        List<TransactionBatchItem> rejected = transactionService.createBatch(
+                Flux.just(TransactionBatchItem.of(0, deposit("prod-1", 100)))).collectList().block();
+        assertTrue(rejected.get(0).getError() instanceof WebClientResponseException);
+        InOrder order = Mockito.inOrder(repository, productService);
+        order.verify(repository).insert(Mockito.<Iterable<Transaction>>any());
+        order.verify(productService).updateProduct(any(BankProductDTO.class));
+        order.verify(repository).deleteAllById(Mockito.<Iterable<String>>any());
+
+        // Sin respuesta del product-service: no se sabe si aplicó el saldo, se conservan y se informan
+        Mockito.when(productService.updateProduct(any(BankProductDTO.class))).thenReturn(Mono.error(
+                new ServiceUnavailableException(Constants.ERROR_CIRCUIT_BREAKER, new TimeoutException())));
+        List<TransactionBatchItem> unconfirmed = transactionService.createBatch(
+                Flux.just(TransactionBatchItem.of(0, deposit("prod-1", 100)))).collectList().block();
+        assertTrue(unconfirmed.get(0).getError() instanceof FailedAfterApplyException);
+        assertEquals(202, TransactionMapper.toBatchResult(unconfirmed.get(0)).getStatus());
+
+        // El saldo se aplicó y falla el contador: registradas, no rechazadas
+        Mockito.when(productService.updateProduct(any(BankProductDTO.class)))
+                .thenReturn(Mono.just(new BankProductResponse(200, "ok", List.of(product))));
+        Mockito.when(counterService.increment(anyString(), any(), Mockito.anyLong()))
+                .thenReturn(Mono.error(new IllegalStateException("mongo caído")));
+        List<TransactionBatchItem> applied = transactionService.createBatch(
+                Flux.just(TransactionBatchItem.of(0, deposit("prod-1", 100)))).collectList().block();
+        assertTrue(applied.get(0).getError() instanceof FailedAfterApplyException);
+        Mockito.verify(repository, Mockito.times(1)).deleteAllById(Mockito.<Iterable<String>>any());
+    }
+
+    @Test
+    void testCreateBatch_shouldFlushIncompleteWindowAfterTimeout() {
+        BankProductDTO product = BankProductDTO.builder()
+                .id("prod-1")
+                .type(ProductType.SAVINGS)
+                .balance(BigDecimal.valueOf(1000))
+                .details(new SavingsAccount(10.0, 10, 0.0, 10, 0.0))
+                .build();
+        Mockito.when(productService.getProductById("prod-1", StalenessPolicy.STRICT))
+                .thenReturn(Mono.just(new BankProductResponse(200, "ok", List.of(product))));
+        Mockito.when(productService.updateProduct(any(BankProductDTO.class)))
+                .thenReturn(Mono.just(new BankProductResponse(200, "ok", List.of(product))));
+        Mockito.when(repository.insert(Mockito.<Iterable<Transaction>>any()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<Iterable<Transaction>>getArgument(0)));
+
+        // Un cliente que envía una línea y deja el flujo abierto recibe su resultado sin llenar la ventana
+        StepVerifier.create(transactionService.createBatch(Flux.just(TransactionBatchItem.of(0, deposit("prod-1", 100)))
+                        .concatWith(Flux.never())))
+                .expectNextMatches(item -> !item.isFailed())
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private Transaction deposit(String productId, long amount) {
+        return Transaction.builder()
+                .sourceProductId(productId)
+                .type(TransactionType.DEPOSIT)
+                .amount(BigDecimal.valueOf(amount))
+                .build();
+    }
+
+    @Test
+    void testIdempotency_shouldCollapseConcurrentDuplicatesAndReplayStoredResult() {
+        ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        Mockito.when(mongoTemplate.insert(any(IdempotencyRecord.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        Mockito.when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1L, 1L, null)));
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IdempotencyServiceImpl idempotencyService =
+                new IdempotencyServiceImpl(mongoTemplate, new IdempotencyProperties(), registry);
+
+        Transaction request = deposit("prod-1", 100);
+        AtomicInteger executions = new AtomicInteger();
+        Mono<Transaction> operation = Mono.fromCallable(() -> {
+                    executions.incrementAndGet();
+                    request.setId("tx-1");
+                    return request;
+                })
+                .delayElement(Duration.ofMillis(50));
+
+        Mono<Transaction> call = idempotencyService.execute(Constants.IDEMPOTENCY_SCOPE_TRANSACTIONS,
+                "key-1", deposit("prod-1", 100), () -> operation);
+
+        // Dos peticiones simultáneas y un reintento posterior con la misma clave
+        StepVerifier.create(Flux.merge(call, call).then(call))
+                .expectNextMatches(result -> result.getId().equals("tx-1"))
+                .verifyComplete();
+
+        assertEquals(1, executions.get());
+        assertEquals(1.0, registry.counter("idempotency.inflight.collapsed").count());
+        assertEquals(1.0, registry.counter("idempotency.requests", "result", "cache_hit").count());
+
+        // La misma clave con otro contenido se rechaza
+        StepVerifier.create(idempotencyService.execute(Constants.IDEMPOTENCY_SCOPE_TRANSACTIONS,
+                        "key-1", deposit("prod-1", 999), () -> operation))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+
+    @Test
+    void testIdempotency_shouldKeepKeyAfterApplyAndNeverRerunAbandonedClaims() {
+        String database = "idempotency-" + UUID.randomUUID();
+        IdempotencyProperties properties = new IdempotencyProperties();
+        properties.setClaimTimeout(Duration.ofMillis(300));
+        properties.setHeartbeatInterval(Duration.ofMillis(50));
+        properties.setWaitTimeout(Duration.ofMillis(800));
+        properties.setPollInterval(Duration.ofMillis(20));
+        properties.setCompletionRetries(1);
+
+        // Falla la escritura del resultado: la operación ya se aplicó, la clave no se libera
+        ReactiveMongoTemplate failingTemplate = Mockito.spy(EmbeddedMongo.template(database));
+        Mockito.doReturn(Mono.error(new IllegalStateException("mongo caído")))
+                .when(failingTemplate).updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class));
+        IdempotencyServiceImpl failing =
+                new IdempotencyServiceImpl(failingTemplate, properties, new SimpleMeterRegistry());
+        AtomicInteger executions = new AtomicInteger();
+        Supplier<Mono<Transaction>> operation = () -> Mono.fromCallable(() -> {
+            executions.incrementAndGet();
+            Transaction result = deposit("prod-1", 100);
+            result.setId("tx-1");
+            return result;
+        });
+
+        StepVerifier.create(failing.execute(Constants.IDEMPOTENCY_SCOPE_TRANSACTIONS, "key-1",
+                        deposit("prod-1", 100), operation).then(failing.execute(
+                        Constants.IDEMPOTENCY_SCOPE_TRANSACTIONS, "key-1", deposit("prod-1", 100), operation)))
+                .expectNextMatches(result -> result.getId().equals("tx-1"))
+                .verifyComplete();
+        assertEquals(1, executions.get());
+        ReactiveMongoTemplate mongoTemplate = EmbeddedMongo.template(database);
+        String id = IdempotencyRecord.buildId(Constants.IDEMPOTENCY_SCOPE_TRANSACTIONS, "key-1");
+        assertEquals(IdempotencyStatus.IN_PROGRESS,
+                mongoTemplate.findById(id, IdempotencyRecord.class).block().getStatus());
+
+        // Una ejecución larga renueva su reserva: otra instancia espera sin volver a ejecutarla
+        IdempotencyServiceImpl stuck = new IdempotencyServiceImpl(mongoTemplate, properties, new SimpleMeterRegistry());
+        IdempotencyServiceImpl other = new IdempotencyServiceImpl(mongoTemplate, properties, new SimpleMeterRegistry());
+        Sinks.One<Transaction> stuckOperation = Sinks.one();
+        Disposable stuckCall = stuck.execute(Constants.IDEMPOTENCY_SCOPE_TRANSACTIONS, "key-2",
+                deposit("prod-1", 100), stuckOperation::asMono).subscribe(result -> { }, e -> { });
+        StepVerifier.create(other.execute(Constants.IDEMPOTENCY_SCOPE_TRANSACTIONS, "key-2",
+                        deposit("prod-1", 100), operation))
+                .expectErrorMatches(e -> e instanceof ServiceUnavailableException)
+                .verify();
+        assertEquals(1, executions.get());
+
+        stuckOperation.tryEmitError(new IllegalStateException("timeout"));
+        stuckCall.dispose();
+
+        // Una instancia detenida deja de renovar su reserva: la clave pasa a UNKNOWN y no se vuelve a ejecutar
+        IdempotencyProperties stoppedProperties = new IdempotencyProperties();
+        stoppedProperties.setHeartbeatInterval(Duration.ofHours(1));
+        IdempotencyServiceImpl stopped =
+                new IdempotencyServiceImpl(mongoTemplate, stoppedProperties, new SimpleMeterRegistry());
+        Disposable stoppedCall = stopped.execute(Constants.IDEMPOTENCY_SCOPE_TRANSACTIONS, "key-5",
+                deposit("prod-1", 100), Mono::never).subscribe(result -> { }, e -> { });
+        StepVerifier.create(other.execute(Constants.IDEMPOTENCY_SCOPE_TRANSACTIONS, "key-5",
+                        deposit("prod-1", 100), operation))
+                .expectErrorMatches(e -> e instanceof FailedAfterApplyException
+                        && e.getMessage().equals(Constants.ERROR_IDEMPOTENCY_UNKNOWN))
+                .verify();
+        stoppedCall.dispose();
+        assertEquals(1, executions.get());
+        assertEquals(IdempotencyStatus.UNKNOWN, mongoTemplate.findById(
+                IdempotencyRecord.buildId(Constants.IDEMPOTENCY_SCOPE_TRANSACTIONS, "key-5"),
+                IdempotencyRecord.class).block().getStatus());
+
+        // Un fallo posterior a aplicar la operación conserva la clave; un rechazo previo la libera
+        AtomicInteger attempts = new AtomicInteger();
+        Supplier<Mono<Transaction>> appliedThenFailed = () -> Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new FailedAfterApplyException("contador no actualizado", null));
+        });
+        Supplier<Mono<Transaction>> rejected = () -> Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new IllegalArgumentException(Constants.ERROR_INSUFFICIENT_FUNDS));
+        });
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(other.execute(Constants.IDEMPOTENCY_SCOPE_TRANSACTIONS, "key-3",
+                            deposit("prod-1", 100), appliedThenFailed))
+                    .expectErrorMatches(e -> e instanceof FailedAfterApplyException
+                            && e.getMessage().equals("contador no actualizado"))
+                    .verify();
+            StepVerifier.create(stuck.execute(Constants.IDEMPOTENCY_SCOPE_TRANSACTIONS, "key-4",
+                            deposit("prod-1", 100), rejected))
+                    .expectError(IllegalArgumentException.class)
+                    .verify();
+        }
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void testProcessCardTransaction_shouldProbeInParallelAndReuseOnlyReadsFromThisRequest() {
+        CardProductDTO card = CardProductDTO.builder()
+                .id("card-1")
+                .primaryAccountId("acc-1")
+                .linkedAccountIds(List.of("acc-1", "acc-2", "acc-3"))
+                .active(true)
+                .build();
+        Mockito.when(productService.getCardById("card-1"))
+                .thenReturn(Mono.just(new CardProductResponse(200, "ok", List.of(card))));
+
+        // La cuenta principal no tiene saldo; la segunda sí; la tercera no responde
+        AtomicInteger cancelled = new AtomicInteger();
+        Mockito.when(productService.getProductById("acc-1", StalenessPolicy.LOOKUP))
+                .thenReturn(Mono.just(accountResponse("acc-1", 10)).delayElement(Duration.ofMillis(30)));
+        Mockito.when(productService.getProductById("acc-2", StalenessPolicy.LOOKUP))
+                .thenReturn(Mono.just(accountResponse("acc-2", 1000)));
+        Mockito.when(productService.getProductById("acc-3", StalenessPolicy.LOOKUP))
+                .thenReturn(Mono.<BankProductResponse>never().doOnCancel(cancelled::incrementAndGet));
+
+        TransactionService cardTransactionService = mock(TransactionService.class);
+        Mockito.when(cardTransactionService.create(any(Transaction.class), any(Instant.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        TransactionCardServiceImpl cardService =
+                new TransactionCardServiceImpl(productService, cardTransactionService, new CardProperties());
+
+        Transaction tx = Transaction.builder()
+                .sourceProductId("card-1")
+                .type(TransactionType.WITHDRAWAL)
+                .amount(BigDecimal.valueOf(100))
+                .build();
+
+        Instant beforeRequest = Instant.now();
+        StepVerifier.create(cardService.processCardTransaction(tx))
+                .expectNextMatches(result -> result.getSourceProductId().equals("acc-2"))
+                .verifyComplete();
+
+        // Las cuentas se consultan a la vez y la pendiente se cancela; el cargo solo reutiliza
+        // lecturas hechas desde el inicio de esta petición
+        assertEquals(1, cancelled.get());
+        Mockito.verify(cardTransactionService).create(
+                Mockito.argThat(created -> created.getSourceProductId().equals("acc-2")),
+                Mockito.argThat(since -> !since.isBefore(beforeRequest)));
+
+        // Dentro del carril el débito pide el producto con ese instante, nunca una copia arbitraria de la caché
+        Instant requestStart = Instant.now();
+        BankProductResponse account = accountResponse("acc-2", 1000);
+        account.getProducts().get(0).setDetails(new SavingsAccount(0.0, 10, 0.0, 10, 0.0));
+        Mockito.when(productService.getProductById("acc-2", requestStart)).thenReturn(Mono.just(account));
+        Mockito.when(productService.updateProduct(any(BankProductDTO.class))).thenReturn(Mono.just(account));
+        Mockito.when(repository.save(any(Transaction.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        Transaction debit = Transaction.builder()
+                .sourceProductId("acc-2")
+                .type(TransactionType.WITHDRAWAL)
+                .amount(BigDecimal.valueOf(100))
+                .build();
+        StepVerifier.create(transactionService.create(debit, requestStart))
+                .expectNextCount(1)
+                .verifyComplete();
+        Mockito.verify(productService).getProductById("acc-2", requestStart);
+        Mockito.verify(productService, Mockito.never()).getProductById("acc-2", StalenessPolicy.STRICT);
+    }
+
+    private TransactionRepository mongoRepository(ReactiveMongoTemplate mongoTemplate) {
+        return new ReactiveMongoRepositoryFactory(mongoTemplate).getRepository(TransactionRepository.class,
+                RepositoryComposition.RepositoryFragments.just(new TransactionRepositoryCustomImpl(mongoTemplate)));
+    }
+
+    private BankProductResponse accountResponse(String id, long balance) {
+        BankProductDTO account = BankProductDTO.builder()
+                .id(id)
+                .type(ProductType.SAVINGS)
+                .balance(BigDecimal.valueOf(balance))
+                .build();
+        BankProductResponse response = new BankProductResponse();
+        response.setProducts(List.of(account));
+        return response;
+    }
+
+    @Test
+    void testProductService_withStubClient_shouldReuseCachedSnapshot() {
+        // Cliente de prueba: responde sin red y cuenta las llamadas al product-service
+        AtomicInteger calls = new AtomicInteger();
+        WebClient stubClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    calls.incrementAndGet();
+                    return Mono.just(ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body("{\"status\":200,\"products\":[{\"id\":\"prod-1\",\"balance\":850}]}")
+                            .build());
+                })
+                .build();
+
+        ProductServiceImpl realProductService = new ProductServiceImpl(stubClient,
+                new ProductSnapshotCache(new ProductCacheProperties(), new SimpleMeterRegistry()),
+                new CircuitBreakerConfigHelper(new ProductResilienceProperties(), new SimpleMeterRegistry()),
+                new SingleFlight(new SingleFlightProperties(), new SimpleMeterRegistry()),
+                disabledLoader(stubClient), new ProductBatchUpdateProperties());
+
+        StepVerifier.create(realProductService.getProductById("prod-1")
+                        .then(realProductService.getProductById("prod-1", StalenessPolicy.LOOKUP)))
+                .expectNextMatches(response ->
+                        response.getProducts().get(0).getBalance().compareTo(BigDecimal.valueOf(850)) == 0)
+                .verifyComplete();
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testProductSnapshotCache_shouldDeepCopyAndReuseOnlySnapshotsObservedByTheRequest() {
+        ProductSnapshotCache cache = new ProductSnapshotCache(new ProductCacheProperties(), new SimpleMeterRegistry());
+        BankProductDTO cached = BankProductDTO.builder()
+                .id("prod-1")
+                .balance(BigDecimal.valueOf(850))
+                .holders(new ArrayList<>(List.of("cust-1")))
+                .details(SavingsAccount.builder().maintenanceFee(5.0).build())
+                .build();
+        Instant beforePut = Instant.now();
+        cache.put(new BankProductResponse(200, "ok", List.of(cached)));
+
+        // Quien recibe una copia puede modificar listas y detalles sin alterar la caché
+        BankProductDTO copy = cache.get("prod-1", StalenessPolicy.LOOKUP).orElseThrow().getProducts().get(0);
+        copy.getHolders().add("cust-2");
+        ((SavingsAccount) copy.getDetails()).setMaintenanceFee(99.0);
+        BankProductDTO again = cache.get("prod-1", StalenessPolicy.LOOKUP).orElseThrow().getProducts().get(0);
+        assertEquals(List.of("cust-1"), again.getHolders());
+        assertEquals(5.0, ((SavingsAccount) again.getDetails()).getMaintenanceFee());
+
+        // Solo se reutiliza una copia obtenida después del instante pedido
+        assertTrue(cache.getObservedSince("prod-1", beforePut).isPresent());
+        assertTrue(cache.getObservedSince("prod-1", Instant.now().plusSeconds(1)).isEmpty());
+
+        // Una lectura iniciada antes de una escritura fallida no vuelve a guardar el estado previo
+        Instant readStart = Instant.now().minusMillis(1);
+        cache.invalidate("prod-1");
+        cache.put(new BankProductResponse(200, "ok", List.of(cached)), readStart);
+        assertTrue(cache.get("prod-1", StalenessPolicy.LOOKUP).isEmpty());
+        assertTrue(cache.getObservedSince("prod-1", readStart).isEmpty());
+        cache.put(new BankProductResponse(200, "ok", List.of(cached)));
+        assertTrue(cache.get("prod-1", StalenessPolicy.LOOKUP).isPresent());
+
+        AtomicInteger calls = new AtomicInteger();
+        WebClient stubClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    calls.incrementAndGet();
+                    return Mono.just(ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body("{\"status\":200,\"products\":[{\"id\":\"prod-2\",\"balance\":850}]}")
+                            .build());
+                })
+                .build();
+        ProductServiceImpl realProductService = new ProductServiceImpl(stubClient,
+                new ProductSnapshotCache(new ProductCacheProperties(), new SimpleMeterRegistry()),
+                new CircuitBreakerConfigHelper(new ProductResilienceProperties(), new SimpleMeterRegistry()),
+                new SingleFlight(new SingleFlightProperties(), new SimpleMeterRegistry()),
+                disabledLoader(stubClient), new ProductBatchUpdateProperties());
+
+        Instant requestStart = Instant.now();
+        StepVerifier.create(realProductService.getProductById("prod-2", StalenessPolicy.LOOKUP)
+                        .then(realProductService.getProductById("prod-2", requestStart)))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, calls.get());
+
+        StepVerifier.create(realProductService.getProductById("prod-2", Instant.now().plusSeconds(1)))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testProductService_shouldRetryTransientErrorsAndFailFastWhenCircuitIsOpen() {
+        // Primera respuesta 503, luego 200
+        AtomicInteger calls = new AtomicInteger();
+        WebClient stubClient = WebClient.builder()
+                .exchangeFunction(request -> Mono.just(calls.incrementAndGet() == 1
+                        ? ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build()
+                        : ClientResponse.create(HttpStatus.OK)
+                                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .body("{\"status\":200,\"products\":[{\"id\":\"prod-1\",\"balance\":850}]}")
+                                .build()))
+                .build();
+
+        ProductResilienceProperties resilienceProperties = new ProductResilienceProperties();
+        resilienceProperties.getRetry().setMinBackoff(Duration.ofMillis(1));
+        CircuitBreakerConfigHelper resilience =
+                new CircuitBreakerConfigHelper(resilienceProperties, new SimpleMeterRegistry());
+        ProductServiceImpl realProductService = new ProductServiceImpl(stubClient,
+                new ProductSnapshotCache(new ProductCacheProperties(), new SimpleMeterRegistry()), resilience,
+                new SingleFlight(new SingleFlightProperties(), new SimpleMeterRegistry()),
+                disabledLoader(stubClient), new ProductBatchUpdateProperties());
+
+        StepVerifier.create(realProductService.getProductById("prod-1"))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(2, calls.get());
+
+        // Con el circuito abierto no se llama al servicio y se responde 503
+        resilience.getCircuitBreaker().transitionToOpenState();
+        StepVerifier.create(realProductService.getProductById("prod-1"))
+                .expectErrorMatches(e -> e instanceof ServiceUnavailableException
+                        && e.getMessage().equals(Constants.ERROR_PRODUCT_SERVICE_UNAVAILABLE))
+                .verify();
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testProductService_shouldCoalesceConcurrentLookups() {
+        AtomicInteger calls = new AtomicInteger();
+        WebClient stubClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    calls.incrementAndGet();
+                    return Mono.just(ClientResponse.create(HttpStatus.OK)
+                                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                    .body("{\"status\":200,\"products\":[{\"id\":\"prod-1\",\"balance\":850}]}")
+                                    .build())
+                            .delayElement(Duration.ofMillis(50));
+                })
+                .build();
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ProductServiceImpl realProductService = new ProductServiceImpl(stubClient,
+                new ProductSnapshotCache(new ProductCacheProperties(), new SimpleMeterRegistry()),
+                new CircuitBreakerConfigHelper(new ProductResilienceProperties(), new SimpleMeterRegistry()),
+                new SingleFlight(new SingleFlightProperties(), registry), disabledLoader(stubClient),
+                new ProductBatchUpdateProperties());
+
+        // Tres lecturas simultáneas del mismo producto: una sola llamada y una copia por suscriptor
+        Mono<BankProductResponse> lookup = realProductService.getProductById("prod-1");
+        StepVerifier.create(Flux.merge(lookup, lookup, lookup).collectList())
+                .assertNext(responses -> {
+                    assertEquals(3, responses.size());
+                    assertEquals(3, responses.stream().map(r -> r.getProducts().get(0))
+                            .map(System::identityHashCode).distinct().count());
+                })
+                .verifyComplete();
+
+        assertEquals(1, calls.get());
+        assertEquals(2.0, registry.counter("product.singleflight.calls", "result", "collapsed").count());
+    }
+
+    @Test
+    void testProductService_withBatchLoader_shouldFetchDifferentIdsInOneRequest() {
+        StubProductService stub = new StubProductService()
+                .with(BankProductDTO.builder().id("prod-1").balance(BigDecimal.valueOf(100)).build())
+                .with(BankProductDTO.builder().id("prod-2").balance(BigDecimal.valueOf(200)).build());
+        WebClient stubClient = stub.client();
+
+        ProductLoaderProperties loaderProperties = new ProductLoaderProperties();
+        loaderProperties.setEnabled(true);
+        loaderProperties.setWindow(Duration.ofMillis(50));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CircuitBreakerConfigHelper resilience =
+                new CircuitBreakerConfigHelper(new ProductResilienceProperties(), new SimpleMeterRegistry());
+        ProductServiceImpl realProductService = new ProductServiceImpl(stubClient,
+                new ProductSnapshotCache(new ProductCacheProperties(), new SimpleMeterRegistry()), resilience,
+                new SingleFlight(new SingleFlightProperties(), new SimpleMeterRegistry()),
+                new ProductBatchLoader(stubClient, resilience, loaderProperties, registry),
+                new ProductBatchUpdateProperties());
+
+        // Consultas simultáneas de productos distintos: una sola petición multi-id
+        StepVerifier.create(Flux.merge(realProductService.getProductById("prod-1"),
+                                realProductService.getProductById("prod-2"))
+                        .map(response -> response.getProducts().get(0).getId())
+                        .collectList())
+                .assertNext(ids -> assertEquals(2, ids.stream().distinct().count()))
+                .verifyComplete();
+        assertEquals(List.of("GET /products/by-ids"), stub.requests());
+        assertEquals(2.0, registry.summary("product.loader.batch.size").totalAmount());
+
+        // Un id ausente en la respuesta se informa como producto no encontrado
+        StepVerifier.create(realProductService.getProductById("prod-3"))
+                .expectError(EmptyResultException.class)
+                .verify();
+    }
+
+    private ProductBatchLoader disabledLoader(WebClient client) {
+        return new ProductBatchLoader(client,
+                new CircuitBreakerConfigHelper(new ProductResilienceProperties(), new SimpleMeterRegistry()),
+                new ProductLoaderProperties(), new SimpleMeterRegistry());
+    }
+
     @Test
     void testUpdate() {
         Transaction original = Transaction.builder()
@@ -201,10 +1118,12 @@ public class TransactionServiceImplTest {
 
         // Mock del ProductService
         ProductService productService = Mockito.mock(ProductService.class);
-        Mockito.when(productService.getProductById("prod-1")).thenReturn(Mono.just(mockResponse));
+        Mockito.when(productService.getProductById("prod-1", StalenessPolicy.REPORT))
+                .thenReturn(Mono.just(mockResponse));
 
         // Crear instancia del servicio que se está probando (TransactionServiceImpl)
-        ReportingServiceImpl reportingService = new ReportingServiceImpl(repository, productService);
+        ReportingServiceImpl reportingService = new ReportingServiceImpl(repository, productService, statsService,
+                reportScheduler());
 
         // Verificar resultado
         StepVerifier.create(reportingService.generateReportAvailableBalance("prod-1"))
@@ -216,10 +1135,447 @@ public class TransactionServiceImplTest {
                 .verifyComplete();
     }
 
+    @Test
+    void testGenerateCommissionReports_shouldUseServerSideAggregation() {
+        BankProductDTO product = BankProductDTO.builder().id("prod-1").type(ProductType.SAVINGS).build();
+        BankProductResponse mockResponse = new BankProductResponse();
+        mockResponse.setProducts(List.of(product));
+
+        ProductService productService = Mockito.mock(ProductService.class);
+        Mockito.when(productService.getProductByCustomerId("cust-1")).thenReturn(Mono.just(mockResponse));
+        Mockito.when(repository.sumCommissionsByProduct(eq(Set.of("prod-1")), any(), any()))
+                .thenReturn(Flux.just(new ProductCommissionTotal("prod-1", 3, 450)));
+
+        ReportingServiceImpl reportingService = new ReportingServiceImpl(repository, productService, statsService,
+                reportScheduler());
+        OffsetDateTime now = OffsetDateTime.now();
+
+        StepVerifier.create(reportingService.generateCommissionReports("cust-1", now.minusDays(30), now))
+                .expectNextMatches(report -> report.getProductId().equals("prod-1")
+                        && report.getProductType().equals("SAVINGS")
+                        && report.getTotalTransactions() == 3
+                        && report.getTotalFee().compareTo(BigDecimal.valueOf(4.5)) == 0)
+                .verifyComplete();
+        Mockito.verify(repository, Mockito.never()).findByDateTimeBetween(any(), any());
+    }
+
+    @Test
+    void testSumCommissionsByProduct_shouldSumExactCents() {
+        ReactiveMongoTemplate mongoTemplate = EmbeddedMongo.template();
+        LocalDateTime now = LocalDateTime.now();
+        // En coma flotante 0.1 + 0.1 + 0.1 + 0.2 = 0.5000000000000001; los medios céntimos suben como en Money.of
+        List<BigDecimal> fees = Stream.of("0.1", "0.1", "0.1", "0.2", "1.005", "0.125", "0")
+                .map(BigDecimal::new)
+                .collect(Collectors.toList());
+        Flux.fromIterable(fees)
+                .map(fee -> Transaction.builder().sourceProductId("prod-1").type(TransactionType.WITHDRAWAL)
+                        .amount(BigDecimal.TEN).transactionFee(fee).dateTime(now).build())
+                .concatMap(mongoTemplate::insert)
+                .blockLast();
+        ProductCommissionTotal expected = new ProductCommissionTotal("prod-1", 0L, 0L);
+        fees.stream().filter(fee -> fee.signum() > 0).forEach(expected::add);
+
+        StepVerifier.create(new TransactionRepositoryCustomImpl(mongoTemplate)
+                        .sumCommissionsByProduct(Set.of("prod-1"), now.minusDays(1), now.plusDays(1)))
+                .expectNextMatches(total -> total.getTotalTransactions() == 6
+                        && total.getTotalFee().equals(new BigDecimal("1.64"))
+                        && total.equals(expected))
+                .verifyComplete();
+    }
+
+    @Test
+    void testGenerateGeneralProductSummary_shouldKeepOnlyActiveProducts() {
+        BankProductResponse mockResponse = new BankProductResponse();
+        mockResponse.setProducts(List.of(
+                BankProductDTO.builder().id("prod-1").type(ProductType.SAVINGS).status(ProductStatus.ACTIVE).build(),
+                BankProductDTO.builder().id("prod-2").type(ProductType.CURRENT).status(ProductStatus.ACTIVE).build()));
+
+        ProductService productService = Mockito.mock(ProductService.class);
+        Mockito.when(productService.getProductByCustomerId("cust-1")).thenReturn(Mono.just(mockResponse));
+        Mockito.when(repository.findActiveProductIds(eq(List.of("prod-1", "prod-2")), any(), any()))
+                .thenReturn(Flux.just("prod-2"));
+
+        ReportingServiceImpl reportingService = new ReportingServiceImpl(repository, productService, statsService,
+                reportScheduler());
+        OffsetDateTime now = OffsetDateTime.now();
+
+        StepVerifier.create(reportingService.generateGeneralProductSummary("cust-1", now.minusDays(30), now))
+                .expectNextMatches(summary -> summary.getProducts().size() == 1
+                        && summary.getProducts().get(0).getId().equals("prod-2"))
+                .verifyComplete();
+    }
+
+    @Test
+    void testGenerateCustomerDashboard_shouldBuildAllReportsFromOneScan() {
+        BankProductDTO savings = BankProductDTO.builder().id("prod-1").type(ProductType.SAVINGS)
+                .status(ProductStatus.ACTIVE).balance(BigDecimal.valueOf(500)).build();
+        BankProductDTO credit = BankProductDTO.builder().id("prod-2").type(ProductType.CREDIT)
+                .status(ProductStatus.ACTIVE).balance(BigDecimal.valueOf(300))
+                .details(new CreditProduct(BigDecimal.valueOf(1000))).build();
+        BankProductDTO idle = BankProductDTO.builder().id("prod-3").type(ProductType.CURRENT)
+                .status(ProductStatus.ACTIVE).balance(BigDecimal.TEN).build();
+        BankProductResponse mockResponse = new BankProductResponse();
+        mockResponse.setProducts(List.of(savings, credit, idle));
+
+        ProductService productService = Mockito.mock(ProductService.class);
+        Mockito.when(productService.getProductByCustomerId("cust-1")).thenReturn(Mono.just(mockResponse));
+        Mockito.when(repository.findReportableByProducts(eq(Set.of("prod-1", "prod-2", "prod-3")), any(), any()))
+                .thenReturn(Flux.just(
+                        Transaction.builder().sourceProductId("prod-2").transactionFee(BigDecimal.valueOf(2)).build(),
+                        Transaction.builder().sourceProductId("prod-1").transactionFee(BigDecimal.valueOf(1.5)).build(),
+                        Transaction.builder().sourceProductId("prod-1").transactionFee(BigDecimal.ZERO).build(),
+                        Transaction.builder().sourceProductId("other").targetProductId("prod-2").build()));
+        Mockito.when(statsService.averageDailyBalances(any(), any()))
+                .thenReturn(Mono.just(Map.of("prod-1", BigDecimal.valueOf(450), "prod-2", BigDecimal.valueOf(250),
+                        "prod-3", BigDecimal.TEN)));
+
+        ReportingServiceImpl reportingService = new ReportingServiceImpl(repository, productService, statsService,
+                reportScheduler());
+        OffsetDateTime now = OffsetDateTime.now();
+
+        CustomerDashboard dashboard = reportingService.generateCustomerDashboard("cust-1", now.minusDays(30), now)
+                .block();
+        assertEquals(List.of("prod-1", "prod-2"), dashboard.getGeneralSummary().getProducts().stream()
+                .map(product -> product.getId()).collect(Collectors.toList()));
+        assertEquals(3, dashboard.getConsolidatedSummary().getProducts().size());
+        assertEquals(BigDecimal.valueOf(700), dashboard.getAvailableBalances().get(1).getAvailableBalance());
+        assertEquals(BigDecimal.valueOf(450),
+                dashboard.getBalanceSummary().getProducts().get(0).getAverageDailyBalance());
+        // Mismo orden y totales que la agregación del reporte de comisiones
+        assertEquals(List.of("prod-1", "prod-2"), dashboard.getCommissions().stream()
+                .map(CommissionReportResponseCommissionReport::getProductId).collect(Collectors.toList()));
+        assertEquals(1, dashboard.getCommissions().get(0).getTotalTransactions());
+        assertEquals(0, dashboard.getCommissions().get(1).getTotalFee().compareTo(BigDecimal.valueOf(2.0)));
+
+        Mockito.verify(productService, Mockito.times(1)).getProductByCustomerId("cust-1");
+        Mockito.verify(repository, Mockito.never()).sumCommissionsByProduct(any(), any(), any());
+        Mockito.verify(repository, Mockito.never()).findActiveProductIds(any(), any(), any());
+    }
+
+    @Test
+    void testCustomerDashboard_shouldReportTheSameCommissionsAsTheCommissionReport() {
+        ReactiveMongoTemplate mongoTemplate = EmbeddedMongo.template();
+        TransactionRepository mongoRepository = mongoRepository(mongoTemplate);
+        LocalDateTime now = LocalDateTime.now();
+        // Comisiones con error de coma flotante y medios céntimos, guardadas como las cobra el servicio
+        Map<String, List<Double>> fees = Map.of(
+                "prod-1", List.of(0.1, 0.1, 0.1, 0.2, 1.005, 0.125),
+                "prod-2", List.of(2.675, 0.0));
+        Flux.fromIterable(fees.entrySet())
+                .flatMapIterable(entry -> entry.getValue().stream()
+                        .map(fee -> Transaction.builder().sourceProductId(entry.getKey())
+                                .type(TransactionType.WITHDRAWAL).amount(BigDecimal.TEN)
+                                .transactionFee(Money.of(fee).toBigDecimal()).dateTime(now).build())
+                        .collect(Collectors.toList()))
+                .concatMap(mongoTemplate::insert)
+                .blockLast();
+
+        BankProductResponse products = new BankProductResponse(200, "ok", List.of(
+                BankProductDTO.builder().id("prod-1").type(ProductType.SAVINGS).status(ProductStatus.ACTIVE)
+                        .balance(BigDecimal.TEN).build(),
+                BankProductDTO.builder().id("prod-2").type(ProductType.CURRENT).status(ProductStatus.ACTIVE)
+                        .balance(BigDecimal.TEN).build()));
+        ProductService productService = Mockito.mock(ProductService.class);
+        Mockito.when(productService.getProductByCustomerId("cust-1")).thenReturn(Mono.just(products));
+        Mockito.when(statsService.averageDailyBalances(any(), any())).thenReturn(Mono.just(Map.of()));
+        ReportingServiceImpl reportingService = new ReportingServiceImpl(mongoRepository, productService,
+                statsService, reportScheduler());
+        OffsetDateTime end = OffsetDateTime.now().plusDays(1);
+
+        List<CommissionReportResponseCommissionReport> report = reportingService
+                .generateCommissionReports("cust-1", end.minusDays(2), end).collectList().block();
+        List<CommissionReportResponseCommissionReport> dashboard = reportingService
+                .generateCustomerDashboard("cust-1", end.minusDays(2), end).block().getCommissions();
+
+        assertEquals(new BigDecimal("1.64"), report.get(0).getTotalFee());
+        assertEquals(report, dashboard);
+    }
+
+    @Test
+    void testTransactionIndexes_shouldCreateDeclaredIndexesAndFailReadinessWhenOneIsDropped() {
+        ReactiveMongoTemplate mongoTemplate = EmbeddedMongo.template();
+        TransactionIndexManager indexManager = new TransactionIndexManager(mongoTemplate,
+                (MongoMappingContext) mongoTemplate.getConverter().getMappingContext());
+
+        StepVerifier.create(indexManager.createIndexes().then(indexManager.findMissingIndexes()))
+                .expectNext(List.of())
+                .verifyComplete();
+
+        mongoTemplate.indexOps(Transaction.class).dropIndex("target_dateTime").block();
+        StepVerifier.create(new TransactionIndexHealthIndicator(indexManager).health())
+                .expectNextMatches(health -> health.getStatus().equals(Status.DOWN)
+                        && health.getDetails().get("missingIndexes").equals(List.of("target_dateTime")))
+                .verifyComplete();
+    }
+
+    /**
+     * Ejecuta explain sobre las consultas frecuentes tal como las construye el código. Necesita un Mongo
+     * real (-Dmongo.explain.uri=mongodb://...): el embebido no implementa el planificador.
+     */
+    @Test
+    void testTransactionIndexes_hotQueriesShouldUseIndexScans() {
+        Optional<ReactiveMongoTemplate> server = EmbeddedMongo.realServer();
+        Assumptions.assumeTrue(server.isPresent(), "Sin Mongo real para explain (mongo.explain.uri)");
+        ReactiveMongoTemplate mongoTemplate = Mockito.spy(server.get());
+        MongoMappingContext mappingContext = (MongoMappingContext) mongoTemplate.getConverter().getMappingContext();
+        new TransactionIndexManager(mongoTemplate, mappingContext).createIndexes().block();
+
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        List<Transaction> history = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Transaction tx = Transaction.builder().sourceProductId("prod-" + i % 20).targetProductId("prod-" + i % 7)
+                    .type(TransactionType.TRANSFER).amount(BigDecimal.TEN).dateTime(now.minusMinutes(i)).build();
+            if (i % 50 == 0) {
+                tx.setOutbox(TransactionOutbox.builder().status(OutboxStatus.PENDING)
+                        .pendingProductIds(List.of(tx.getSourceProductId()))
+                        .updates(List.of(new ProductBalanceUpdate(tx.getSourceProductId(), BigDecimal.ONE, 1L)))
+                        .build());
+            }
+            history.add(tx);
+        }
+        mongoTemplate.insertAll(history).blockLast();
+        TransactionRepository mongoRepository = mongoRepository(mongoTemplate);
+        OutboxProperties outboxProperties = new OutboxProperties();
+        outboxProperties.setEnabled(true);
+        TransactionOutboxServiceImpl outbox = new TransactionOutboxServiceImpl(mongoTemplate, mongoRepository,
+                productService, laneSequencer, outboxProperties, new PartitionLeaseProperties(),
+                new SimpleMeterRegistry());
+
+        // Keyset del listado, $or del panel y saldo pendiente del outbox, capturados del propio código
+        mongoRepository.findPage("prod-1", new TransactionCursor(now.minusMinutes(100), history.get(100).getId()), 10)
+                .blockLast();
+        mongoRepository.findReportableByProducts(List.of("prod-1", "prod-2"), now.minusDays(1), now).blockLast();
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate, Mockito.times(2)).find(queries.capture(), eq(Transaction.class));
+        outbox.withPendingBalance(BankProductDTO.builder().id("prod-0").balance(BigDecimal.ZERO).build()).block();
+        ArgumentCaptor<Aggregation> pending = ArgumentCaptor.forClass(Aggregation.class);
+        Mockito.verify(mongoTemplate).aggregate(pending.capture(), eq(Transaction.class),
+                eq(ProductBalanceUpdate.class));
+
+        QueryMapper queryMapper = new QueryMapper(mongoTemplate.getConverter());
+        MongoPersistentEntity<?> entity = mappingContext.getRequiredPersistentEntity(Transaction.class);
+        Function<Query, Document> explainFind = query -> mongoTemplate.executeCommand(new Document("explain",
+                        new Document("find", "transactions")
+                                .append("filter", queryMapper.getMappedObject(query.getQueryObject(), entity))
+                                .append("sort", queryMapper.getMappedSort(query.getSortObject(), entity))
+                                .append("limit", query.getLimit()))
+                        .append("verbosity", "queryPlanner"))
+                .block();
+
+        assertIndexScans(explainFind.apply(queries.getAllValues().get(0)), Set.of("source_dateTime_id"));
+        assertIndexScans(explainFind.apply(queries.getAllValues().get(1)),
+                Set.of("source_dateTime_id", "target_dateTime"));
+        List<Document> pipeline = pending.getValue().toPipeline(
+                new TypeBasedAggregationOperationContext(Transaction.class, mappingContext, queryMapper));
+        assertIndexScans(mongoTemplate.executeCommand(new Document("explain", new Document("aggregate", "transactions")
+                                .append("pipeline", pipeline).append("cursor", new Document()))
+                        .append("verbosity", "queryPlanner")).block(),
+                Set.of("outbox_pending_dateTime"));
+    }
+
+    @Test
+    void testDailyStats_shouldIncrementRollupKeepLatestClosingAndRebuildInsideTheLane() {
+        ReactiveMongoTemplate mongoTemplate = Mockito.spy(EmbeddedMongo.template());
+        ProductDailyStatsServiceImpl dailyStats =
+                new ProductDailyStatsServiceImpl(mongoTemplate, productService, outboxService, laneSequencer);
+        LocalDateTime now = LocalDateTime.now();
+        String statsId = ProductDailyStats.buildId("prod-1", now.toLocalDate());
+        Transaction withdrawal = Transaction.builder()
+                .sourceProductId("prod-1").type(TransactionType.WITHDRAWAL)
+                .amount(BigDecimal.valueOf(100)).transactionFee(BigDecimal.valueOf(2.5)).dateTime(now).build();
+
+        // El primer registro (saldo 1000) se retrasa al escribir el cierre; el segundo (900) llega antes
+        Sinks.One<Void> firstClosing = Sinks.one();
+        Mockito.doAnswer(invocation -> firstClosing.asMono().then(Mono.defer(() -> {
+                    try {
+                        return (Mono<?>) invocation.callRealMethod();
+                    } catch (Throwable e) {
+                        return Mono.error(e);
+                    }
+                })))
+                .when(mongoTemplate).updateFirst(any(Query.class),
+                        Mockito.argThat(update -> update != null && Long.valueOf(100000L)
+                                .equals(update.getUpdateObject().get("$set", Document.class).get("closingBalance"))),
+                        eq(ProductDailyStats.class));
+        BankProductDTO stale = BankProductDTO.builder()
+                .id("prod-1").type(ProductType.SAVINGS).balance(BigDecimal.valueOf(1000)).build();
+        BankProductDTO latest = BankProductDTO.builder()
+                .id("prod-1").type(ProductType.SAVINGS).balance(BigDecimal.valueOf(900)).build();
+        Mono<Void> delayed = dailyStats.record(stale, List.of(withdrawal)).cache();
+        delayed.subscribe();
+        Mockito.verify(mongoTemplate, Mockito.timeout(5000))
+                .updateFirst(any(Query.class), any(Update.class), eq(ProductDailyStats.class));
+        StepVerifier.create(dailyStats.record(latest, List.of(withdrawal))).verifyComplete();
+        firstClosing.tryEmitEmpty();
+        StepVerifier.create(delayed).verifyComplete();
+
+        // Variación y comisión en céntimos con $inc; el cierre anterior no pisa al posterior
+        ProductDailyStats stats = mongoTemplate.findById(statsId, ProductDailyStats.class).block();
+        assertEquals(-20500L, stats.getNetDelta());
+        assertEquals(500L, stats.getFeeSum());
+        assertEquals(2L, stats.getTxCount());
+        assertEquals(90000L, stats.getClosingBalance());
+
+        // La reconstrucción espera a que el carril del producto quede libre y lee el saldo dentro de él
+        Mockito.when(productService.getAllBankProducts())
+                .thenReturn(Mono.just(new BankProductResponse(200, "ok", List.of(latest))));
+        Mockito.when(productService.getProductById("prod-1", StalenessPolicy.STRICT))
+                .thenReturn(Mono.just(new BankProductResponse(200, "ok", List.of(latest))));
+        mongoTemplate.insert(withdrawal).block();
+        Sinks.One<Void> liveRecord = Sinks.one();
+        laneSequencer.execute("prod-1", liveRecord::asMono).subscribe();
+        Mono<Long> backfill = dailyStats.backfill(now.toLocalDate()).cache();
+        backfill.subscribe();
+        Mockito.verify(productService, Mockito.never()).getProductById("prod-1", StalenessPolicy.STRICT);
+
+        liveRecord.tryEmitEmpty();
+        StepVerifier.create(backfill).expectNext(1L).verifyComplete();
+        stats = mongoTemplate.findById(statsId, ProductDailyStats.class).block();
+        assertEquals(-10250L, stats.getNetDelta());
+        assertEquals(1L, stats.getTxCount());
+        assertEquals(90000L, stats.getClosingBalance());
+
+        // Junio: 15 días con 1000.00 (apertura 0 + depósito el día 1) y 15 días con 400.00
+        mongoTemplate.insertAll(List.of(
+                ProductDailyStats.builder().id(ProductDailyStats.buildId("prod-2", LocalDate.of(2025, 6, 1)))
+                        .productId("prod-2").date("2025-06-01").netDelta(100000).closingBalance(100000).build(),
+                ProductDailyStats.builder().id(ProductDailyStats.buildId("prod-2", LocalDate.of(2025, 6, 16)))
+                        .productId("prod-2").date("2025-06-16").netDelta(-60000).closingBalance(40000).build()))
+                .blockLast();
+
+        StepVerifier.create(dailyStats.averageDailyBalance(
+                        BankProductDTO.builder().id("prod-2").balance(BigDecimal.valueOf(400)).build(),
+                        YearMonth.of(2025, 6)))
+                .expectNextMatches(average -> average.compareTo(BigDecimal.valueOf(700)) == 0)
+                .verifyComplete();
+
+        // La agregación mensual solo devuelve los productos pedidos
+        mongoTemplate.insert(ProductDailyStats.builder()
+                .id(ProductDailyStats.buildId("prod-3", LocalDate.of(2025, 6, 2))).productId("prod-3")
+                .date("2025-06-02").netDelta(100).closingBalance(100).build()).block();
+        StepVerifier.create(dailyStats.streamMonthlyAverages(YearMonth.of(2025, 6), List.of("prod-2")))
+                .expectNextMatches(average -> average.getProductId().equals("prod-2")
+                        && average.getAverageDailyBalance().compareTo(BigDecimal.valueOf(700)) == 0)
+                .verifyComplete();
+    }
+
+    @Test
+    void testDailyBalanceEngine_shouldApplyTransferDirectionAndFeesInOnePass() {
+        BankProductDTO product = BankProductDTO.builder().id("prod-1").type(ProductType.SAVINGS).build();
+        LocalDate start = LocalDate.of(2025, 6, 1);
+        DailyBalanceEngine engine = new DailyBalanceEngine(product, start, start.plusDays(2))
+                .add(Transaction.builder().type(TransactionType.DEPOSIT).sourceProductId("prod-1")
+                        .amount(BigDecimal.valueOf(100)).transactionFee(BigDecimal.ONE)
+                        .dateTime(start.atTime(9, 0)).build())
+                .add(Transaction.builder().type(TransactionType.TRANSFER).sourceProductId("prod-1")
+                        .targetProductId("prod-2").amount(BigDecimal.valueOf(50)).transactionFee(BigDecimal.valueOf(2))
+                        .dateTime(start.plusDays(1).atTime(9, 0)).build())
+                .add(Transaction.builder().type(TransactionType.TRANSFER).sourceProductId("prod-2")
+                        .targetProductId("prod-1").amount(BigDecimal.valueOf(30)).transactionFee(BigDecimal.valueOf(5))
+                        .dateTime(start.plusDays(1).atTime(10, 0)).build())
+                // Fuera del rango: se ignora
+                .add(Transaction.builder().type(TransactionType.DEPOSIT).sourceProductId("prod-1")
+                        .amount(BigDecimal.TEN).dateTime(start.plusDays(5).atTime(9, 0)).build());
+
+        long[] balances = engine.balancesFrom(100000);
+        assertArrayEquals(new long[]{109900, 107700, 107700}, balances);
+        assertArrayEquals(balances, engine.balancesEndingAt(107700));
+        assertEquals(300L, engine.feeAt(0) + engine.feeAt(1));
+        assertEquals(108433L, DailyBalanceEngine.average(balances));
+    }
+
+    @Test
+    void testMoney_shouldUseExactMinorUnitsAndKeepDecimalWireFormat() throws Exception {
+        Money balance = Money.of(new BigDecimal("100.010"));
+        assertEquals(10001L, balance.getMinor());
+        assertEquals(new BigDecimal("89.51"), balance.minus(Money.of(10.5)).toBigDecimal());
+        assertThrows(IllegalArgumentException.class, () -> balance.plus(Money.ofMinor(1, "USD")));
+
+        // Importe del cliente con más de dos decimales: se rechaza con 400, sin redondear ni responder 500
+        TransactionBody body = new TransactionBody().sourceProductId("prod-1").type("DEPOSIT")
+                .amount(new BigDecimal("100.005"));
+        IllegalArgumentException scale =
+                assertThrows(IllegalArgumentException.class, () -> Utils.validateTransactionBody(body));
+        assertEquals(HttpStatus.BAD_REQUEST,
+                new GlobalExceptionHandler().handleIllegalArgument(scale).getStatusCode());
+        Utils.validateTransactionBody(body.amount(new BigDecimal("100.0500")));
+        // Saldos y límites del product-service o ya guardados: se redondean al céntimo en lugar de fallar
+        assertEquals(10001L, Money.of(new BigDecimal("100.005")).getMinor());
+        assertEquals(10001L, mapper().readValue("100.005", Money.class).getMinor());
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("1e30")));
+        assertThrows(IllegalArgumentException.class, () -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1)));
+        // Las comisiones calculadas en coma flotante sí se redondean al céntimo
+        assertEquals(333L, Money.of(10.0 / 3).getMinor());
+
+        // JSON: número decimal, igual que BigDecimal
+        MoneyCodecConfig codecs = new MoneyCodecConfig();
+        ObjectMapper mapper = mapper();
+        assertEquals("100.01", mapper.writeValueAsString(balance));
+        assertEquals(balance, mapper.readValue("100.01", Money.class));
+
+        // Mongo: Decimal128, igual que los importes BigDecimal
+        assertEquals(Decimal128.class,
+                codecs.mongoCustomConversions().getCustomWriteTarget(Money.class).orElseThrow());
+    }
+
+    private ObjectMapper mapper() {
+        return new ObjectMapper().registerModule(new MoneyCodecConfig().moneyModule());
+    }
+
+    @Test
+    void testMoneyStorage_shouldWriteDecimal128AndMigrateInCheckpointedBatches() {
+        MongoCustomConversions conversions = new MoneyCodecConfig().mongoCustomConversions();
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+
+        Document written = new Document();
+        converter.write(Transaction.builder().amount(new BigDecimal("12.50")).build(), written);
+        assertEquals(new Decimal128(new BigDecimal("12.50")), written.get("amount"));
+        // Durante la migración conviven ambas representaciones
+        assertEquals(new BigDecimal("12.50"), converter.read(Transaction.class, written).getAmount());
+        assertEquals(new BigDecimal("12.50"),
+                converter.read(Transaction.class, new Document("amount", "12.50")).getAmount());
+
+        ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        Mockito.when(mongoTemplate.findById(Constants.MIGRATION_MONEY_DECIMAL128, MigrationCheckpoint.class))
+                .thenReturn(Mono.just(MigrationCheckpoint.builder().lastId("a").build()));
+        Mockito.when(mongoTemplate.find(any(Query.class), eq(Transaction.class))).thenReturn(Flux.just(
+                Transaction.builder().id("b").build(), Transaction.builder().id("c").build(),
+                Transaction.builder().id("d").build()));
+        Mockito.when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Transaction.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        Mockito.when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(MigrationCheckpoint.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        MoneyMigrationProperties properties = new MoneyMigrationProperties();
+        properties.setBatchSize(2);
+
+        StepVerifier.create(new MoneyStorageMigrationServiceImpl(mongoTemplate, properties).migrate(false))
+                .expectNext(2L)
+                .verifyComplete();
+
+        // Se retoma después del último id confirmado y el punto de control avanza lote a lote
+        ArgumentCaptor<Query> scan = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate).find(scan.capture(), eq(Transaction.class));
+        assertEquals(new Document("id", new Document("$gt", "a")), scan.getValue().getQueryObject());
+        ArgumentCaptor<Update> checkpoints = ArgumentCaptor.forClass(Update.class);
+        Mockito.verify(mongoTemplate, Mockito.times(2))
+                .upsert(any(Query.class), checkpoints.capture(), eq(MigrationCheckpoint.class));
+        assertEquals("d", checkpoints.getValue().getUpdateObject().get("$set", Document.class).get("lastId"));
+        // Las comisiones guardadas como double también pasan a Decimal128
+        ArgumentCaptor<Query> migrated = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate, Mockito.times(6))
+                .updateMulti(migrated.capture(), any(UpdateDefinition.class), eq(Transaction.class));
+        assertTrue(migrated.getAllValues().stream().anyMatch(query ->
+                query.getQueryObject().containsKey("transactionFee")));
+    }
+
     @Test
     void testApplyMonthlyTasks() {
-        // Simular producto con saldo suficiente y comisión de mantenimiento
-        BankProductDTO product = BankProductDTO.builder()
+        // El listado del inicio de la ejecución tiene un saldo anterior al real
+        BankProductDTO listed = BankProductDTO.builder()
                 .id("prod-1")
                 .customerId("cust-1")
                 .type(ProductType.SAVINGS)
@@ -229,69 +1585,456 @@ public class TransactionServiceImplTest {
                 .holders(List.of("holder1"))
                 .signers(List.of("signer1"))
                 .build();
+        BankProductDTO current = ProductMapper.copyOf(listed);
+        current.setBalance(BigDecimal.valueOf(500));
 
-        // Simular respuesta GET /products
-        BankProductResponse mockGetResponse = Mockito.mock(BankProductResponse.class);
-        Mockito.when(mockGetResponse.getProducts()).thenReturn(List.of(product));
+        ProductService productService = Mockito.mock(ProductService.class);
+        Mockito.when(productService.getAllBankProducts())
+                .thenReturn(Mono.just(BankProductResponse.builder().products(List.of(listed)).build()));
+        Mockito.when(productService.getProductById("prod-1", StalenessPolicy.STRICT))
+                .thenAnswer(inv -> Mono.just(BankProductResponse.builder()
+                        .products(List.of(ProductMapper.copyOf(current))).build()));
+        Mockito.when(productService.updateProducts(any()))
+                .thenAnswer(inv -> Mono.just(BankProductResponse.builder().products(inv.getArgument(0)).build()));
+        Mockito.when(repository.insertUnordered(any())).thenReturn(Mono.just(Map.of()));
 
-        // Simular respuesta PUT /products/{id}
-        BankProductResponse mockPutResponse = Mockito.mock(BankProductResponse.class);
-        Mockito.when(mockPutResponse.getProducts()).thenReturn(List.of(product));
+        ReactiveMongoTemplate mongoTemplate = monthlyJobTemplate();
+        MonthlyTasksServiceImpl monthlyTasksService =
+                new MonthlyTasksServiceImpl(repository, productService, counterService, outboxService, statsService,
+                        mongoTemplate, new MonthlyJobProperties(), leaseCoordinator(mongoTemplate), laneSequencer);
 
-        // Simular transacción a guardar
-        Transaction tx = Transaction.builder()
-                .sourceProductId("prod-1")
-                .amount(BigDecimal.valueOf(10))
-                .type(TransactionType.MAINTENANCE)
-                .dateTime(LocalDateTime.now())
-                .build();
+        // Con otro movimiento del producto en curso el cobro espera a que termine su carril
+        Sinks.One<Void> inFlight = Sinks.one();
+        laneSequencer.execute("prod-1", inFlight::asMono).subscribe();
+        Mono<Void> run = monthlyTasksService.applyMonthlyTasks().cache();
+        run.subscribe(unused -> { }, e -> { });
+        Mockito.verify(productService, Mockito.timeout(5000)).getAllBankProducts();
+        Mockito.verify(productService, Mockito.never()).updateProducts(any());
 
-        // WebClient mocks
-        WebClient.RequestHeadersUriSpec getUriSpec = Mockito.mock(WebClient.RequestHeadersUriSpec.class);
-        WebClient.RequestHeadersSpec getHeadersSpec = Mockito.mock(WebClient.RequestHeadersSpec.class);
-        WebClient.ResponseSpec getResponseSpec = Mockito.mock(WebClient.ResponseSpec.class);
+        inFlight.tryEmitEmpty();
+        StepVerifier.create(run).verifyComplete();
 
-        WebClient.RequestBodyUriSpec putUriSpec = Mockito.mock(WebClient.RequestBodyUriSpec.class);
-        WebClient.RequestBodySpec putBodySpec = Mockito.mock(WebClient.RequestBodySpec.class);
-        WebClient.RequestHeadersSpec putHeadersSpec = Mockito.mock(WebClient.RequestHeadersSpec.class);
-        WebClient.ResponseSpec putResponseSpec = Mockito.mock(WebClient.ResponseSpec.class);
+        // La comisión se descuenta del saldo leído al cobrar, no del listado
+        ArgumentCaptor<List<BankProductDTO>> updated = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(productService).updateProducts(updated.capture());
+        assertEquals(1, updated.getValue().size());
+        assertEquals(0, BigDecimal.valueOf(490).compareTo(updated.getValue().get(0).getBalance()));
+        ArgumentCaptor<List<Transaction>> inserted = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(repository).insertUnordered(inserted.capture());
+        assertEquals(1, inserted.getValue().size());
+        Transaction fee = inserted.getValue().get(0);
+        assertEquals("prod-1", fee.getSourceProductId());
+        assertEquals(TransactionType.MAINTENANCE, fee.getType());
+        assertEquals(0, BigDecimal.TEN.compareTo(fee.getAmount()));
+        MonthlyJobCheckpoint checkpoint = mongoTemplate.findById(
+                MonthlyJobCheckpoint.buildId(YearMonth.now().toString(), "prod-1"), MonthlyJobCheckpoint.class).block();
+        assertEquals(MonthlyJobStatus.COMPLETED, checkpoint.getStatus());
+    }
 
-        WebClient webClient = Mockito.mock(WebClient.class);
+    @Test
+    void testApplyMonthlyTasks_shouldResumePendingFeesByTransactionInsteadOfChargingTwice() {
+        String period = YearMonth.now().toString();
+        List<BankProductDTO> products = List.of("done", "applied", "unsent", "interrupted").stream()
+                .map(id -> BankProductDTO.builder().id(id).type(ProductType.SAVINGS)
+                        .balance(BigDecimal.valueOf(1000)).details(new SavingsAccount(10.0, 10, 0.0, 0, 0.0)).build())
+                .collect(Collectors.toList());
+        Map<String, BankProductDTO> ledger = new ConcurrentHashMap<>();
+        products.forEach(product -> ledger.put(product.getId(), ProductMapper.copyOf(product)));
+        // "interrupted" quedó registrada por un arranque que se detuvo antes de insertar su transacción
+        Transaction interrupted = Transaction.builder().id(new ObjectId().toHexString())
+                .sourceProductId("interrupted").type(TransactionType.MAINTENANCE).amount(BigDecimal.TEN)
+                .dateTime(LocalDateTime.now()).build();
+        ReactiveMongoTemplate mongoTemplate = monthlyJobTemplate(
+                MonthlyJobCheckpoint.builder().id(MonthlyJobCheckpoint.buildId(period, "done"))
+                        .productId("done").status(MonthlyJobStatus.COMPLETED).build(),
+                MonthlyJobCheckpoint.builder().id(MonthlyJobCheckpoint.buildId(period, "interrupted"))
+                        .period(period).productId("interrupted").status(MonthlyJobStatus.FEE_PENDING)
+                        .feeTransaction(interrupted).balanceBefore(BigDecimal.valueOf(1000))
+                        .balanceAfter(BigDecimal.valueOf(990)).build());
 
-        // Mock GET
-        Mockito.when(webClient.get()).thenReturn(getUriSpec);
-        Mockito.when(getUriSpec.uri(eq("/products"))).thenReturn(getHeadersSpec);
-        Mockito.when(getHeadersSpec.retrieve()).thenReturn(getResponseSpec);
-        Mockito.when(getResponseSpec.bodyToMono(eq(BankProductResponse.class))).thenReturn(Mono.just(mockGetResponse));
+        // Primer arranque: el PUT llega al product-service salvo para "unsent", pero la respuesta no vuelve
+        ProductService firstService = ledgerProductService(ledger, products, Mono.empty());
+        Mockito.when(firstService.updateProducts(any())).thenAnswer(inv -> Mono.defer(() -> {
+            inv.<List<BankProductDTO>>getArgument(0).stream()
+                    .filter(product -> !product.getId().equals("unsent"))
+                    .forEach(product -> ledger.put(product.getId(), ProductMapper.copyOf(product)));
+            return Mono.error(new TimeoutException("PUT sin respuesta"));
+        }));
+        StepVerifier.create(monthlyInstance(mongoTemplate, firstService, "instance-a").applyMonthlyTasks())
+                .verifyComplete();
 
-        // Mock PUT
-        Mockito.when(webClient.put()).thenReturn(putUriSpec);
-        Mockito.when(putUriSpec.uri(eq("/products/{id}"), eq("prod-1"))).thenReturn(putBodySpec);
-        Mockito.when(putBodySpec.bodyValue(any())).thenReturn(putHeadersSpec);
-        Mockito.when(putHeadersSpec.retrieve()).thenReturn(putResponseSpec);
-        Mockito.when(putResponseSpec.bodyToMono(eq(BankProductResponse.class))).thenReturn(Mono.just(mockPutResponse));
+        // Las transacciones se insertan antes del PUT, con el id registrado en el punto de control, y se
+        // conservan al no saberse si el saldo cambió
+        Query feePending = Query.query(Criteria.where("status").is(MonthlyJobStatus.FEE_PENDING));
+        Map<String, MonthlyJobCheckpoint> pending = mongoTemplate.find(feePending, MonthlyJobCheckpoint.class)
+                .collectMap(MonthlyJobCheckpoint::getProductId).block();
+        assertEquals(Set.of("applied", "unsent", "interrupted"), pending.keySet());
+        assertEquals("PUT sin respuesta", pending.get("applied").getLastError());
+        assertEquals(0, BigDecimal.valueOf(990).compareTo(pending.get("applied").getBalanceAfter()));
+        assertEquals(interrupted.getId(), pending.get("interrupted").getFeeTransaction().getId());
+        Query maintenance = Query.query(Criteria.where("type").is(TransactionType.MAINTENANCE));
+        Map<String, String> feeIds = mongoTemplate.find(maintenance, Transaction.class)
+                .collectMap(Transaction::getSourceProductId, Transaction::getId).block();
+        assertEquals(pending.values().stream().collect(Collectors.toMap(MonthlyJobCheckpoint::getProductId,
+                checkpoint -> checkpoint.getFeeTransaction().getId())), feeIds);
 
-        // Inyectar WebClient simulado en Utils
-        Utils.setProductService(() -> webClient);
+        ProductService secondService = ledgerProductService(ledger, products, Mono.empty());
+        StepVerifier.create(monthlyInstance(mongoTemplate, secondService, "instance-a").applyMonthlyTasks())
+                .verifyComplete();
 
-        // Mock repository
-        TransactionRepository repository = Mockito.mock(TransactionRepository.class);
-        Mockito.when(repository.save(any(Transaction.class))).thenReturn(Mono.just(tx));
-        Mockito.when(repository.findBySourceProductIdAndDateTimeBetween(anyString(), any(), any()))
-                .thenReturn(Flux.just()); // sin transacciones, no bloquea
+        // Con su transacción registrada ninguna comisión se vuelve a cobrar, aunque el saldo no la refleje
+        Mockito.verify(secondService, Mockito.never()).updateProducts(any());
+        assertEquals(Map.of("done", 1000, "applied", 990, "unsent", 1000, "interrupted", 990),
+                ledger.values().stream().collect(Collectors.toMap(BankProductDTO::getId,
+                        product -> product.getBalance().intValueExact())));
+        assertEquals(feeIds, mongoTemplate.find(maintenance, Transaction.class)
+                .collectMap(Transaction::getSourceProductId, Transaction::getId).block());
+
+        Map<String, MonthlyJobCheckpoint> checkpoints = mongoTemplate.findAll(MonthlyJobCheckpoint.class)
+                .collectMap(MonthlyJobCheckpoint::getProductId).block();
+        assertEquals(MonthlyJobStatus.FEE_PENDING, checkpoints.get("unsent").getStatus());
+        assertEquals(Constants.ERROR_MAINTENANCE_FEE_UNRECONCILED, checkpoints.get("unsent").getLastError());
+        assertEquals(MonthlyJobStatus.FEE_PENDING, checkpoints.get("applied").getStatus());
+        MonthlyJobRun run = mongoTemplate.findById(period, MonthlyJobRun.class).block();
+        assertEquals(0L, run.getProcessedProducts());
+        assertEquals(1L, run.getSkippedProducts());
+        assertEquals(3L, run.getFailedProducts());
+    }
+
+    @Test
+    void testApplyMonthlyTasks_shouldBlockSavingsBelowAverageFromOneAggregation() {
+        BankProductDTO below = BankProductDTO.builder().id("below").type(ProductType.SAVINGS)
+                .status(ProductStatus.ACTIVE).balance(BigDecimal.valueOf(5000))
+                .details(new SavingsAccount(0.0, 10, 1000.0, 0, 0.0)).build();
+        BankProductDTO above = BankProductDTO.builder().id("above").type(ProductType.SAVINGS)
+                .status(ProductStatus.ACTIVE).balance(BigDecimal.valueOf(10))
+                .details(new SavingsAccount(0.0, 10, 1000.0, 0, 0.0)).build();
+        // Sin movimientos en el mes: se evalúa con el saldo actual
+        BankProductDTO idle = BankProductDTO.builder().id("idle").type(ProductType.SAVINGS)
+                .status(ProductStatus.ACTIVE).balance(BigDecimal.valueOf(200))
+                .details(new SavingsAccount(0.0, 10, 1000.0, 0, 0.0)).build();
+        BankProductResponse response = new BankProductResponse();
+        response.setProducts(List.of(below, above, idle));
 
-        // Mock productService
         ProductService productService = Mockito.mock(ProductService.class);
-        Mockito.when(productService.getAllBankProducts()).thenReturn(Mono.just(mockGetResponse));
+        Mockito.when(productService.getAllBankProducts()).thenReturn(Mono.just(response));
+        stubProductReads(productService, response.getProducts());
         Mockito.when(productService.updateProduct(any(BankProductDTO.class)))
-                .thenReturn(Mono.just(mockPutResponse));
+                .thenReturn(Mono.just(new BankProductResponse()));
+        Map<String, BigDecimal> stored = Map.of("below", BigDecimal.valueOf(900),
+                "above", BigDecimal.valueOf(1500), "other", BigDecimal.ZERO);
+        Mockito.when(statsService.streamMonthlyAverages(eq(YearMonth.now()), any()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<Collection<String>>getArgument(1))
+                        .filter(stored::containsKey)
+                        .map(id -> new ProductAverageBalance(id, stored.get(id))));
 
-        // Crear instancia del servicio con los mocks
-        MonthlyTasksServiceImpl monthlyTasksService = new MonthlyTasksServiceImpl(repository, productService);
+        ReactiveMongoTemplate mongoTemplate = monthlyJobTemplate();
+        MonthlyTasksServiceImpl monthlyTasks = new MonthlyTasksServiceImpl(repository, productService,
+                counterService, outboxService, statsService, mongoTemplate, new MonthlyJobProperties(),
+                leaseCoordinator(mongoTemplate), laneSequencer);
 
-        // Ejecutar y verificar
-        StepVerifier.create(monthlyTasksService.applyMonthlyTasks())
-                .verifyComplete();
+        StepVerifier.create(monthlyTasks.applyMonthlyTasks()).verifyComplete();
+
+        ArgumentCaptor<BankProductDTO> blocked = ArgumentCaptor.forClass(BankProductDTO.class);
+        Mockito.verify(productService, Mockito.times(2)).updateProduct(blocked.capture());
+        assertEquals(Set.of("below", "idle"), blocked.getAllValues().stream()
+                .filter(product -> product.getStatus() == ProductStatus.BLOCKED_AVG_BALANCE)
+                .map(BankProductDTO::getId).collect(Collectors.toSet()));
+        // La agregación solo recibe las cuentas evaluadas de cada partición, una consulta por partición
+        ArgumentCaptor<Collection<String>> requested = ArgumentCaptor.forClass(Collection.class);
+        Mockito.verify(statsService, Mockito.atMost(new PartitionLeaseProperties().getPartitions()))
+                .streamMonthlyAverages(any(), requested.capture());
+        assertEquals(Set.of("below", "above", "idle"), requested.getAllValues().stream()
+                .flatMap(Collection::stream).collect(Collectors.toSet()));
+        assertEquals(3, requested.getAllValues().stream().mapToInt(Collection::size).sum());
+        Mockito.verify(statsService, Mockito.never()).averageDailyBalance(any(), any());
+    }
+
+    @Test
+    void testApplyMonthlyTasks_shouldNotChargeTwiceWhenAnotherInstanceTakesOverTheLease() {
+        String period = YearMonth.now().toString();
+        List<BankProductDTO> products = List.of("prod-1", "prod-2").stream()
+                .map(id -> BankProductDTO.builder().id(id).type(ProductType.SAVINGS)
+                        .balance(BigDecimal.valueOf(1000)).details(new SavingsAccount(10.0, 10, 0.0, 0, 0.0)).build())
+                .collect(Collectors.toList());
+        // Saldos del product-service, compartido por las dos instancias
+        Map<String, BankProductDTO> ledger = new ConcurrentHashMap<>();
+        products.forEach(product -> ledger.put(product.getId(), ProductMapper.copyOf(product)));
+        // La instancia A se queda en pausa al leer los saldos para cobrar, con los productos ya reclamados
+        Sinks.Empty<Void> resumeA = Sinks.empty();
+        ProductService productsA = ledgerProductService(ledger, products, resumeA.asMono());
+        ProductService productsB = ledgerProductService(ledger, products, Mono.empty());
+        String database = "monthly-" + UUID.randomUUID();
+        ReactiveMongoTemplate mongoA = EmbeddedMongo.template(database);
+        ReactiveMongoTemplate mongoB = EmbeddedMongo.template(database);
+        MonthlyTasksServiceImpl instanceA = monthlyInstance(mongoA, productsA, "instance-a");
+        MonthlyTasksServiceImpl instanceB = monthlyInstance(mongoB, productsB, "instance-b");
+
+        Mono<Void> runA = instanceA.applyMonthlyTasks().cache();
+        runA.subscribe(unused -> { }, e -> { });
+        Mockito.verify(productsA, Mockito.timeout(5000).times(2))
+                .getProductById(anyString(), eq(StalenessPolicy.STRICT));
+
+        // Sin latidos el lease de A vence y B toma la partición con una época posterior
+        String leaseId = PartitionLease.buildId(Constants.MONTHLY_TASKS_JOB, 0);
+        mongoB.updateFirst(Query.query(Criteria.where("_id").is(leaseId)),
+                Update.update("expiresAt", LocalDateTime.now().minusMinutes(1)), PartitionLease.class).block();
+        StepVerifier.create(instanceB.applyMonthlyTasks()).verifyComplete();
+
+        // A retoma su tramo en curso, pero ya no cobra ni cierra los productos reclamados por B
+        resumeA.tryEmitEmpty();
+        StepVerifier.create(runA).verifyComplete();
+
+        Mockito.verify(productsA, Mockito.never()).updateProducts(any());
+        ledger.values().forEach(product ->
+                assertEquals(0, BigDecimal.valueOf(990).compareTo(product.getBalance()), product.getId()));
+        List<Transaction> fees = mongoB.find(Query.query(Criteria.where("type").is(TransactionType.MAINTENANCE)),
+                Transaction.class).collectList().block();
+        assertEquals(List.of("prod-1", "prod-2"), fees.stream().map(Transaction::getSourceProductId).sorted()
+                .collect(Collectors.toList()));
+        PartitionLease lease = mongoB.findById(leaseId, PartitionLease.class).block();
+        assertEquals(2L, lease.getEpoch());
+        assertEquals(period, lease.getCompletedPeriod());
+        for (BankProductDTO product : products) {
+            MonthlyJobCheckpoint checkpoint = mongoB.findById(MonthlyJobCheckpoint.buildId(period, product.getId()),
+                    MonthlyJobCheckpoint.class).block();
+            assertEquals(MonthlyJobStatus.COMPLETED, checkpoint.getStatus());
+            assertEquals("instance-b", checkpoint.getOwner());
+            assertEquals(2L, checkpoint.getLeaseEpoch());
+        }
+        // Cada producto se cuenta una sola vez entre las dos instancias
+        assertEquals(2L, mongoB.findById(period, MonthlyJobRun.class).block().getProcessedProducts());
+    }
+
+    @Test
+    void testApplyMonthlyTasks_shouldWriteFeesInBatchesAndReportFailuresPerProduct() {
+        String period = YearMonth.now().toString();
+        List<BankProductDTO> products = List.of("ok-1", "ok-2", "missing", "rejected").stream()
+                .map(id -> BankProductDTO.builder().id(id).type(ProductType.SAVINGS)
+                        .balance(BigDecimal.valueOf(1000)).details(new SavingsAccount(10.0, 10, 0.0, 0, 0.0)).build())
+                .collect(Collectors.toList());
+        // El product-service local no conoce "missing": el lote no lo actualiza
+        StubProductService stub = new StubProductService();
+        products.stream().filter(product -> !product.getId().equals("missing"))
+                .forEach(product -> stub.with(ProductMapper.copyOf(product)));
+        ProductBatchUpdateProperties batchUpdateProperties = new ProductBatchUpdateProperties();
+        batchUpdateProperties.setEnabled(true);
+        CircuitBreakerConfigHelper resilience =
+                new CircuitBreakerConfigHelper(new ProductResilienceProperties(), new SimpleMeterRegistry());
+        ProductService productService = Mockito.spy(new ProductServiceImpl(stub.client(),
+                new ProductSnapshotCache(new ProductCacheProperties(), new SimpleMeterRegistry()), resilience,
+                new SingleFlight(new SingleFlightProperties(), new SimpleMeterRegistry()),
+                disabledLoader(stub.client()), batchUpdateProperties));
+        Mockito.doReturn(Mono.just(BankProductResponse.builder().products(products).build()))
+                .when(productService).getAllBankProducts();
+        Mockito.doReturn(Mono.just(BankProductResponse.builder().products(List.of(products.get(2))).build()))
+                .when(productService).getProductById("missing", StalenessPolicy.STRICT);
+        // Mongo rechaza la transacción de "rejected"; el resto del insertMany se aplica
+        Mockito.when(repository.deleteAllById(Mockito.<Iterable<String>>any())).thenReturn(Mono.empty());
+        Mockito.when(repository.insertUnordered(any())).thenAnswer(inv -> {
+            List<Transaction> fees = inv.getArgument(0);
+            return Mono.just(IntStream.range(0, fees.size()).boxed()
+                    .filter(i -> fees.get(i).getSourceProductId().equals("rejected"))
+                    .collect(Collectors.toMap(i -> i, i -> "E11000 duplicate key")));
+        });
+
+        ReactiveMongoTemplate mongoTemplate = monthlyJobTemplate();
+        MonthlyJobProperties properties = new MonthlyJobProperties();
+        properties.setFeeBatchSize(10);
+        PartitionLeaseProperties leaseProperties = new PartitionLeaseProperties();
+        leaseProperties.setPartitions(1);
+        MonthlyTasksServiceImpl monthlyTasks = new MonthlyTasksServiceImpl(repository, productService,
+                counterService, outboxService, statsService, mongoTemplate, properties,
+                new PartitionLeaseCoordinator(mongoTemplate, leaseProperties), laneSequencer);
+
+        StepVerifier.create(monthlyTasks.applyMonthlyTasks()).verifyComplete();
+
+        // Una petición de saldos y un insertMany para todo el lote, en lugar de uno por producto
+        assertEquals(1, stub.requests().stream().filter("PUT /products/batch"::equals).count());
+        Mockito.verify(productService, Mockito.never()).updateProduct(any(BankProductDTO.class));
+        ArgumentCaptor<List<Transaction>> inserted = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(repository, Mockito.times(1)).insertUnordered(inserted.capture());
+        // Las transacciones se insertan antes del PUT, que solo lleva las que se insertaron
+        Map<String, String> feeIds = inserted.getValue().stream()
+                .collect(Collectors.toMap(Transaction::getSourceProductId, Transaction::getId));
+        assertEquals(Set.of("ok-1", "ok-2", "missing", "rejected"), feeIds.keySet());
+        assertEquals(0, BigDecimal.valueOf(990).compareTo(stub.product("ok-1").getBalance()));
+        assertEquals(0, BigDecimal.valueOf(1000).compareTo(stub.product("rejected").getBalance()));
+        Mockito.verify(counterService, Mockito.times(2)).increment(anyString(), any(), Mockito.anyLong());
+        // La transacción del producto que el product-service no actualizó se elimina
+        Mockito.verify(repository).deleteAllById(List.of(feeIds.get("missing")));
+
+        // Cada fallo queda en el punto de control de su producto; la comisión sin transacción ni saldo
+        // descontado queda para cobrarse al retomar
+        Map<String, MonthlyJobCheckpoint> checkpoints = mongoTemplate.findAll(MonthlyJobCheckpoint.class)
+                .collectMap(MonthlyJobCheckpoint::getProductId).block();
+        assertEquals(MonthlyJobStatus.COMPLETED, checkpoints.get("ok-1").getStatus());
+        assertEquals(MonthlyJobStatus.FAILED, checkpoints.get("missing").getStatus());
+        assertEquals(Constants.ERROR_PRODUCT_NOT_UPDATED, checkpoints.get("missing").getLastError());
+        assertEquals(MonthlyJobStatus.FEE_PENDING, checkpoints.get("rejected").getStatus());
+        assertEquals("E11000 duplicate key", checkpoints.get("rejected").getLastError());
+    }
+
+    private ReportScheduler reportScheduler() {
+        return new ReportScheduler(new ReportSchedulerProperties(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testReportScheduler_shouldKeepEventLoopResponsiveAndRejectWhenQueueIsFull() throws InterruptedException {
+        ReportSchedulerProperties properties = new ReportSchedulerProperties();
+        properties.setThreads(1);
+        properties.setQueueCapacity(2);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReportScheduler reportScheduler = new ReportScheduler(properties, registry);
+        Scheduler eventLoop = Schedulers.newSingle("event-loop");
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // Reportes pesados pedidos desde el hilo de E/S: uno ocupa el hilo de reportes y dos esperan en cola
+            Supplier<Integer> heavyReport = () -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 1;
+            };
+            List<Mono<Integer>> reports = IntStream.range(0, 3)
+                    .mapToObj(i -> reportScheduler.compute(heavyReport).subscribeOn(eventLoop).toFuture())
+                    .map(Mono::fromFuture)
+                    .collect(Collectors.toList());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while ((reportScheduler.activeCount() < 1 || reportScheduler.queueSize() < 2)
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1.0, registry.get("report.scheduler.active").tag("scheduler", "report").gauge().value());
+            assertEquals(2.0, registry.get("report.scheduler.queue.size").tag("scheduler", "report").gauge().value());
+
+            // Con la cola llena el siguiente reporte se rechaza con 503
+            StepVerifier.create(reportScheduler.compute(heavyReport))
+                    .expectErrorMatches(e -> e instanceof ServiceUnavailableException
+                            && e.getMessage().equals(Constants.ERROR_REPORT_SCHEDULER_BUSY))
+                    .verify();
+            assertEquals(1.0, registry.counter("report.scheduler.rejected", "scheduler", "report").count());
+
+            // Mientras tanto las peticiones de transacciones siguen atendiéndose sin espera en el hilo de E/S
+            int requests = 200;
+            long[] latencies = new long[requests];
+            CountDownLatch served = new CountDownLatch(requests);
+            for (int i = 0; i < requests; i++) {
+                int request = i;
+                long scheduledAt = System.nanoTime();
+                eventLoop.schedule(() -> {
+                    latencies[request] = System.nanoTime() - scheduledAt;
+                    served.countDown();
+                });
+            }
+            assertTrue(served.await(5, TimeUnit.SECONDS));
+            Arrays.sort(latencies);
+            long p99 = latencies[(int) Math.ceil(requests * 0.99) - 1];
+            assertTrue(p99 < TimeUnit.MILLISECONDS.toNanos(50), "p99 " + p99 + " ns");
+
+            release.countDown();
+            StepVerifier.create(Flux.concat(reports).collectList())
+                    .expectNext(List.of(1, 1, 1))
+                    .verifyComplete();
+        } finally {
+            release.countDown();
+            eventLoop.dispose();
+            reportScheduler.destroy();
+        }
+    }
+
+    private ReactiveMongoTemplate monthlyJobTemplate(MonthlyJobCheckpoint... existing) {
+        ReactiveMongoTemplate mongoTemplate = Mockito.spy(EmbeddedMongo.template());
+        mongoTemplate.insertAll(List.of(existing)).blockLast();
+        return mongoTemplate;
+    }
+
+    /**
+     * Lecturas frescas del product-service: cada llamada devuelve una copia del producto.
+     */
+    private void stubProductReads(ProductService productService, List<BankProductDTO> products) {
+        Mockito.when(productService.getProductById(anyString(), eq(StalenessPolicy.STRICT)))
+                .thenAnswer(inv -> Mono.just(BankProductResponse.builder().products(products.stream()
+                        .filter(product -> product.getId().equals(inv.getArgument(0)))
+                        .map(ProductMapper::copyOf)
+                        .collect(Collectors.toList())).build()));
+    }
+
+    /**
+     * Comprueba que el plan ganador de un explain (find o aggregate) solo recorre los índices indicados,
+     * sin COLLSCAN.
+     */
+    private static void assertIndexScans(Document explain, Set<String> expectedIndexes) {
+        Set<String> stages = new HashSet<>();
+        Set<String> indexes = new HashSet<>();
+        collectWinningPlans(explain, stages, indexes, false);
+        assertTrue(stages.contains("IXSCAN"), () -> "Sin IXSCAN: " + explain.toJson());
+        assertFalse(stages.contains("COLLSCAN"), () -> "Con COLLSCAN: " + explain.toJson());
+        assertEquals(expectedIndexes, indexes, () -> explain.toJson());
+    }
+
+    private static void collectWinningPlans(Object node, Set<String> stages, Set<String> indexes, boolean inPlan) {
+        if (node instanceof List) {
+            ((List<?>) node).forEach(item -> collectWinningPlans(item, stages, indexes, inPlan));
+            return;
+        }
+        if (!(node instanceof Document)) {
+            return;
+        }
+        Document document = (Document) node;
+        if (inPlan && document.get("stage") instanceof String) {
+            stages.add(document.getString("stage"));
+        }
+        if (inPlan && document.get("indexName") instanceof String) {
+            indexes.add(document.getString("indexName"));
+        }
+        document.forEach((key, value) -> {
+            if (!key.equals("rejectedPlans")) {
+                collectWinningPlans(value, stages, indexes, inPlan || key.equals("winningPlan"));
+            }
+        });
+    }
+
+    /**
+     * Product-service sobre un libro de saldos compartido; las lecturas frescas esperan a la señal indicada.
+     */
+    private ProductService ledgerProductService(Map<String, BankProductDTO> ledger, List<BankProductDTO> listed,
+                                                Mono<Void> readGate) {
+        ProductService productService = Mockito.mock(ProductService.class);
+        Mockito.when(productService.getAllBankProducts())
+                .thenReturn(Mono.just(BankProductResponse.builder().products(listed).build()));
+        Mockito.when(productService.getProductById(anyString(), eq(StalenessPolicy.STRICT)))
+                .thenAnswer(inv -> readGate.then(Mono.fromSupplier(() -> BankProductResponse.builder()
+                        .products(List.of(ProductMapper.copyOf(ledger.get(inv.<String>getArgument(0))))).build())));
+        Mockito.when(productService.updateProducts(any())).thenAnswer(inv -> Mono.fromSupplier(() -> {
+            List<BankProductDTO> updated = inv.getArgument(0);
+            updated.forEach(product -> ledger.put(product.getId(), ProductMapper.copyOf(product)));
+            return BankProductResponse.builder().products(updated).build();
+        }));
+        return productService;
+    }
+
+    /**
+     * Una instancia del servicio de tareas mensuales, con sus propios carriles y una sola partición
+     * cuyo lease no se renueva durante la prueba.
+     */
+    private MonthlyTasksServiceImpl monthlyInstance(ReactiveMongoTemplate mongoTemplate, ProductService productService,
+                                                    String instanceId) {
+        PartitionLeaseProperties leaseProperties = new PartitionLeaseProperties();
+        leaseProperties.setPartitions(1);
+        leaseProperties.setInstanceId(instanceId);
+        leaseProperties.setHeartbeatInterval(Duration.ofMinutes(5));
+        leaseProperties.setRetryInterval(Duration.ofMillis(50));
+        return new MonthlyTasksServiceImpl(mongoRepository(mongoTemplate), productService, counterService,
+                outboxService, statsService, mongoTemplate, new MonthlyJobProperties(),
+                new PartitionLeaseCoordinator(mongoTemplate, leaseProperties),
+                new ProductLaneSequencer(new ProductLaneProperties(), new SimpleMeterRegistry()));
+    }
+
+    private PartitionLeaseCoordinator leaseCoordinator(ReactiveMongoTemplate mongoTemplate) {
+        return new PartitionLeaseCoordinator(mongoTemplate, new PartitionLeaseProperties());
     }
 
 }
@@ -0,0 +1,125 @@
+package com.nttdata.transaction.benchmark;
+
+import com.nttdata.transaction.model.Dto.BankProductDTO;
+import com.nttdata.transaction.model.Transaction;
+import com.nttdata.transaction.model.Type.ProductType;
+import com.nttdata.transaction.model.Type.TransactionType;
+import com.nttdata.transaction.support.DailyBalanceEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el cálculo de saldos diarios anterior (un recorrido de todas las transacciones por cada día)
+ * con {@link DailyBalanceEngine} sobre un mes de movimientos.
+ *
+ * <p>Ejecución: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.nttdata.transaction.benchmark.DailyBalanceEngineBenchmark}</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DailyBalanceEngineBenchmark {
+
+    private static final String PRODUCT_ID = "prod-1";
+
+    @Param({"1000", "100000", "1000000"})
+    private int transactions;
+
+    private BankProductDTO product;
+    private LocalDate start;
+    private LocalDate end;
+    private List<Transaction> txs;
+
+    @Setup
+    public void setup() {
+        product = BankProductDTO.builder().id(PRODUCT_ID).type(ProductType.SAVINGS)
+                .balance(BigDecimal.valueOf(1000)).build();
+        start = LocalDate.of(2025, 6, 1);
+        end = start.plusDays(29);
+
+        Random random = new Random(42);
+        TransactionType[] types = {TransactionType.DEPOSIT, TransactionType.WITHDRAWAL, TransactionType.TRANSFER};
+        txs = new ArrayList<>(transactions);
+        for (int i = 0; i < transactions; i++) {
+            TransactionType type = types[random.nextInt(types.length)];
+            boolean incoming = type == TransactionType.TRANSFER && random.nextBoolean();
+            txs.add(Transaction.builder()
+                    .type(type)
+                    .amount(BigDecimal.valueOf(random.nextInt(100_000), 2))
+                    .transactionFee(random.nextInt(4) == 0 ? BigDecimal.valueOf(1.5) : BigDecimal.ZERO)
+                    .sourceProductId(incoming ? "prod-2" : PRODUCT_ID)
+                    .targetProductId(incoming ? PRODUCT_ID : null)
+                    .dateTime(start.plusDays(random.nextInt(30)).atTime(12, 0))
+                    .build());
+        }
+    }
+
+    /**
+     * Algoritmo anterior: por cada día filtra la lista completa y crea un BigDecimal por elemento.
+     */
+    @Benchmark
+    public Map<LocalDate, BigDecimal> legacy() {
+        Map<LocalDate, BigDecimal> balances = new LinkedHashMap<>();
+        BigDecimal balance = product.getBalance();
+        LocalDateTime from = start.atStartOfDay();
+        LocalDateTime to = end.atStartOfDay();
+
+        for (LocalDate date = from.toLocalDate(); !date.isAfter(to.toLocalDate()); date = date.plusDays(1)) {
+            final LocalDate currentDate = date;
+
+            BigDecimal delta = txs.stream()
+                    .filter(t -> t.getDateTime().toLocalDate().equals(currentDate))
+                    .map(t -> t.getType() == TransactionType.DEPOSIT
+                            ? t.getAmount()
+                            : t.getAmount().negate())
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+            balance = balance.add(delta);
+            balances.put(currentDate, balance);
+        }
+
+        return balances;
+    }
+
+    @Benchmark
+    public long[] engine() {
+        DailyBalanceEngine engine = new DailyBalanceEngine(product, start, end);
+        for (Transaction tx : txs) {
+            engine.add(tx);
+        }
+        return engine.balancesFrom(DailyBalanceEngine.toMinor(product.getBalance()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DailyBalanceEngineBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+package com.nttdata.transaction.benchmark;
+
+import com.nttdata.transaction.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el cálculo de saldo de un retiro con comisión (comisión, límite de fondos y nuevo saldo)
+ * con {@link BigDecimal} frente a {@link Money}. Con {@link GCProfiler} se compara
+ * {@code gc.alloc.rate.norm}: bytes asignados por transacción.
+ *
+ * <p>Ejecución: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.nttdata.transaction.benchmark.MoneyBenchmark}</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MoneyBenchmark {
+
+    private static final int SIZE = 1024;
+
+    private final BigDecimal[] balances = new BigDecimal[SIZE];
+    private final BigDecimal[] amounts = new BigDecimal[SIZE];
+    private final Double[] fees = new Double[SIZE];
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < SIZE; i++) {
+            balances[i] = BigDecimal.valueOf(random.nextInt(10_000_000), 2);
+            amounts[i] = BigDecimal.valueOf(random.nextInt(100_000), 2);
+            fees[i] = random.nextBoolean() ? 2.5 : 0.0;
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        int i = next++ & (SIZE - 1);
+        BigDecimal balance = balances[i] != null ? balances[i] : BigDecimal.ZERO;
+        BigDecimal fee = fees[i] != null ? BigDecimal.valueOf(fees[i]) : BigDecimal.ZERO;
+        BigDecimal totalWithdrawal = amounts[i].add(fee);
+        return totalWithdrawal.compareTo(balance) > 0 ? balance : balance.subtract(totalWithdrawal);
+    }
+
+    @Benchmark
+    public long money() {
+        int i = next++ & (SIZE - 1);
+        Money balance = Money.of(balances[i]);
+        Money totalWithdrawal = Money.of(amounts[i]).plus(Money.of(fees[i]));
+        return totalWithdrawal.isGreaterThan(balance)
+                ? balance.getMinor()
+                : balance.minus(totalWithdrawal).getMinor();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MoneyBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}